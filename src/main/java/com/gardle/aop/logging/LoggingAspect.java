@@ -41,6 +41,8 @@ public class LoggingAspect {
     }
 
     @Pointcut("execution(* com.gardle.web.rest.MessageController.getUnreadNotificationsForLoggedInUser()) || " +
+        "execution(* com.gardle.web.rest.MessageController.getUnreadCountForLoggedInUser(..)) || " +
+        "execution(* com.gardle.service.MessageService.getUnreadCountForLoggedInUser()) || " +
         "execution(* com.gardle.service.MessageService.getUnreadNotificationsForLoggedInUser()) || " +
         "execution(* com.gardle.service.SecurityHelperService.getLoggedInUser())")
     public void pollingMethodsPointcut() {
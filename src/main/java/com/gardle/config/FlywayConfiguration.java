@@ -0,0 +1,54 @@
+package com.gardle.config;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Runs the versioned migrations of {@code db/migration/{vendor}} after hibernate updated the schema.
+ * <p>
+ * The tables are still created and extended by {@code ddl-auto: update}, the migrations add what hibernate can not
+ * express, e.g. partial indexes. Spring boot would migrate before the entity manager factory exists, so the
+ * migration strategy skips that run and {@link FlywayAfterSchemaUpdate} migrates once the schema update finished.
+ */
+@Configuration
+public class FlywayConfiguration {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return flyway -> {
+        };
+    }
+
+    @Bean
+    public FlywayAfterSchemaUpdate flywayAfterSchemaUpdate(Flyway flyway, EntityManagerFactory entityManagerFactory) {
+        return new FlywayAfterSchemaUpdate(flyway, entityManagerFactory);
+    }
+
+    public static class FlywayAfterSchemaUpdate {
+
+        private final Logger log = LoggerFactory.getLogger(FlywayAfterSchemaUpdate.class);
+
+        private final Flyway flyway;
+        private final EntityManagerFactory entityManagerFactory;
+
+        public FlywayAfterSchemaUpdate(Flyway flyway, EntityManagerFactory entityManagerFactory) {
+            this.flyway = flyway;
+            this.entityManagerFactory = entityManagerFactory;
+        }
+
+        @PostConstruct
+        public void migrate() {
+            //waits for the background bootstrap of the entity manager factory, which runs the schema update
+            entityManagerFactory.getMetamodel();
+            int migrations = flyway.migrate();
+            log.debug("Applied {} database migrations", migrations);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.gardle.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tuning of the job cancelling expired open leasings, see {@link com.gardle.service.LeasingExpiryJob}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "leasing.expiry")
+public class LeasingExpiryProperties {
+
+    private int chunkSize = 500;
+
+    private int paymentThreads = 2;
+
+    private int paymentQueueCapacity = 1000;
+
+    private int paymentReleaseAttempts = 5;
+
+    private int paymentRetryDelayMinutes = 10;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getPaymentThreads() {
+        return paymentThreads;
+    }
+
+    public void setPaymentThreads(int paymentThreads) {
+        this.paymentThreads = paymentThreads;
+    }
+
+    public int getPaymentQueueCapacity() {
+        return paymentQueueCapacity;
+    }
+
+    public void setPaymentQueueCapacity(int paymentQueueCapacity) {
+        this.paymentQueueCapacity = paymentQueueCapacity;
+    }
+
+    public int getPaymentReleaseAttempts() {
+        return paymentReleaseAttempts;
+    }
+
+    public void setPaymentReleaseAttempts(int paymentReleaseAttempts) {
+        this.paymentReleaseAttempts = paymentReleaseAttempts;
+    }
+
+    public int getPaymentRetryDelayMinutes() {
+        return paymentRetryDelayMinutes;
+    }
+
+    public void setPaymentRetryDelayMinutes(int paymentRetryDelayMinutes) {
+        this.paymentRetryDelayMinutes = paymentRetryDelayMinutes;
+    }
+}
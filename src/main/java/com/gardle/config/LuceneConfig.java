@@ -1,16 +1,32 @@
 package com.gardle.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 import javax.persistence.EntityManagerFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 @Configuration
 public class LuceneConfig {
+
+    private static final String DIRECTORY_PROVIDER = "spring.jpa.properties.hibernate.search.default.directory_provider";
+    private static final String INDEX_BASE = "spring.jpa.properties.hibernate.search.default.indexBase";
+
+    @Bean
+    public LuceneIndexServiceBean luceneIndexServiceBean(EntityManagerFactory entityManagerFactory,
+                                                         LuceneIndexingProperties luceneIndexingProperties,
+                                                         Environment environment, MeterRegistry meterRegistry) {
+        String directoryProvider = environment.getProperty(DIRECTORY_PROVIDER, "filesystem");
+        Path indexBase = "local-heap".equals(directoryProvider) || "ram".equals(directoryProvider) ? null
+            : Paths.get(environment.getProperty(INDEX_BASE, "."));
+        return new LuceneIndexServiceBean(entityManagerFactory, luceneIndexingProperties, indexBase, meterRegistry);
+    }
+
     @Bean
-    public LuceneIndexServiceBean luceneIndexServiceBean(EntityManagerFactory entityManagerFactory) {
-        LuceneIndexServiceBean luceneIndexServiceBean = new LuceneIndexServiceBean(entityManagerFactory);
-        luceneIndexServiceBean.triggerIndexing();
-        return luceneIndexServiceBean;
+    public LuceneIndexHealthIndicator luceneIndexHealthIndicator(LuceneIndexServiceBean luceneIndexServiceBean) {
+        return new LuceneIndexHealthIndicator(luceneIndexServiceBean);
     }
 }
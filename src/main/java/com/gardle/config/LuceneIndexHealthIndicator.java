@@ -0,0 +1,27 @@
+package com.gardle.config;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports the node OUT_OF_SERVICE (http 503 on the health endpoint) until the lucene index is usable, which keeps
+ * the node out of the load balancer while the index is rebuilt.
+ */
+public class LuceneIndexHealthIndicator extends AbstractHealthIndicator {
+
+    private final LuceneIndexServiceBean luceneIndexServiceBean;
+
+    public LuceneIndexHealthIndicator(LuceneIndexServiceBean luceneIndexServiceBean) {
+        this.luceneIndexServiceBean = luceneIndexServiceBean;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (luceneIndexServiceBean.isReady()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetail("progress", luceneIndexServiceBean.getProgress());
+    }
+}
@@ -1,27 +1,343 @@
 package com.gardle.config;
 
-import org.hibernate.search.jpa.FullTextEntityManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.hibernate.search.jpa.Search;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
+/**
+ * Rebuilds the lucene index in the background once the application is ready.
+ * <p>
+ * The rebuild is skipped if the index is current: after every rebuild and on a clean shutdown a high-water mark of
+ * the database (count and last modification of gardenfields and leasings) is stored next to the index, a node only
+ * rebuilds if the mark differs. A lock file in the index directory makes sure only one node sharing the index
+ * rebuilds it, the others wait for it and then use its result. A failed rebuild is retried with an increasing delay.
+ * Until the index is usable {@link #isReady()} is false, which is reported by the {@link LuceneIndexHealthIndicator}.
+ * The progress and the failed rebuilds are exported as {@code lucene.indexing.*} metrics.
+ */
 public class LuceneIndexServiceBean {
     private final static Logger LOGGER = LoggerFactory.getLogger(LuceneIndexServiceBean.class);
 
-    private final FullTextEntityManager fullTextEntityManager;
+    static final String HIGH_WATER_MARK_FILE = "gardle-high-water-mark";
+    static final String LOCK_FILE = "gardle-mass-indexing.lock";
+    private static final long LOCK_POLL_MILLIS = 5000;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
 
-    public LuceneIndexServiceBean(EntityManagerFactory entityManagerFactory) {
-        fullTextEntityManager = Search.getFullTextEntityManager(entityManagerFactory.createEntityManager());
+    private final EntityManagerFactory entityManagerFactory;
+    private final LuceneIndexingProperties luceneIndexingProperties;
+
+    /**
+     * null for in-memory directories, which start empty on every node
+     */
+    @Nullable
+    private final Path indexBase;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lucene-mass-indexing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong documentsAdded = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile boolean ready = false;
+
+    public LuceneIndexServiceBean(EntityManagerFactory entityManagerFactory,
+                                  LuceneIndexingProperties luceneIndexingProperties, @Nullable Path indexBase,
+                                  MeterRegistry meterRegistry) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.luceneIndexingProperties = luceneIndexingProperties;
+        this.indexBase = indexBase;
+        Gauge.builder("lucene.indexing.progress", this, LuceneIndexServiceBean::getProgress)
+            .description("Progress of the lucene mass indexing, between 0 and 1")
+            .register(meterRegistry);
+        Gauge.builder("lucene.indexing.ready", this, bean -> bean.isReady() ? 1 : 0)
+            .description("1 once the lucene index is usable")
+            .register(meterRegistry);
+        FunctionCounter.builder("lucene.indexing.documents", documentsAdded, AtomicLong::get)
+            .description("Documents added by the lucene mass indexing")
+            .register(meterRegistry);
+        FunctionCounter.builder("lucene.indexing.failures", failures, AtomicLong::get)
+            .description("Failed lucene mass indexing attempts, each one is retried")
+            .register(meterRegistry);
     }
 
+    public boolean isReady() {
+        return ready;
+    }
+
+    public double getProgress() {
+        if (ready) {
+            return 1.0;
+        }
+        long total = totalCount.get();
+        return total == 0 ? 0.0 : Math.min(1.0, documentsAdded.get() / (double) total);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
     public void triggerIndexing() {
+        executor.execute(this::indexIfOutdated);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores the high-water mark on shutdown, so the next start of an unchanged database does not rebuild the index.
+     * The mark is read first and only stored if {@code awaitIndexed} confirms that the index contains every change
+     * committed up to then, otherwise the next start rebuilds the index.
+     */
+    public void storeHighWaterMark(@NotNull BooleanSupplier awaitIndexed) {
+        if (!ready || indexBase == null) {
+            return;
+        }
+        try (IndexLock lock = IndexLock.tryAcquire(indexBase)) {
+            if (lock == null) {
+                return;
+            }
+            HighWaterMark highWaterMark = readDatabaseHighWaterMark();
+            if (awaitIndexed.getAsBoolean()) {
+                writeHighWaterMark(highWaterMark);
+            } else {
+                LOGGER.warn("Lucene index did not catch up with the database, not storing the high-water mark");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not store lucene high-water mark: {}", e.getMessage());
+        }
+    }
+
+    private void indexIfOutdated() {
+        long retryDelay = RETRY_DELAY_MILLIS;
+        while (!ready) {
+            try {
+                indexOrWaitForOtherNode();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                failures.incrementAndGet();
+                LOGGER.error("Lucene mass indexing failed, retrying in {} ms", retryDelay, e);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void indexOrWaitForOtherNode() throws IOException, InterruptedException {
+        if (indexBase == null) {
+            if (readDatabaseHighWaterMark().isEmpty()) {
+                LOGGER.debug("No gardenfields, skipping lucene mass indexing");
+            } else {
+                massIndex();
+            }
+            ready = true;
+            return;
+        }
+        boolean waited = false;
+        while (true) {
+            try (IndexLock lock = IndexLock.tryAcquire(indexBase)) {
+                if (lock != null) {
+                    indexIfOutdated(waited);
+                    ready = true;
+                    return;
+                }
+            }
+            if (!waited) {
+                LOGGER.info("Lucene index is rebuilt by another node, waiting for it");
+                waited = true;
+            }
+            Thread.sleep(LOCK_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Has to hold the {@link IndexLock}.
+     */
+    private void indexIfOutdated(boolean waitedForOtherNode) throws IOException, InterruptedException {
+        String storedHighWaterMark = readStoredHighWaterMark();
+        //the other node rebuilt the index, changes since then were indexed by the running nodes
+        if (waitedForOtherNode && storedHighWaterMark != null) {
+            LOGGER.info("Lucene index was rebuilt by another node");
+            return;
+        }
+        HighWaterMark highWaterMark = readDatabaseHighWaterMark();
+        if (luceneIndexingProperties.isSkipWhenCurrent() && highWaterMark.toString().equals(storedHighWaterMark)) {
+            LOGGER.info("Lucene index is current ({}), skipping mass indexing", highWaterMark);
+            return;
+        }
+        //a crash during the rebuild must not leave a mark of a half built index behind
+        Files.deleteIfExists(indexBase.resolve(HIGH_WATER_MARK_FILE));
+        massIndex();
+        writeHighWaterMark(highWaterMark);
+    }
+
+    private void massIndex() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        totalCount.set(0);
+        documentsAdded.set(0);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Search.getFullTextEntityManager(entityManager).createIndexer()
+                .threadsToLoadObjects(luceneIndexingProperties.getThreadsToLoadObjects())
+                .batchSizeToLoadObjects(luceneIndexingProperties.getBatchSizeToLoadObjects())
+                .idFetchSize(luceneIndexingProperties.getIdFetchSize())
+                .progressMonitor(new ProgressMonitor())
+                .startAndWait();
+        } finally {
+            entityManager.close();
+        }
+        LOGGER.info("Lucene index created with {} documents in {} ms", documentsAdded.get(),
+            System.currentTimeMillis() - start);
+    }
+
+    private HighWaterMark readDatabaseHighWaterMark() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
         try {
-            fullTextEntityManager.createIndexer().startAndWait();
-            LOGGER.debug("Lucene index created");
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            Object[] gardenFields = (Object[]) entityManager
+                .createQuery("select count(g), max(g.lastModifiedDate) from GardenField g").getSingleResult();
+            Object[] leasings = (Object[]) entityManager
+                .createQuery("select count(l), max(l.lastModifiedDate) from Leasing l").getSingleResult();
+            return new HighWaterMark((Long) gardenFields[0], (Instant) gardenFields[1], (Long) leasings[0],
+                (Instant) leasings[1]);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Nullable
+    private String readStoredHighWaterMark() throws IOException {
+        Path file = indexBase.resolve(HIGH_WATER_MARK_FILE);
+        return Files.exists(file) ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim() : null;
+    }
+
+    private void writeHighWaterMark(HighWaterMark highWaterMark) throws IOException {
+        Files.write(indexBase.resolve(HIGH_WATER_MARK_FILE), highWaterMark.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private final class ProgressMonitor implements MassIndexerProgressMonitor {
+
+        @Override
+        public void addToTotalCount(long count) {
+            totalCount.addAndGet(count);
+            LOGGER.info("Lucene mass indexing of {} entities started", count);
+        }
+
+        @Override
+        public void documentsAdded(long increment) {
+            documentsAdded.addAndGet(increment);
+        }
+
+        @Override
+        public void documentsBuilt(int number) {
+        }
+
+        @Override
+        public void entitiesLoaded(int size) {
+        }
+
+        @Override
+        public void indexingCompleted() {
+            LOGGER.debug("Lucene mass indexing completed");
+        }
+    }
+
+    private static final class HighWaterMark {
+        private final long gardenFields;
+        @Nullable
+        private final Instant gardenFieldsModified;
+        private final long leasings;
+        @Nullable
+        private final Instant leasingsModified;
+
+        private HighWaterMark(long gardenFields, @Nullable Instant gardenFieldsModified, long leasings,
+                              @Nullable Instant leasingsModified) {
+            this.gardenFields = gardenFields;
+            this.gardenFieldsModified = gardenFieldsModified;
+            this.leasings = leasings;
+            this.leasingsModified = leasingsModified;
+        }
+
+        private boolean isEmpty() {
+            return gardenFields == 0;
+        }
+
+        @Override
+        public String toString() {
+            return gardenFields + ";" + gardenFieldsModified + ";" + leasings + ";" + leasingsModified;
+        }
+    }
+
+    /**
+     * Exclusive lock on a file in the index directory, shared by all nodes using the same (network) directory.
+     */
+    private static final class IndexLock implements AutoCloseable {
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private IndexLock(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        @Nullable
+        private static IndexLock tryAcquire(Path indexBase) throws IOException {
+            Files.createDirectories(indexBase);
+            FileChannel channel = FileChannel.open(indexBase.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+            FileLock lock = null;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                //held by this jvm
+            } finally {
+                if (lock == null) {
+                    channel.close();
+                }
+            }
+            return lock == null ? null : new IndexLock(channel, lock);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                channel.close();
+            }
         }
     }
 }
@@ -0,0 +1,114 @@
+package com.gardle.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tuning of the lucene mass indexing on startup, see {@link LuceneIndexServiceBean}, and of the replication of
+ * index changes between the nodes, see {@link com.gardle.service.GardenFieldIndexReplication}, and of the asynchronous
+ * indexing, see {@link com.gardle.service.GardenFieldIndexingQueue}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "lucene.indexing")
+public class LuceneIndexingProperties {
+
+    private int threadsToLoadObjects = 2;
+
+    private int batchSizeToLoadObjects = 25;
+
+    private int idFetchSize = 100;
+
+    private boolean skipWhenCurrent = true;
+
+    private boolean changeLogReplication = false;
+
+    private int changeLogRetentionHours = 24;
+
+    private boolean asyncIndexing = false;
+
+    private int queueCapacity = 10000;
+
+    private int queueBatchSize = 100;
+
+    private long queueOfferTimeoutMillis = 5000;
+
+    public int getThreadsToLoadObjects() {
+        return threadsToLoadObjects;
+    }
+
+    public void setThreadsToLoadObjects(int threadsToLoadObjects) {
+        this.threadsToLoadObjects = threadsToLoadObjects;
+    }
+
+    public int getBatchSizeToLoadObjects() {
+        return batchSizeToLoadObjects;
+    }
+
+    public void setBatchSizeToLoadObjects(int batchSizeToLoadObjects) {
+        this.batchSizeToLoadObjects = batchSizeToLoadObjects;
+    }
+
+    public int getIdFetchSize() {
+        return idFetchSize;
+    }
+
+    public void setIdFetchSize(int idFetchSize) {
+        this.idFetchSize = idFetchSize;
+    }
+
+    public boolean isSkipWhenCurrent() {
+        return skipWhenCurrent;
+    }
+
+    public void setSkipWhenCurrent(boolean skipWhenCurrent) {
+        this.skipWhenCurrent = skipWhenCurrent;
+    }
+
+    public boolean isChangeLogReplication() {
+        return changeLogReplication;
+    }
+
+    public void setChangeLogReplication(boolean changeLogReplication) {
+        this.changeLogReplication = changeLogReplication;
+    }
+
+    public int getChangeLogRetentionHours() {
+        return changeLogRetentionHours;
+    }
+
+    public void setChangeLogRetentionHours(int changeLogRetentionHours) {
+        this.changeLogRetentionHours = changeLogRetentionHours;
+    }
+
+    public boolean isAsyncIndexing() {
+        return asyncIndexing;
+    }
+
+    public void setAsyncIndexing(boolean asyncIndexing) {
+        this.asyncIndexing = asyncIndexing;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueBatchSize() {
+        return queueBatchSize;
+    }
+
+    public void setQueueBatchSize(int queueBatchSize) {
+        this.queueBatchSize = queueBatchSize;
+    }
+
+    public long getQueueOfferTimeoutMillis() {
+        return queueOfferTimeoutMillis;
+    }
+
+    public void setQueueOfferTimeoutMillis(long queueOfferTimeoutMillis) {
+        this.queueOfferTimeoutMillis = queueOfferTimeoutMillis;
+    }
+}
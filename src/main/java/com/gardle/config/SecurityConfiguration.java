@@ -94,7 +94,9 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/api/v1/gardenfields/{\\d+}/downloadThumbnail/*").permitAll()
             .antMatchers("/api/v1/gardenfields/{\\d+}/downloadImages").permitAll()
             .antMatchers("/api/v1/gardenfields/{\\d+}/coverImageName").permitAll()
+            .antMatchers("/api/v1/gardenfields/filter/facets").permitAll()
             .antMatchers("/api/v1/leasings/{\\d+}/leasedDateRanges").permitAll()
+            .antMatchers("/api/v1/leasings/{\\d+}/availabilityCalendar").permitAll()
             .antMatchers("/api/v1/**").authenticated()
             .antMatchers("/websocket/tracker").hasAuthority(AuthoritiesConstants.ADMIN)
             .antMatchers("/websocket/**").permitAll()
@@ -1,6 +1,7 @@
 package com.gardle.config;
 
 import com.gardle.security.AuthoritiesConstants;
+import com.gardle.web.websocket.BrokerFanOut;
 import io.github.jhipster.config.JHipsterProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -29,15 +30,26 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
 
     public static final String IP_ADDRESS = "IP_ADDRESS";
 
+    /**
+     * Destinations between the nodes, relayed by the {@link BrokerFanOut}. Not handled by the broker and neither
+     * subscribable nor sendable by clients, see {@link WebsocketSecurityConfiguration}.
+     */
+    public static final String INTERNAL_DESTINATION_PREFIX = "/internal/";
+
     private final JHipsterProperties jHipsterProperties;
+    private final BrokerFanOut brokerFanOut;
 
-    public WebsocketConfiguration(JHipsterProperties jHipsterProperties) {
+    public WebsocketConfiguration(JHipsterProperties jHipsterProperties, BrokerFanOut brokerFanOut) {
         this.jHipsterProperties = jHipsterProperties;
+        this.brokerFanOut = brokerFanOut;
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic", "/queue");
+        config.setUserDestinationPrefix("/user");
+        // relays the messages to the brokers of the other nodes
+        config.configureBrokerChannel().interceptors(brokerFanOut);
     }
 
     @Override
@@ -48,6 +60,11 @@ public class WebsocketConfiguration implements WebSocketMessageBrokerConfigurer
             .setAllowedOrigins(allowedOrigins)
             .withSockJS()
             .setInterceptors(httpSessionHandshakeInterceptor());
+        registry.addEndpoint("/websocket/notifications")
+            .setHandshakeHandler(defaultHandshakeHandler())
+            .setAllowedOrigins(allowedOrigins)
+            .withSockJS()
+            .setInterceptors(httpSessionHandshakeInterceptor());
     }
 
     @Bean
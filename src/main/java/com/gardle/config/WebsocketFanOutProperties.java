@@ -0,0 +1,75 @@
+package com.gardle.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Relay of broker messages between the nodes, see {@link com.gardle.web.websocket.BrokerFanOut}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "websocket.fan-out")
+public class WebsocketFanOutProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * postgres channel, has to be a plain lower case identifier
+     */
+    private String channel = "websocket_fan_out";
+
+    private int batchSize = 50;
+
+    private long flushIntervalMillis = 20;
+
+    private int queueCapacity = 10000;
+
+    private int deduplicationCapacity = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getDeduplicationCapacity() {
+        return deduplicationCapacity;
+    }
+
+    public void setDeduplicationCapacity(int deduplicationCapacity) {
+        this.deduplicationCapacity = deduplicationCapacity;
+    }
+}
@@ -19,6 +19,8 @@ public class WebsocketSecurityConfiguration extends AbstractSecurityWebSocketMes
             // (i.e. cannot subscribe to /topic/messages/* to get messages sent to
             // /topic/messages-user<id>)
             .simpDestMatchers("/topic/**").authenticated()
+            // the broker resolves /user/queue/** to the session of the connected user only
+            .simpSubscribeDestMatchers("/user/queue/notifications").hasAuthority(AuthoritiesConstants.USER)
             // message types other than MESSAGE and SUBSCRIBE
             .simpTypeMatchers(SimpMessageType.MESSAGE, SimpMessageType.SUBSCRIBE).denyAll()
             // catch all
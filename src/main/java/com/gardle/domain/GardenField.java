@@ -1,7 +1,12 @@
 package com.gardle.domain;
 
+import com.gardle.domain.bridge.ReservedLeasingDaysFieldBridge;
+import com.gardle.domain.listener.GardenFieldChangeListener;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.ngram.EdgeNGramFilterFactory;
 import org.apache.lucene.analysis.standard.StandardFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.hibernate.annotations.Where;
@@ -11,6 +16,7 @@ import org.hibernate.validator.constraints.SafeHtml;
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 @Entity
@@ -24,13 +30,40 @@ import java.util.List;
  */
 @AnalyzerDefs({
     @AnalyzerDef(name = "descriptionAnalyzer",
+        tokenizer = @TokenizerDef(factory = StandardTokenizerFactory.class),
+        filters = {
+            @TokenFilterDef(factory = StandardFilterFactory.class),
+            @TokenFilterDef(factory = LowerCaseFilterFactory.class)
+        }),
+    /*
+      indexes every word prefix (edge n-grams) of name and city, so an autocomplete lookup is a plain term query
+      instead of a fuzzy query; the query side only tokenizes and lowercases, see autocompleteQueryAnalyzer
+     */
+    @AnalyzerDef(name = "autocompleteEdgeNGramAnalyzer",
+        tokenizer = @TokenizerDef(factory = StandardTokenizerFactory.class),
+        filters = {
+            @TokenFilterDef(factory = StandardFilterFactory.class),
+            @TokenFilterDef(factory = LowerCaseFilterFactory.class),
+            @TokenFilterDef(factory = EdgeNGramFilterFactory.class, params = {
+                @Parameter(name = "minGramSize", value = "1"),
+                @Parameter(name = "maxGramSize", value = "20")
+            })
+        }),
+    @AnalyzerDef(name = "autocompleteQueryAnalyzer",
         tokenizer = @TokenizerDef(factory = StandardTokenizerFactory.class),
         filters = {
             @TokenFilterDef(factory = StandardFilterFactory.class),
             @TokenFilterDef(factory = LowerCaseFilterFactory.class)
         })
 })
+/*
+  all fields shown on a search result card are stored in the index, so search results can be built from projections
+  without loading the entities, see GardenFieldSearchRepositoryImpl#PROJECTED_FIELDS
+  the amenities, the price and the size additionally have facets (doc values) for the facet counts of the filter sidebar,
+  price and size have separate sortable fields, as facet and sort doc values of the same field name would clash
+ */
 @Where(clause = "deleted IS NULL")
+@EntityListeners(GardenFieldChangeListener.class)
 public class GardenField extends AbstractDeletableAuditingEntity implements Serializable {
     @Transient
     private static final Double PRIZE_CALCULATION_PERIOD_IN_DAYS = 30.0;
@@ -38,19 +71,28 @@ public class GardenField extends AbstractDeletableAuditingEntity implements Seri
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gardenField_sequenceGenerator")
     @SequenceGenerator(name = "gardenField_sequenceGenerator")
+    //unique tie breaker for sorted and cursor paging
+    @Field(name = "idSort")
+    @SortableField(forField = "idSort")
     private Long id;
 
     @NotBlank
     @Fields({
-        @Field(name = "name")
+        @Field(name = "name", store = Store.YES),
+        @Field(name = "nameAutocomplete", analyzer = @Analyzer(definition = "autocompleteEdgeNGramAnalyzer"))
     })
     @Size(max = 100)
     private String name;
 
     @Positive
     @NotNull
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "sizeInM2Sort")
+    })
     @NumericField(forField = "sizeInM2")
+    @Facet(forField = "sizeInM2", encoding = FacetEncodingType.DOUBLE)
+    @SortableField(forField = "sizeInM2Sort")
     private Double sizeInM2;
 
     @PositiveOrZero
@@ -61,25 +103,59 @@ public class GardenField extends AbstractDeletableAuditingEntity implements Seri
 
     @NotNull
     @Latitude
+    @Fields({
+        @Field(store = Store.YES),
+        //doc values for the exact distance check of the radius search, see GeoDistanceQuery
+        @Field(name = "latitudeValue")
+    })
+    @NumericField(forField = "latitude")
+    @SortableField(forField = "latitudeValue")
     private Double latitude;
 
     @NotNull
     @Longitude
+    @Fields({
+        @Field(store = Store.YES),
+        //doc values for the exact distance check of the radius search, see GeoDistanceQuery
+        @Field(name = "longitudeValue")
+    })
+    @NumericField(forField = "longitude")
+    @SortableField(forField = "longitudeValue")
     private Double longitude;
 
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "roofedFacet", analyze = Analyze.NO)
+    })
+    @Facet(forField = "roofedFacet", encoding = FacetEncodingType.STRING)
     private Boolean roofed;
 
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "glassHouseFacet", analyze = Analyze.NO)
+    })
+    @Facet(forField = "glassHouseFacet", encoding = FacetEncodingType.STRING)
     private Boolean glassHouse;
 
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "highFacet", analyze = Analyze.NO)
+    })
+    @Facet(forField = "highFacet", encoding = FacetEncodingType.STRING)
     private Boolean high;
 
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "waterFacet", analyze = Analyze.NO)
+    })
+    @Facet(forField = "waterFacet", encoding = FacetEncodingType.STRING)
     private Boolean water;
 
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "electricityFacet", analyze = Analyze.NO)
+    })
+    @Facet(forField = "electricityFacet", encoding = FacetEncodingType.STRING)
     private Boolean electricity;
 
     @PositiveOrZero
@@ -88,14 +164,15 @@ public class GardenField extends AbstractDeletableAuditingEntity implements Seri
     private Double phValue;
 
     @Size(max = 1000)
-    @Field
+    @Field(store = Store.YES)
     @Analyzer(definition = "descriptionAnalyzer")
     @SafeHtml
     private String description;
 
     @NotNull
     @Fields({
-        @Field(name = "city")
+        @Field(name = "city", store = Store.YES),
+        @Field(name = "cityAutocomplete", analyzer = @Analyzer(definition = "autocompleteEdgeNGramAnalyzer"))
     })
     private String city;
 
@@ -103,6 +180,7 @@ public class GardenField extends AbstractDeletableAuditingEntity implements Seri
     @NotNull
     private User owner;
 
+    @Field(analyze = Analyze.NO, store = Store.YES)
     private String coverImage;
 
     @ManyToMany
@@ -119,16 +197,38 @@ public class GardenField extends AbstractDeletableAuditingEntity implements Seri
     )
     private List<User> neighboursOf;
 
-    @OneToMany
-    @IndexedEmbedded(includePaths = {"from", "to"})
+    @OneToMany(mappedBy = "gardenField")
+    @Field(name = ReservedLeasingDaysFieldBridge.FIELD_NAME, analyze = Analyze.NO,
+        bridge = @FieldBridge(impl = ReservedLeasingDaysFieldBridge.class))
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Leasing> leasings;
 
     // = price for the field per one month period (=30 days)
-    @Field
+    @Fields({
+        @Field(store = Store.YES),
+        @Field(name = "pricePerMonthSort")
+    })
+    @Facet(forField = "pricePerMonth", encoding = FacetEncodingType.DOUBLE)
+    @SortableField(forField = "pricePerMonthSort")
     @Positive
     @NotNull
     private Double pricePerMonth;
 
+    /**
+     * Adds the leasing to both sides of the association. The reindex of the gardenfield triggered by a change of the
+     * leasing ({@code @ContainedIn}) reads the reserved days from this collection, which is not reloaded within the
+     * session.
+     */
+    public GardenField addLeasing(Leasing leasing) {
+        if (this.leasings == null) {
+            this.leasings = new ArrayList<>();
+        }
+        this.leasings.add(leasing);
+        leasing.setGardenField(this);
+        return this;
+    }
+
     @PrePersist
     @PreUpdate
     private void setPricePerMonth() {
@@ -0,0 +1,41 @@
+package com.gardle.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * One change of a gardenfield document, appended in the transaction of the change and consumed by the
+ * lucene index of every node, see {@link com.gardle.service.GardenFieldIndexReplication}.
+ * Ordered by the identity column.
+ */
+@Data
+@Entity
+@Table(name = "index_change_log", indexes = {
+    @Index(name = "idx_index_change_log_created_date", columnList = "created_date"),
+    @Index(name = "idx_index_change_log_garden_field_id", columnList = "garden_field_id, id")
+})
+@NoArgsConstructor
+public class IndexChangeLogEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "garden_field_id", nullable = false)
+    private Long gardenFieldId;
+
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate;
+
+    public IndexChangeLogEntry(Long id, Long gardenFieldId, Instant createdDate) {
+        this.id = id;
+        this.gardenFieldId = gardenFieldId;
+        this.createdDate = createdDate;
+    }
+}
@@ -1,8 +1,11 @@
 package com.gardle.domain;
 
 import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.domain.listener.LeasingChangeListener;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Where;
+import org.hibernate.search.annotations.ContainedIn;
 import org.hibernate.search.annotations.Field;
 
 import javax.persistence.*;
@@ -21,6 +24,7 @@ import java.util.Set;
 @Data
 @Table(name = "leasing")
 @Where(clause = "deleted IS NULL")
+@EntityListeners(LeasingChangeListener.class)
 public class Leasing extends AbstractDeletableAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -40,12 +44,15 @@ public class Leasing extends AbstractDeletableAuditingEntity implements Serializ
     @Field
     private Instant to;
 
+    //indexed so that a status change marks the leasing dirty and reindexes the gardenfield, see @ContainedIn
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     @NotNull
+    @Field
     private LeasingStatus status;
 
     @ManyToMany
+    @BatchSize(size = 20)
     @JoinTable(name = "leasing_message",
         joinColumns = @JoinColumn(name = "leasing_id", referencedColumnName = "id"),
         inverseJoinColumns = @JoinColumn(name = "message_id", referencedColumnName = "id"))
@@ -57,11 +64,19 @@ public class Leasing extends AbstractDeletableAuditingEntity implements Serializ
 
     @ManyToOne
     @NotNull
+    @ContainedIn
     private GardenField gardenField;
 
     @NotNull
     private String paymentSessionId;
 
+    /**
+     * Attempts to release the payment of a leasing cancelled by the {@link com.gardle.service.LeasingExpiryJob},
+     * null if there is no payment to release (anymore).
+     */
+    @Column(name = "payment_release_attempts")
+    private Integer paymentReleaseAttempts;
+
     public Leasing from(Instant from) {
         this.from = from;
         return this;
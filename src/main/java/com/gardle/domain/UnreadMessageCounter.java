@@ -0,0 +1,35 @@
+package com.gardle.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Number of unopened messages addressed to a user, maintained by the writes of messages, see
+ * {@link com.gardle.service.UnreadMessageCounterService}. The revision is incremented on every change.
+ */
+@Data
+@Entity
+@Table(name = "unread_message_counter")
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnreadMessageCounter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "unread", nullable = false)
+    private int unread;
+
+    @Column(name = "revision", nullable = false)
+    private long revision;
+}
@@ -0,0 +1,59 @@
+package com.gardle.domain.bridge;
+
+import com.gardle.domain.Leasing;
+import com.gardle.domain.enumeration.LeasingStatus;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.hibernate.search.bridge.LuceneOptions;
+import org.hibernate.search.bridge.MetadataProvidingFieldBridge;
+import org.hibernate.search.bridge.spi.FieldMetadataBuilder;
+import org.hibernate.search.bridge.spi.FieldType;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Indexes every (UTC) day covered by a RESERVED leasing of a gardenfield as numeric value, so a search can exclude
+ * gardenfields with an overlapping reservation by a single range query on {@link #FIELD_NAME}.
+ * <p>
+ * A from/to pair of a multi valued field would not stay correlated in the lucene document, therefore the days
+ * themselves are indexed. Open, rejected, cancelled and deleted leasings are skipped.
+ */
+public class ReservedLeasingDaysFieldBridge implements MetadataProvidingFieldBridge {
+
+    public static final String FIELD_NAME = "reservedDays";
+
+    public static long toEpochDay(Instant instant) {
+        return instant.atZone(ZoneOffset.UTC).toLocalDate().toEpochDay();
+    }
+
+    @Override
+    public void configureFieldMetadata(String name, FieldMetadataBuilder builder) {
+        builder.field(name, FieldType.LONG);
+    }
+
+    @Override
+    public void set(String name, Object value, Document document, LuceneOptions luceneOptions) {
+        if (value == null) {
+            return;
+        }
+        Collection<?> leasings = value instanceof Collection ? (Collection<?>) value : Collections.singleton(value);
+        for (Object element : leasings) {
+            Leasing leasing = (Leasing) element;
+            if (isActiveReservation(leasing)) {
+                long lastDay = toEpochDay(leasing.getTo());
+                for (long day = toEpochDay(leasing.getFrom()); day <= lastDay; day++) {
+                    document.add(new LongField(name, day, Field.Store.NO));
+                }
+            }
+        }
+    }
+
+    private boolean isActiveReservation(Leasing leasing) {
+        return leasing != null && LeasingStatus.RESERVED.equals(leasing.getStatus()) && leasing.getDeleted() == null
+            && leasing.getFrom() != null && leasing.getTo() != null;
+    }
+}
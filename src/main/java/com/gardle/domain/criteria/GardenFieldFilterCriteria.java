@@ -2,11 +2,13 @@ package com.gardle.domain.criteria;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.Instant;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class GardenFieldFilterCriteria {
     private LocationFilterCriteria locationFilterCriteria;
     private Double minPricePerM2;
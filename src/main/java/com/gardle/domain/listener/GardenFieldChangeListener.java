@@ -0,0 +1,54 @@
+package com.gardle.domain.listener;
+
+import com.gardle.domain.GardenField;
+import com.gardle.service.*;
+import com.gardle.service.dto.GardenFieldLocationDTO;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.Collections;
+
+/**
+ * JPA entity listener which keeps the in-memory views of gardenfields current whenever a {@link GardenField} is
+ * created, changed or deleted: it marks the {@link GardenFieldFilterBoundaries} outdated and hands the change to the
+ * {@link GardenFieldIndexReplication} log or the {@link GardenFieldIndexingQueue}, depending on the configuration.
+ * The {@link GardenFieldSearchCache} and the cluster tiles of the {@link GardenFieldClusterService} are only
+ * invalidated here if hibernate search indexes the change at commit, otherwise the queue invalidates them once it
+ * applied the change.
+ * Instantiated by hibernate through the spring bean container.
+ */
+public class GardenFieldChangeListener {
+
+    private final GardenFieldSearchCache gardenFieldSearchCache;
+    private final GardenFieldFilterBoundaries gardenFieldFilterBoundaries;
+    private final GardenFieldClusterService gardenFieldClusterService;
+    private final GardenFieldIndexReplication gardenFieldIndexReplication;
+    private final GardenFieldIndexingQueue gardenFieldIndexingQueue;
+
+    public GardenFieldChangeListener(GardenFieldSearchCache gardenFieldSearchCache,
+                                     GardenFieldFilterBoundaries gardenFieldFilterBoundaries,
+                                     GardenFieldClusterService gardenFieldClusterService,
+                                     GardenFieldIndexReplication gardenFieldIndexReplication,
+                                     GardenFieldIndexingQueue gardenFieldIndexingQueue) {
+        this.gardenFieldSearchCache = gardenFieldSearchCache;
+        this.gardenFieldFilterBoundaries = gardenFieldFilterBoundaries;
+        this.gardenFieldClusterService = gardenFieldClusterService;
+        this.gardenFieldIndexReplication = gardenFieldIndexReplication;
+        this.gardenFieldIndexingQueue = gardenFieldIndexingQueue;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onGardenFieldWritten(GardenField gardenField) {
+        if (!gardenFieldIndexingQueue.isIndexingAsynchronously()) {
+            gardenFieldSearchCache.invalidateAll();
+            gardenFieldClusterService.invalidate(Collections.singletonList(new GardenFieldLocationDTO(
+                gardenField.getId(), gardenField.getLatitude(), gardenField.getLongitude())));
+        }
+        gardenFieldFilterBoundaries.invalidate();
+        gardenFieldIndexReplication.append(gardenField.getId());
+        gardenFieldIndexingQueue.enqueueAfterCommit(gardenField.getId());
+    }
+}
@@ -0,0 +1,49 @@
+package com.gardle.domain.listener;
+
+import com.gardle.domain.Leasing;
+import com.gardle.service.*;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener which keeps the {@link ReservedLeasingIndex} current for every status change of a
+ * {@link Leasing}, no matter if it is written by the {@link LeasingService}, a webhook or the data generators, and
+ * rebuilds the day bitmap of the {@link GardenFieldAvailabilityCalendar} from it.
+ * Every status change invalidates the entries of the {@link GardenFieldSearchCache} filtering on an overlapping leasing
+ * time, as a leasing may have left RESERVED. Every change is handed to the {@link GardenFieldIndexReplication} log or
+ * the {@link GardenFieldIndexingQueue}, the reserved days are part of the gardenfield document.
+ * Instantiated by hibernate through the spring bean container.
+ */
+public class LeasingChangeListener {
+
+    private final ReservedLeasingIndex reservedLeasingIndex;
+    private final GardenFieldAvailabilityCalendar gardenFieldAvailabilityCalendar;
+    private final GardenFieldSearchCache gardenFieldSearchCache;
+    private final GardenFieldIndexReplication gardenFieldIndexReplication;
+    private final GardenFieldIndexingQueue gardenFieldIndexingQueue;
+
+    public LeasingChangeListener(ReservedLeasingIndex reservedLeasingIndex,
+                                 GardenFieldAvailabilityCalendar gardenFieldAvailabilityCalendar,
+                                 GardenFieldSearchCache gardenFieldSearchCache,
+                                 GardenFieldIndexReplication gardenFieldIndexReplication,
+                                 GardenFieldIndexingQueue gardenFieldIndexingQueue) {
+        this.reservedLeasingIndex = reservedLeasingIndex;
+        this.gardenFieldAvailabilityCalendar = gardenFieldAvailabilityCalendar;
+        this.gardenFieldSearchCache = gardenFieldSearchCache;
+        this.gardenFieldIndexReplication = gardenFieldIndexReplication;
+        this.gardenFieldIndexingQueue = gardenFieldIndexingQueue;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onLeasingWritten(Leasing leasing) {
+        if (leasing.getGardenField() != null && leasing.getFrom() != null && leasing.getTo() != null) {
+            reservedLeasingIndex.update(leasing);
+            gardenFieldAvailabilityCalendar.update(leasing.getGardenField().getId());
+            gardenFieldSearchCache.invalidateLeasingTime(leasing.getFrom(), leasing.getTo());
+            gardenFieldIndexReplication.append(leasing.getGardenField().getId());
+            gardenFieldIndexingQueue.enqueueAfterCommit(leasing.getGardenField().getId());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.gardle.repository;
+
+import com.gardle.domain.IndexChangeLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the IndexChangeLogEntry entity.
+ * Entries are appended with plain jdbc by {@link com.gardle.service.GardenFieldIndexReplication}, because they are
+ * written from entity listeners during the flush.
+ */
+@Repository
+public interface IndexChangeLogRepository extends JpaRepository<IndexChangeLogEntry, Long> {
+
+    List<IndexChangeLogEntry> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("select max(e.id) from IndexChangeLogEntry e")
+    Long findMaxId();
+
+    /**
+     * @return per gardenfield an entry with the largest id and the latest date of its changes
+     */
+    @Query("select new com.gardle.domain.IndexChangeLogEntry(max(e.id), e.gardenFieldId, max(e.createdDate)) " +
+        "from IndexChangeLogEntry e group by e.gardenFieldId")
+    List<IndexChangeLogEntry> findLastEntryPerGardenField();
+
+    /**
+     * @return id of the last change of the gardenfield, the revision every node agrees on, null without changes
+     */
+    @Query("select max(e.id) from IndexChangeLogEntry e where e.gardenFieldId = :gardenFieldId")
+    Long findLastIdByGardenFieldId(@Param("gardenFieldId") Long gardenFieldId);
+
+    @Modifying
+    @Query("delete from IndexChangeLogEntry e where e.createdDate < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
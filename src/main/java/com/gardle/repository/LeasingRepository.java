@@ -4,17 +4,23 @@ import com.gardle.domain.GardenField;
 import com.gardle.domain.Leasing;
 import com.gardle.domain.User;
 import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.service.dto.leasing.ExpiringLeasingDTO;
 import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
+import com.gardle.service.dto.leasing.LeasingIntervalDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.Nullable;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Spring Data  repository for the Leasing entity.
@@ -22,6 +28,42 @@ import java.util.List;
 @Repository
 public interface LeasingRepository extends JpaRepository<Leasing, Long>, JpaSpecificationExecutor<Leasing> {
 
+    /**
+     * lock timeout of hibernate for SKIP LOCKED, see {@link org.hibernate.LockOptions#SKIP_LOCKED}
+     */
+    String SKIP_LOCKED = "-2";
+
+    /**
+     * Page of leasings together with their user, gardenfield and its owner, the total is counted by a separate
+     * query without the joins.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"user", "gardenField", "gardenField.owner"})
+    Page<Leasing> findAll(@Nullable Specification<Leasing> specification, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "gardenField", "gardenField.owner"})
+    List<Leasing> findAll(@Nullable Specification<Leasing> specification);
+
+    /**
+     * Initializes the messages (and their users) of all given leasings with one statement.
+     */
+    @Query("select distinct l from Leasing l left join fetch l.messages m left join fetch m.userFrom " +
+        "left join fetch m.userTo where l in :leasings")
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.PASS_DISTINCT_THROUGH, value = "false"))
+    List<Leasing> fetchMessages(@Param("leasings") Collection<Leasing> leasings);
+
+    @Query("select l.gardenField.id from Leasing l where l.id = :id")
+    Optional<Long> findGardenFieldIdById(@Param("id") Long id);
+
+    /**
+     * Loads the leasing and locks its row until the end of the transaction, so status changes of concurrent
+     * transactions, e.g. the one of the {@link com.gardle.service.LeasingExpiryJob}, are seen before the update.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from Leasing l where l.id = :id")
+    Optional<Leasing> findByIdForUpdate(@Param("id") Long id);
+
     @Query("select l from Leasing l where (:gf = l.gardenField) " +
         "and not ((l.from <= :from and l.to <= :from) or (l.from >= :to and l.to >= :to)) "
         + "and (l.status = 'RESERVED' or (l.status = 'OPEN' and l.user = :user))")
@@ -29,6 +71,16 @@ public interface LeasingRepository extends JpaRepository<Leasing, Long>, JpaSpec
                                      @Param("user") User user,
                                      @Param("from") Instant from, @Param("to") Instant to);
 
+    /**
+     * The OPEN part of {@link #findAllOverlapping}, the RESERVED part is answered by the
+     * {@link com.gardle.service.ReservedLeasingIndex}.
+     */
+    @Query("select case when count(l) > 0 then true else false end from Leasing l where l.gardenField = :gf " +
+        "and l.status = 'OPEN' and l.user = :user and l.from < :to and l.to > :from")
+    boolean existsOpenOverlapping(@Param("gf") GardenField gardenField,
+                                  @Param("user") User user,
+                                  @Param("from") Instant from, @Param("to") Instant to);
+
     @Query("Select NEW com.gardle.service.dto.leasing.LeasingDateRangeDTO(l.from, l.to) from Leasing l " +
         " where l.gardenField = :gf " +
         " and (coalesce(:status, NULL) is null or l.status = :status) " +
@@ -39,48 +91,63 @@ public interface LeasingRepository extends JpaRepository<Leasing, Long>, JpaSpec
                                                               @Param("from") Instant from,
                                                               @Param("to") Instant to);
 
-    @Query("Select l from Leasing l where l.gardenField = :gf " +
-        " and (coalesce(:statusList, NULL) is null or l.status IN (:statusList)) " +
-        " and (coalesce(:from, NULL) is null or l.from >= :from) " +
-        " and (coalesce(:to, NULL) is null or l.to <= :to)" +
-        " and (coalesce(:past, NULL) is null or l.to < :past) " +
-        " and (coalesce(:ongoing, NULL) is null or :ongoing BETWEEN l.from AND l.to) " +
-        " and (coalesce(:future, NULL) is null or l.from > :future)")
-    Page<Leasing> findAllByGardenFieldAndStatusAndFromAndTo(Pageable pageable, @Param("gf") GardenField gardenField,
-                                                            @Param("statusList") List<LeasingStatus> leasingStatusList,
-                                                            @Param("from") Instant from,
-                                                            @Param("to") Instant to,
-                                                            @Param("past") Instant past,
-                                                            @Param("ongoing") Instant ongoing,
-                                                            @Param("future") Instant future);
-
-    @Query("Select l from Leasing l where l.user = :user " +
-        " and (coalesce(:statusList, NULL) is null or l.status IN (:statusList)) " +
-        " and (coalesce(:from, NULL) is null or l.from >= :from) " +
-        " and (coalesce(:to, NULL) is null or l.to <= :to) " +
-        " and (coalesce(:past, NULL) is null or l.to < :past) " +
-        " and (coalesce(:ongoing, NULL) is null or :ongoing BETWEEN l.from AND l.to) " +
-        " and (coalesce(:future, NULL) is null or l.from > :future)")
-    Page<Leasing> findAllByUserAndStatusAndFromAndTo(Pageable pageable, @Param("user") User user,
-                                                     @Param("statusList") List<LeasingStatus> leasingStatusList,
-                                                     @Param("from") Instant from,
-                                                     @Param("to") Instant to,
-                                                     @Param("past") Instant past,
-                                                     @Param("ongoing") Instant ongoing,
-                                                     @Param("future") Instant future);
-
-    @Query("Select l from Leasing l where l.gardenField.owner = :user " +
-        " and (coalesce(:statusList, NULL) is null or l.status IN (:statusList)) " +
-        " and (coalesce(:from, NULL) is null or l.from >= :from) " +
-        " and (coalesce(:to, NULL) is null or l.to <= :to) " +
-        " and (coalesce(:past, NULL) is null or l.to < :past) " +
-        " and (coalesce(:ongoing, NULL) is null or :ongoing BETWEEN l.from AND l.to) " +
-        " and (coalesce(:future, NULL) is null or l.from > :future)")
-    Page<Leasing> findAllByOwnerAndStatusAndFromAndTo(Pageable pageable, @Param("user") User user,
-                                                      @Param("statusList") List<LeasingStatus> leasingStatusList,
-                                                      @Param("from") Instant from,
-                                                      @Param("to") Instant to,
-                                                      @Param("past") Instant past,
-                                                      @Param("ongoing") Instant ongoing,
-                                                      @Param("future") Instant future);
+    /**
+     * Next chunk of open leasings starting before the cutoff, ordered by id after the given one. The rows stay locked
+     * until the end of the transaction, rows locked by other transactions (concurrent runs on other nodes, an update
+     * of the leasing) are skipped (SKIP LOCKED, a plain FOR UPDATE on databases without it).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("select l.id from Leasing l where l.status = 'OPEN' and l.from < :cutoff and l.id > :lastId order by l.id")
+    List<Long> findExpiringOpenIds(@Param("cutoff") Instant cutoff, @Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("select count(l) from Leasing l where l.status = 'OPEN' and l.from < :cutoff")
+    long countExpiringOpen(@Param("cutoff") Instant cutoff);
+
+    @Query("Select NEW com.gardle.service.dto.leasing.ExpiringLeasingDTO(l.id, l.gardenField.id, l.paymentSessionId) " +
+        " from Leasing l where l.id in :ids")
+    List<ExpiringLeasingDTO> findExpiringByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Cancels the leasings which are still open and marks their payments to be released, the release of the first
+     * attempt follows after the commit.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Leasing l set l.status = 'CANCELLED', l.paymentReleaseAttempts = 1, " +
+        " l.lastModifiedBy = :modifiedBy, l.lastModifiedDate = :modified where l.id in :ids and l.status = 'OPEN'")
+    int cancelOpenAndMarkPaymentRelease(@Param("ids") Collection<Long> ids, @Param("modifiedBy") String modifiedBy,
+                                        @Param("modified") Instant modified);
+
+    /**
+     * Next chunk of cancelled leasings whose payment was not released by an attempt before the given date, ordered by
+     * id after the given one. Locked and skipped like {@link #findExpiringOpenIds}.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = SKIP_LOCKED))
+    @Query("select l.id from Leasing l where l.paymentReleaseAttempts < :maxAttempts and l.lastModifiedDate < :before " +
+        " and l.id > :lastId order by l.id")
+    List<Long> findPaymentReleaseIds(@Param("maxAttempts") int maxAttempts, @Param("before") Instant before,
+                                     @Param("lastId") Long lastId, Pageable pageable);
+
+    /**
+     * Counts one more attempt, the modification date keeps other runs from retrying it at the same time.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Leasing l set l.paymentReleaseAttempts = l.paymentReleaseAttempts + 1, " +
+        " l.lastModifiedBy = :modifiedBy, l.lastModifiedDate = :modified where l.id in :ids")
+    int claimPaymentRelease(@Param("ids") Collection<Long> ids, @Param("modifiedBy") String modifiedBy,
+                            @Param("modified") Instant modified);
+
+    @Modifying
+    @Query("update Leasing l set l.paymentReleaseAttempts = null where l.id = :id")
+    int clearPaymentRelease(@Param("id") Long id);
+
+    @Query("Select NEW com.gardle.service.dto.leasing.LeasingIntervalDTO(l.id, l.gardenField.id, l.from, l.to) " +
+        " from Leasing l where l.status = :status")
+    List<LeasingIntervalDTO> findAllIntervalsByStatus(@Param("status") LeasingStatus status);
+
+    @Query("Select NEW com.gardle.service.dto.leasing.LeasingIntervalDTO(l.id, l.gardenField.id, l.from, l.to) " +
+        " from Leasing l where l.status = :status and l.gardenField.id in :gardenFieldIds")
+    List<LeasingIntervalDTO> findAllIntervalsByStatusAndGardenFieldIdIn(@Param("status") LeasingStatus status,
+                                                                       @Param("gardenFieldIds") Collection<Long> gardenFieldIds);
 }
@@ -44,11 +44,24 @@ public interface MessageRepository extends JpaRepository<Message, Long>, JpaSpec
 
     Page<Message> getByThread(UUID thread, Pageable pageable);
 
+    /**
+     * @return the number of messages {@link #getUnreadNotificationsForUser} lists for the user
+     */
+    default long countUnreadNotificationsForUser(Long userId) {
+        return this.countUnreadNotificationsForUserWithParam(userId, MessageType.USER.toString()); //Workaround for native queries not taking enums
+    }
+
+    @Query(value = "SELECT (SELECT count(*) FROM message m JOIN " +
+        "(SELECT a.thread, max(a.created_date) as created_date FROM message a WHERE (a.user_to_id = :user OR a.user_from_id = :user) AND a.type = :userType GROUP BY a.thread) as s " +
+        "ON m.thread = s.thread AND m.created_date = s.created_date WHERE m.opened = false AND m.user_to_id = :user) + " +
+        "(SELECT count(*) FROM message WHERE opened = false AND type != :userType AND user_to_id = :user)", nativeQuery = true)
+    long countUnreadNotificationsForUserWithParam(@Param("user") Long userId, @Param("userType") String userType);
+
     @Modifying(clearAutomatically = true)
     @Query("UPDATE Message m SET m.opened = true WHERE m.thread = :thread AND m.userTo = :user AND m.opened = false")
-    void updateThreadToOpenedForUser(@Param("user") User user, @Param("thread") UUID thread);
+    int updateThreadToOpenedForUser(@Param("user") User user, @Param("thread") UUID thread);
 
     @Modifying(clearAutomatically = true)
     @Query("UPDATE Message m SET m.opened = true WHERE m.type <> com.gardle.domain.enumeration.MessageType.USER AND m.userTo = :user AND m.opened = false")
-    void updateSystemMessagesToOpenedForUser(@Param("user") User user);
+    int updateSystemMessagesToOpenedForUser(@Param("user") User user);
 }
@@ -0,0 +1,22 @@
+package com.gardle.repository;
+
+import com.gardle.domain.UnreadMessageCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data  repository for the UnreadMessageCounter entity.
+ */
+@Repository
+public interface UnreadMessageCounterRepository extends JpaRepository<UnreadMessageCounter, Long> {
+
+    /**
+     * @return 0 if the user has no counter yet
+     */
+    @Modifying
+    @Query("update UnreadMessageCounter c set c.unread = :unread, c.revision = c.revision + 1 where c.userId = :userId")
+    int setUnread(@Param("userId") Long userId, @Param("unread") int unread);
+}
@@ -2,21 +2,80 @@ package com.gardle.repository.search;
 
 import com.gardle.domain.GardenField;
 import com.gardle.domain.criteria.GardenFieldFilterCriteria;
+import com.gardle.service.dto.FilterBoundariesDTO;
+import com.gardle.service.dto.GardenFieldCursorPageDTO;
+import com.gardle.service.dto.GardenFieldDTO;
+import com.gardle.service.dto.GardenFieldFacetsDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
-import java.util.List;
+import java.util.*;
 
 /**
  * Provides additional search functionality with hibernate search (apache lucene)
  * Should be inherited by the corresponding repository (GardenFieldRepository)
  */
 public interface GardenFieldSearchRepository {
+
+    String SORT_DISTANCE = "distance";
+
+    /**
+     * Sort properties {@link #filterProjected} and {@link #filterAfter} support, other properties are ignored.
+     * {@link #SORT_DISTANCE} sorts by the distance to the centre of the location criteria and is ignored without one.
+     */
+    Set<String> INDEX_SORT_PROPERTIES = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList(SORT_DISTANCE, "pricePerMonth", "sizeInM2")));
+
+    /**
+     * Gardenfields matching the criteria, built from the fields stored in the index without loading any entity.
+     * Only the fields needed for a search result card are set, the owner is not.
+     */
+    @NotNull
+    Page<GardenFieldDTO> filterProjected(final Pageable pageable, @NotNull final GardenFieldFilterCriteria gardenFieldFilterCriteria);
+
+    /**
+     * Keyset ("search after") paging for infinite scrolling: returns the page following the cursor of the previous
+     * page, or the first page if the cursor is null or empty. Every page costs the same, no matter how deep.
+     * The result is sorted by the given sort and the id as unique tie breaker, {@link #SORT_DISTANCE} is not
+     * supported in this mode.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or was created for another sort
+     */
     @NotNull
-    Page<GardenField> filter(final Pageable pageable, @NotNull final GardenFieldFilterCriteria gardenFieldFilterCriteria);
+    GardenFieldCursorPageDTO filterAfter(@Nullable final String cursor, final int size, @NotNull final Sort sort,
+                                         @NotNull final GardenFieldFilterCriteria gardenFieldFilterCriteria);
 
+    /**
+     * At most five gardenfields whose name or city start with the words of the search string, found by a fuzzy
+     * search if none does. Built from the fields stored in the index.
+     */
     @NotNull
-    List<GardenField> autocompleteSearch(@Nullable final String partialSearchString);
+    List<GardenFieldDTO> autocompleteSearchProjected(@Nullable final String partialSearchString);
+
+    /**
+     * Counts the gardenfields matching the criteria per amenity value and per price and size bucket in a single
+     * lucene search. The buckets split the given boundaries into equally wide ranges, without boundaries (no
+     * gardenfield yet) there are none.
+     */
+    @NotNull
+    GardenFieldFacetsDTO facets(@NotNull final GardenFieldFilterCriteria gardenFieldFilterCriteria,
+                                @NotNull final FilterBoundariesDTO bucketBoundaries);
+
+    /**
+     * Passes id and coordinates of every gardenfield within the bounding box to the consumer. They are read from the
+     * doc values of the index, without loading stored fields or creating an object per gardenfield.
+     */
+    void forEachLocationWithin(double south, double west, double north, double east,
+                               @NotNull LocationConsumer consumer);
+
+    /**
+     * @see #forEachLocationWithin
+     */
+    @FunctionalInterface
+    interface LocationConsumer {
+        void accept(long gardenFieldId, double latitude, double longitude);
+    }
 }
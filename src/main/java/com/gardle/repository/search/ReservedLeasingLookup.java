@@ -0,0 +1,18 @@
+package com.gardle.repository.search;
+
+/**
+ * Reserved leasing intervals the gardenfield search excludes without the indexed reserved days, implemented by the
+ * in-memory {@link com.gardle.service.ReservedLeasingIndex}.
+ */
+public interface ReservedLeasingLookup {
+
+    /**
+     * @return false until the intervals are loaded, the search then falls back to the indexed reserved days
+     */
+    boolean isLoaded();
+
+    /**
+     * @return true if a RESERVED leasing of the gardenfield overlaps [from, to), both in epoch milliseconds
+     */
+    boolean isReservedBetween(long gardenFieldId, long from, long to);
+}
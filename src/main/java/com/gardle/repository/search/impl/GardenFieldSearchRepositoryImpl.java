@@ -1,17 +1,41 @@
 package com.gardle.repository.search.impl;
 
 import com.gardle.domain.GardenField;
+import com.gardle.domain.bridge.ReservedLeasingDaysFieldBridge;
 import com.gardle.domain.criteria.GardenFieldFilterCriteria;
 import com.gardle.domain.criteria.LocationFilterCriteria;
 import com.gardle.repository.search.GardenFieldSearchRepository;
+import com.gardle.repository.search.ReservedLeasingLookup;
+import com.gardle.service.dto.FacetBucketDTO;
+import com.gardle.service.dto.FilterBoundariesDTO;
+import com.gardle.service.dto.GardenFieldCursorPageDTO;
+import com.gardle.service.dto.GardenFieldDTO;
+import com.gardle.service.dto.GardenFieldFacetsDTO;
 import lombok.RequiredArgsConstructor;
-import org.apache.lucene.search.Query;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.*;
+import org.hibernate.search.annotations.Spatial;
+import org.hibernate.search.engine.ProjectionConstants;
+import org.hibernate.search.indexes.IndexReaderAccessor;
 import org.hibernate.search.jpa.FullTextEntityManager;
 import org.hibernate.search.jpa.FullTextQuery;
 import org.hibernate.search.jpa.Search;
 import org.hibernate.search.query.dsl.BooleanJunction;
+import org.hibernate.search.query.dsl.FacetRangeEndContext;
+import org.hibernate.search.query.dsl.FacetRangeStartContext;
 import org.hibernate.search.query.dsl.QueryBuilder;
-import org.hibernate.search.query.dsl.Unit;
+import org.hibernate.search.query.dsl.sort.SortDistanceFieldContext;
+import org.hibernate.search.query.dsl.sort.SortFieldContext;
+import org.hibernate.search.query.engine.spi.FacetManager;
+import org.hibernate.search.query.facet.Facet;
+import org.hibernate.search.query.facet.FacetSortOrder;
+import org.hibernate.search.query.facet.FacetingRequest;
+import org.hibernate.search.query.facet.RangeFacet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
@@ -23,43 +47,342 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Repository
 @RequiredArgsConstructor
 public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchRepository {
+    /**
+     * Fields stored in the index which are needed for a search result card, see {@link #toGardenFieldDTOs}.
+     */
+    private static final String[] PROJECTED_FIELDS = {ProjectionConstants.ID, "name", "city", "description", "sizeInM2",
+        "pricePerMonth", "latitude", "longitude", "coverImage", "roofed", "glassHouse", "high", "water", "electricity"};
+
+    private static final Set<String> STORED_FIELDS = new HashSet<>(Arrays.asList("id", "name", "city", "description",
+        "sizeInM2", "pricePerMonth", "latitude", "longitude", "coverImage", "roofed", "glassHouse", "high", "water",
+        "electricity"));
+    private static final Set<String> BOOLEAN_FIELDS = new HashSet<>(Arrays.asList("roofed", "glassHouse", "high",
+        "water", "electricity"));
+    private static final String CURSOR_VERSION = "1";
+    private static final String CURSOR_SEPARATOR = ";";
+
+    private static final int AUTOCOMPLETE_MAX_RESULTS = 5;
+
+    private static final String[] AMENITIES = {"water", "electricity", "roofed", "high", "glassHouse"};
+    private static final int FACET_BUCKETS = 5;
+
     private final EntityManager entityManager;
+    private final ReservedLeasingLookup reservedLeasingLookup;
     private final static Logger LOGGER = LoggerFactory.getLogger(GardenFieldSearchRepositoryImpl.class);
 
-    @Transactional
+    @Transactional(readOnly = true)
     @Override
     @NotNull
-    public List<GardenField> autocompleteSearch(@NotNull String partialSearchString) {
+    public List<GardenFieldDTO> autocompleteSearchProjected(@NotNull String partialSearchString) {
+        List<GardenFieldDTO> gardenFieldDTOs = toGardenFieldDTOs(createAutocompleteQuery(partialSearchString, true)
+            .setProjection(PROJECTED_FIELDS).getResultList());
+        if (gardenFieldDTOs.isEmpty()) {
+            return toGardenFieldDTOs(createAutocompleteQuery(partialSearchString, false)
+                .setProjection(PROJECTED_FIELDS).getResultList());
+        }
+        return gardenFieldDTOs;
+    }
+
+    /**
+     * @param prefix true for the cheap term lookup on the edge n-gram fields, false for the fuzzy query on name and city
+     *               which is only used if the prefix lookup found nothing (e.g. because of a typo)
+     */
+    @NotNull
+    private FullTextQuery createAutocompleteQuery(@NotNull String partialSearchString, boolean prefix) {
         FullTextEntityManager fullTextEntityManager
             = Search.getFullTextEntityManager(entityManager);
 
         QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory()
             .buildQueryBuilder()
             .forEntity(GardenField.class)
+            .overridesForField("nameAutocomplete", "autocompleteQueryAnalyzer")
+            .overridesForField("cityAutocomplete", "autocompleteQueryAnalyzer")
             .get();
         BooleanJunction<?> junction = queryBuilder.bool();
 
-        createNameAndCityQuery(queryBuilder, junction, partialSearchString);
+        if (prefix) {
+            createNameAndCityPrefixQuery(queryBuilder, junction, partialSearchString);
+        } else {
+            createNameAndCityQuery(queryBuilder, junction, partialSearchString);
+        }
         createDeletedNotNullQuery(queryBuilder, junction);
 
-        FullTextQuery fullTextQuery = fullTextEntityManager
+        return fullTextEntityManager
             .createFullTextQuery(junction.createQuery(), GardenField.class)
-            .setMaxResults(5);
+            .setMaxResults(AUTOCOMPLETE_MAX_RESULTS);
+    }
+
+    @Override
+    @NotNull
+    @Transactional(readOnly = true)
+    public Page<GardenFieldDTO> filterProjected(Pageable pageable, @NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria) {
+        FullTextQuery fullTextQuery = createFilterQuery(gardenFieldFilterCriteria, pageable.getSort())
+            .setProjection(PROJECTED_FIELDS);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(toGardenFieldDTOs(fullTextQuery.getResultList()));
+        }
+        fullTextQuery.setFirstResult((int) pageable.getOffset());
+        fullTextQuery.setMaxResults(pageable.getPageSize());
+        List<GardenFieldDTO> gardenFieldDTOs = toGardenFieldDTOs(fullTextQuery.getResultList());
+        return new PageImpl<>(gardenFieldDTOs, pageable, fullTextQuery.getResultSize());
+    }
+
+    @Override
+    @NotNull
+    @Transactional(readOnly = true)
+    public GardenFieldCursorPageDTO filterAfter(@Nullable String cursor, int size,
+                                                @NotNull org.springframework.data.domain.Sort sort,
+                                                @NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria) {
+        FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory()
+            .buildQueryBuilder().forEntity(GardenField.class).get();
+        Query combinedQuery = this.buildCombinedQuery(queryBuilder, gardenFieldFilterCriteria);
+
+        List<SortField> sortFields = new ArrayList<>();
+        Sort requestedSort = createSort(queryBuilder, sort, null);
+        if (requestedSort != null) {
+            sortFields.addAll(Arrays.asList(requestedSort.getSort()));
+        }
+        sortFields.addAll(Arrays.asList(queryBuilder.sort().byField("idSort").createSort().getSort()));
+        Sort luceneSort = new Sort(sortFields.toArray(new SortField[0]));
+        String sortHash = Integer.toHexString(luceneSort.toString().hashCode());
+        FieldDoc after = cursor == null || cursor.isEmpty() ? null : decodeCursor(cursor, sortHash, sortFields.size());
+
+        IndexReaderAccessor indexReaderAccessor = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor();
+        IndexReader indexReader = indexReaderAccessor.open(GardenField.class);
+        try {
+            IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+            //one more hit than requested tells if there is a next page
+            TopFieldDocs topDocs = indexSearcher.searchAfter(after, combinedQuery, size + 1, luceneSort);
+            int pageSize = Math.min(size, topDocs.scoreDocs.length);
+            List<Object[]> rows = new ArrayList<>(pageSize);
+            for (int i = 0; i < pageSize; i++) {
+                rows.add(toProjectionRow(indexSearcher.doc(topDocs.scoreDocs[i].doc, STORED_FIELDS)));
+            }
+            String nextCursor = topDocs.scoreDocs.length > size
+                ? encodeCursor((FieldDoc) topDocs.scoreDocs[pageSize - 1], sortHash) : null;
+            return new GardenFieldCursorPageDTO(toGardenFieldDTOs(rows), nextCursor, topDocs.totalHits);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            indexReaderAccessor.close(indexReader);
+        }
+    }
+
+    /**
+     * The cursor contains the sort values of the last hit and a hash of the sort it was created for. The lucene doc
+     * id is not part of it, it changes with segment merges; the unique idSort tie breaker makes it unnecessary.
+     */
+    @NotNull
+    private static String encodeCursor(@NotNull FieldDoc last, @NotNull String sortHash) {
+        StringBuilder cursor = new StringBuilder(CURSOR_VERSION).append(CURSOR_SEPARATOR).append(sortHash);
+        for (Object value : last.fields) {
+            cursor.append(CURSOR_SEPARATOR);
+            if (value instanceof Double) {
+                cursor.append('D').append(value);
+            } else if (value instanceof Long) {
+                cursor.append('L').append(value);
+            } else if (value == null) {
+                cursor.append('N');
+            } else {
+                throw new IllegalStateException("Unsupported sort value type: " + value.getClass());
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static FieldDoc decodeCursor(@NotNull String cursor, @NotNull String sortHash, int sortFieldCount) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(CURSOR_SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (parts.length != sortFieldCount + 2 || !CURSOR_VERSION.equals(parts[0]) || !sortHash.equals(parts[1])) {
+            throw new IllegalArgumentException("Cursor does not belong to this sort");
+        }
+        Object[] values = new Object[sortFieldCount];
+        try {
+            for (int i = 0; i < sortFieldCount; i++) {
+                String part = parts[i + 2];
+                switch (part.isEmpty() ? ' ' : part.charAt(0)) {
+                    case 'D':
+                        values[i] = Double.valueOf(part.substring(1));
+                        break;
+                    case 'L':
+                        values[i] = Long.valueOf(part.substring(1));
+                        break;
+                    case 'N':
+                        values[i] = null;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Malformed cursor");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        //hits with equal sort values are the same gardenfield (unique id), the max doc id skips it on every segment
+        return new FieldDoc(Integer.MAX_VALUE, Float.NaN, values);
+    }
+
+    /**
+     * Reads the stored fields of a hit in the order of {@link #PROJECTED_FIELDS}, like a projection would.
+     */
+    @NotNull
+    private static Object[] toProjectionRow(@NotNull Document document) {
+        Object[] row = new Object[PROJECTED_FIELDS.length];
+        row[0] = Long.valueOf(document.get("id"));
+        for (int i = 1; i < PROJECTED_FIELDS.length; i++) {
+            IndexableField field = document.getField(PROJECTED_FIELDS[i]);
+            if (field == null) {
+                continue;
+            }
+            if (field.numericValue() != null) {
+                row[i] = field.numericValue();
+            } else if (BOOLEAN_FIELDS.contains(PROJECTED_FIELDS[i])) {
+                row[i] = Boolean.valueOf(field.stringValue());
+            } else {
+                row[i] = field.stringValue();
+            }
+        }
+        return row;
+    }
+
+    @Override
+    @NotNull
+    @Transactional(readOnly = true)
+    public GardenFieldFacetsDTO facets(@NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria,
+                                       @NotNull FilterBoundariesDTO bucketBoundaries) {
+        FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory()
+            .buildQueryBuilder().forEntity(GardenField.class).get();
+        FullTextQuery fullTextQuery = createFilterQuery(gardenFieldFilterCriteria,
+            org.springframework.data.domain.Sort.unsorted());
+        //only the facets are collected, no document is loaded
+        fullTextQuery.setMaxResults(0);
+
+        FacetManager facetManager = fullTextQuery.getFacetManager();
+        for (String amenity : AMENITIES) {
+            facetManager.enableFaceting(queryBuilder.facet()
+                .name(amenity)
+                .onField(amenity + "Facet")
+                .discrete()
+                .includeZeroCounts(true)
+                .createFacetingRequest());
+        }
+        if (bucketBoundaries.getMinPrice() != null && bucketBoundaries.getMaxPrice() != null) {
+            facetManager.enableFaceting(createBucketFacetingRequest(queryBuilder, "pricePerMonth",
+                bucketBoundaries.getMinPrice(), bucketBoundaries.getMaxPrice()));
+        }
+        if (bucketBoundaries.getMinSize() != null && bucketBoundaries.getMaxSize() != null) {
+            facetManager.enableFaceting(createBucketFacetingRequest(queryBuilder, "sizeInM2",
+                bucketBoundaries.getMinSize(), bucketBoundaries.getMaxSize()));
+        }
 
-        return fullTextQuery.getResultList();
+        GardenFieldFacetsDTO gardenFieldFacetsDTO = new GardenFieldFacetsDTO();
+        gardenFieldFacetsDTO.setTotalElements(fullTextQuery.getResultSize());
+        for (String amenity : AMENITIES) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (Facet facet : facetManager.getFacets(amenity)) {
+                counts.put(facet.getValue(), facet.getCount());
+            }
+            gardenFieldFacetsDTO.getAmenities().put(amenity, counts);
+        }
+        gardenFieldFacetsDTO.setPriceBuckets(toFacetBuckets(facetManager.getFacets("pricePerMonth")));
+        gardenFieldFacetsDTO.setSizeBuckets(toFacetBuckets(facetManager.getFacets("sizeInM2")));
+        return gardenFieldFacetsDTO;
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void forEachLocationWithin(double south, double west, double north, double east,
+                                      @NotNull LocationConsumer consumer) {
+        FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+        QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory()
+            .buildQueryBuilder().forEntity(GardenField.class).get();
+        BooleanJunction<?> junction = queryBuilder.bool();
+        junction.must(NumericRangeQuery.newDoubleRange(GeoDistanceQuery.LATITUDE_FIELD, south, north, true, true));
+        junction.must(NumericRangeQuery.newDoubleRange(GeoDistanceQuery.LONGITUDE_FIELD, west, east, true, true));
+        createDeletedNotNullQuery(queryBuilder, junction);
+
+        IndexReaderAccessor indexReaderAccessor = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor();
+        IndexReader indexReader = indexReaderAccessor.open(GardenField.class);
+        try {
+            new IndexSearcher(indexReader).search(junction.createQuery(), new SimpleCollector() {
+                private NumericDocValues ids;
+                private NumericDocValues latitudes;
+                private NumericDocValues longitudes;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    ids = DocValues.getNumeric(context.reader(), ReservedBetweenQuery.ID_FIELD);
+                    latitudes = DocValues.getNumeric(context.reader(), GeoDistanceQuery.LATITUDE_VALUE_FIELD);
+                    longitudes = DocValues.getNumeric(context.reader(), GeoDistanceQuery.LONGITUDE_VALUE_FIELD);
+                }
+
+                @Override
+                public void collect(int doc) {
+                    consumer.accept(ids.get(doc), Double.longBitsToDouble(latitudes.get(doc)),
+                        Double.longBitsToDouble(longitudes.get(doc)));
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            indexReaderAccessor.close(indexReader);
+        }
+    }
+
+    /**
+     * Splits [min, max] into {@link #FACET_BUCKETS} equally wide ranges, the last one includes max.
+     */
+    @NotNull
+    private FacetingRequest createBucketFacetingRequest(@NotNull QueryBuilder queryBuilder, @NotNull String field,
+                                                        double min, double max) {
+        double width = Math.max(max - min, 1.0) / FACET_BUCKETS;
+        FacetRangeStartContext<Double> start = queryBuilder.facet().name(field).onField(field).range();
+        FacetRangeEndContext<Double> ranges = null;
+        for (int i = 0; i < FACET_BUCKETS; i++) {
+            double lower = min + i * width;
+            double upper = i == FACET_BUCKETS - 1 ? Math.max(max, lower + width) : lower + width;
+            ranges = (ranges == null ? start.from(lower) : ranges.from(lower)).to(upper);
+            if (i < FACET_BUCKETS - 1) {
+                ranges = ranges.excludeLimit();
+            }
+        }
+        return ranges.orderedBy(FacetSortOrder.RANGE_DEFINITION_ORDER).includeZeroCounts(true).createFacetingRequest();
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private List<FacetBucketDTO> toFacetBuckets(@NotNull List<Facet> facets) {
+        List<FacetBucketDTO> buckets = new ArrayList<>(facets.size());
+        for (Facet facet : facets) {
+            RangeFacet<Double> rangeFacet = (RangeFacet<Double>) facet;
+            buckets.add(new FacetBucketDTO(rangeFacet.getMin(), rangeFacet.getMax(), facet.getCount()));
+        }
+        return buckets;
+    }
+
     @NotNull
-    @Transactional
-    public Page<GardenField> filter(Pageable pageable, @NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria) {
+    private FullTextQuery createFilterQuery(@NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria,
+                                            @NotNull org.springframework.data.domain.Sort sort) {
         FullTextEntityManager fullTextEntityManager
             = Search.getFullTextEntityManager(entityManager);
         QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory()
@@ -68,14 +391,85 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
         Query combinedQuery = this.buildCombinedQuery(queryBuilder, gardenFieldFilterCriteria);
         LOGGER.debug("calculated filter query: " + combinedQuery);
 
-        FullTextQuery fullTextQuery = fullTextEntityManager
-            .createFullTextQuery(combinedQuery, GardenField.class);
-        List<GardenField> gardenFields = fullTextQuery.getResultList();
-        //Remove all gardenfields that have leasings in search timeframe.
-        if (gardenFieldFilterCriteria.getLeasingTimeFrom() != null && gardenFieldFilterCriteria.getLeasingTimeTo() != null) {
-            gardenFields = gardenFields.stream().filter(gardenField -> isGardenFieldBookableBetween(gardenField, gardenFieldFilterCriteria.getLeasingTimeFrom(), gardenFieldFilterCriteria.getLeasingTimeTo())).collect(Collectors.toList());
+        FullTextQuery fullTextQuery = fullTextEntityManager.createFullTextQuery(combinedQuery, GardenField.class);
+        Sort luceneSort = createSort(queryBuilder, sort, gardenFieldFilterCriteria.getLocationFilterCriteria());
+        if (gardenFieldFilterCriteria.checkAllNull()) {
+            //without relevance the id keeps the order of unfiltered listings stable across pages
+            List<SortField> sortFields = new ArrayList<>();
+            if (luceneSort != null) {
+                sortFields.addAll(Arrays.asList(luceneSort.getSort()));
+            }
+            sortFields.addAll(Arrays.asList(queryBuilder.sort().byField("idSort").createSort().getSort()));
+            luceneSort = new Sort(sortFields.toArray(new SortField[0]));
+        }
+        if (luceneSort != null) {
+            fullTextQuery.setSort(luceneSort);
+        }
+        return fullTextQuery;
+    }
+
+    /**
+     * Translates the requested sort into a sort on the doc values of the index, so lucene only keeps the top hits of
+     * the requested page instead of ordering all hits. Unsupported properties are ignored, see
+     * {@link GardenFieldSearchRepository#INDEX_SORT_PROPERTIES}.
+     *
+     * @return null to keep the relevance order
+     */
+    @Nullable
+    private Sort createSort(@NotNull QueryBuilder queryBuilder, @NotNull org.springframework.data.domain.Sort sort,
+                            @Nullable LocationFilterCriteria locationFilterCriteria) {
+        List<SortField> sortFields = new ArrayList<>();
+        for (org.springframework.data.domain.Sort.Order order : sort) {
+            Sort propertySort = null;
+            if (SORT_DISTANCE.equals(order.getProperty())) {
+                if (locationFilterCriteria != null && locationFilterCriteria.getLatitude() != null
+                    && locationFilterCriteria.getLongitude() != null) {
+                    SortDistanceFieldContext distanceSort = queryBuilder.sort()
+                        .byDistance()
+                        .onField(Spatial.COORDINATES_DEFAULT_FIELD)
+                        .fromLatitude(locationFilterCriteria.getLatitude())
+                        .andLongitude(locationFilterCriteria.getLongitude());
+                    propertySort = order.isDescending() ? distanceSort.desc().createSort() : distanceSort.createSort();
+                }
+            } else if (INDEX_SORT_PROPERTIES.contains(order.getProperty())) {
+                SortFieldContext fieldSort = queryBuilder.sort().byField(order.getProperty() + "Sort");
+                propertySort = order.isDescending() ? fieldSort.desc().createSort() : fieldSort.createSort();
+            } else {
+                LOGGER.debug("ignoring unsupported sort property: " + order.getProperty());
+            }
+            if (propertySort != null) {
+                sortFields.addAll(Arrays.asList(propertySort.getSort()));
+            }
+        }
+        return sortFields.isEmpty() ? null : new Sort(sortFields.toArray(new SortField[0]));
+    }
+
+    /**
+     * Maps projection rows in the order of {@link #PROJECTED_FIELDS}.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    private List<GardenFieldDTO> toGardenFieldDTOs(@NotNull List<?> rows) {
+        List<GardenFieldDTO> gardenFieldDTOs = new ArrayList<>(rows.size());
+        for (Object[] row : (List<Object[]>) rows) {
+            GardenFieldDTO gardenFieldDTO = new GardenFieldDTO();
+            gardenFieldDTO.setId((Long) row[0]);
+            gardenFieldDTO.setName((String) row[1]);
+            gardenFieldDTO.setCity((String) row[2]);
+            gardenFieldDTO.setDescription((String) row[3]);
+            gardenFieldDTO.setSizeInM2((Double) row[4]);
+            gardenFieldDTO.setPricePerMonth((Double) row[5]);
+            gardenFieldDTO.setLatitude((Double) row[6]);
+            gardenFieldDTO.setLongitude((Double) row[7]);
+            gardenFieldDTO.setCoverImage((String) row[8]);
+            gardenFieldDTO.setRoofed((Boolean) row[9]);
+            gardenFieldDTO.setGlassHouse((Boolean) row[10]);
+            gardenFieldDTO.setHigh((Boolean) row[11]);
+            gardenFieldDTO.setWater((Boolean) row[12]);
+            gardenFieldDTO.setElectricity((Boolean) row[13]);
+            gardenFieldDTOs.add(gardenFieldDTO);
         }
-        return this.convertListToPage(pageable, gardenFields);
+        return gardenFieldDTOs;
     }
 
     @NotNull
@@ -94,6 +488,11 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
         createElectricityQuery(queryBuilder, junction, gardenFieldFilterCriteria.getElectricity());
         createHighQuery(queryBuilder, junction, gardenFieldFilterCriteria.getHigh());
         createGlassHouseQuery(queryBuilder, junction, gardenFieldFilterCriteria.getGlassHouse());
+        createNotReservedQuery(junction, gardenFieldFilterCriteria.getLeasingTimeFrom(), gardenFieldFilterCriteria.getLeasingTimeTo());
+        if (junction.isEmpty()) {
+            //unfiltered listing
+            junction.must(new MatchAllDocsQuery());
+        }
         createDeletedNotNullQuery(queryBuilder, junction);
 
         return junction.createQuery();
@@ -109,14 +508,23 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
 
     }
 
-    @NotNull
-    private Page<GardenField> convertListToPage(@NotNull Pageable pageable, @Nullable List<GardenField> gardenFields) {
-        if (gardenFields == null || gardenFields.isEmpty()) {
-            return Page.empty(pageable);
+    /**
+     * Excludes every gardenfield which has a reserved leasing overlapping [from, to), checked in the
+     * {@link ReservedLeasingLookup}. While it is loading the gardenfields with a reserved day within [from, to] are
+     * excluded, see {@link ReservedLeasingDaysFieldBridge} for the indexed values.
+     */
+    private void createNotReservedQuery(BooleanJunction<?> junction, @Nullable Instant from, @Nullable Instant to) {
+        if (from != null && to != null) {
+            Query reservedQuery;
+            if (reservedLeasingLookup.isLoaded()) {
+                reservedQuery = new ReservedBetweenQuery(reservedLeasingLookup, from, to);
+            } else {
+                reservedQuery = NumericRangeQuery.newLongRange(ReservedLeasingDaysFieldBridge.FIELD_NAME,
+                    ReservedLeasingDaysFieldBridge.toEpochDay(from), ReservedLeasingDaysFieldBridge.toEpochDay(to),
+                    true, true);
+            }
+            junction.must(reservedQuery).not();
         }
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), gardenFields.size());
-        return new PageImpl<>(gardenFields.subList(start, end), pageable, gardenFields.size());
     }
 
     private void createMinPriceQuery(@NotNull QueryBuilder queryBuilder, BooleanJunction<?> junction,
@@ -178,14 +586,13 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
         }
     }
 
+    /**
+     * Bounding box prefilter with an exact distance check of the remaining candidates, see {@link GeoDistanceQuery}.
+     */
     private void createSpatialQuery(@NotNull QueryBuilder queryBuilder, BooleanJunction<?> junction, LocationFilterCriteria locationFilterCriteria) {
         if (locationFilterCriteria != null && locationFilterCriteria.checkNonNull()) {
-            Query locationQuery = queryBuilder
-                .spatial()
-                .within(locationFilterCriteria.getRadiusInKM(), Unit.KM)
-                .ofLatitude(locationFilterCriteria.getLatitude())
-                .andLongitude(locationFilterCriteria.getLongitude())
-                .createQuery();
+            Query locationQuery = GeoDistanceQuery.create(queryBuilder, locationFilterCriteria.getLatitude(),
+                locationFilterCriteria.getLongitude(), locationFilterCriteria.getRadiusInKM());
             junction.must(locationQuery);
         }
     }
@@ -222,6 +629,19 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
         }
     }
 
+    private void createNameAndCityPrefixQuery(@NotNull final QueryBuilder queryBuilder,
+                                              @NotNull final BooleanJunction<?> junction,
+                                              @Nullable final String searchString) {
+        if (searchString != null && !searchString.trim().isEmpty()) {
+            Query prefixQuery = queryBuilder
+                .keyword()
+                .onFields("nameAutocomplete", "cityAutocomplete")
+                .matching(searchString)
+                .createQuery();
+            junction.must(prefixQuery);
+        }
+    }
+
     private void createWaterQuery(QueryBuilder queryBuilder, BooleanJunction<?> junction, Boolean water) {
         if (water != null) {
             Query waterQuery = queryBuilder
@@ -265,16 +685,4 @@ public class GardenFieldSearchRepositoryImpl implements GardenFieldSearchReposit
             junction.must(glassHouseQuery);
         }
     }
-
-    private boolean isGardenFieldBookableBetween(GardenField gardenField, Instant from, Instant to) {
-        javax.persistence.Query query = entityManager.createQuery("SELECT l.id FROM Leasing l " +
-            "WHERE l.gardenField.id = :gardenFieldId " +
-            "AND l.status = 'RESERVED' AND ((:from <= l.from AND l.from <= :to ) " +
-            "OR ( :from <= l.to  AND l.to <= :to) OR (l.from <= :from AND :to <= l.to ))")
-            .setParameter("gardenFieldId", gardenField.getId())
-            .setParameter("from", from)
-            .setParameter("to", to)
-            .setMaxResults(1);
-        return !query.getResultStream().findAny().isPresent();
-    }
 }
@@ -0,0 +1,162 @@
+package com.gardle.repository.search.impl;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.*;
+import org.hibernate.search.query.dsl.BooleanJunction;
+import org.hibernate.search.query.dsl.QueryBuilder;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Radius search in two stages: a bounding box of numeric range queries on the indexed latitude and longitude selects
+ * the candidates, the exact distance is only computed for them (lucene two phase iteration) from the doc values
+ * {@code latitudeValue} and {@code longitudeValue}.
+ * <p>
+ * Radii up to {@link #EQUIRECTANGULAR_MAX_RADIUS_KM} use the equirectangular approximation, which is below 0.1% off
+ * for such distances outside the polar regions, larger radii use the haversine formula.
+ */
+final class GeoDistanceQuery extends Query {
+
+    /**
+     * same mean radius as hibernate search uses for the distance sort
+     */
+    static final double EARTH_RADIUS_KM = 6371.0087714;
+    static final double EQUIRECTANGULAR_MAX_RADIUS_KM = 100;
+
+    static final String LATITUDE_FIELD = "latitude";
+    static final String LONGITUDE_FIELD = "longitude";
+    static final String LATITUDE_VALUE_FIELD = "latitudeValue";
+    static final String LONGITUDE_VALUE_FIELD = "longitudeValue";
+
+    private final Query boundingBoxQuery;
+    private final double latitude;
+    private final double longitude;
+    private final double radiusInKM;
+
+    private GeoDistanceQuery(Query boundingBoxQuery, double latitude, double longitude, double radiusInKM) {
+        this.boundingBoxQuery = boundingBoxQuery;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusInKM = radiusInKM;
+    }
+
+    @NotNull
+    static GeoDistanceQuery create(@NotNull QueryBuilder queryBuilder, double latitude, double longitude,
+                                   double radiusInKM) {
+        return new GeoDistanceQuery(createBoundingBoxQuery(queryBuilder, latitude, longitude, radiusInKM), latitude,
+            longitude, radiusInKM);
+    }
+
+    /**
+     * Smallest latitude/longitude box containing the circle, split in two longitude ranges if it crosses the
+     * antimeridian and without longitude restriction if it contains a pole.
+     */
+    @NotNull
+    static Query createBoundingBoxQuery(@NotNull QueryBuilder queryBuilder, double latitude, double longitude,
+                                        double radiusInKM) {
+        double angularRadius = radiusInKM / EARTH_RADIUS_KM;
+        double latitudeDelta = Math.toDegrees(angularRadius);
+        double south = latitude - latitudeDelta;
+        double north = latitude + latitudeDelta;
+        BooleanJunction<?> junction = queryBuilder.bool();
+        junction.must(NumericRangeQuery.newDoubleRange(LATITUDE_FIELD, Math.max(south, -90.0), Math.min(north, 90.0),
+            true, true));
+        double longitudeSpread = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if (south <= -90.0 || north >= 90.0 || longitudeSpread >= 1.0) {
+            return junction.createQuery();
+        }
+        double longitudeDelta = Math.toDegrees(Math.asin(longitudeSpread));
+        double west = longitude - longitudeDelta;
+        double east = longitude + longitudeDelta;
+        if (west < -180.0) {
+            junction.must(queryBuilder.bool()
+                .should(NumericRangeQuery.newDoubleRange(LONGITUDE_FIELD, west + 360.0, 180.0, true, true))
+                .should(NumericRangeQuery.newDoubleRange(LONGITUDE_FIELD, -180.0, east, true, true))
+                .createQuery());
+        } else if (east > 180.0) {
+            junction.must(queryBuilder.bool()
+                .should(NumericRangeQuery.newDoubleRange(LONGITUDE_FIELD, west, 180.0, true, true))
+                .should(NumericRangeQuery.newDoubleRange(LONGITUDE_FIELD, -180.0, east - 360.0, true, true))
+                .createQuery());
+        } else {
+            junction.must(NumericRangeQuery.newDoubleRange(LONGITUDE_FIELD, west, east, true, true));
+        }
+        return junction.createQuery();
+    }
+
+    static double distanceInKM(double latitude1, double longitude1, double latitude2, double longitude2,
+                               boolean approximate) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double deltaLambda = Math.toRadians(longitude2 - longitude1);
+        if (deltaLambda > Math.PI) {
+            deltaLambda -= 2 * Math.PI;
+        } else if (deltaLambda < -Math.PI) {
+            deltaLambda += 2 * Math.PI;
+        }
+        if (approximate) {
+            double x = deltaLambda * Math.cos((phi1 + phi2) / 2);
+            double y = phi2 - phi1;
+            return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+        }
+        double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDeltaLambda = Math.sin(deltaLambda / 2);
+        double a = sinDeltaPhi * sinDeltaPhi + Math.cos(phi1) * Math.cos(phi2) * sinDeltaLambda * sinDeltaLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        Weight boundingBoxWeight = searcher.createNormalizedWeight(boundingBoxQuery, false);
+        boolean approximate = radiusInKM <= EQUIRECTANGULAR_MAX_RADIUS_KM;
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                Scorer approximation = boundingBoxWeight.scorer(context);
+                if (approximation == null) {
+                    return null;
+                }
+                NumericDocValues latitudes = DocValues.getNumeric(context.reader(), LATITUDE_VALUE_FIELD);
+                NumericDocValues longitudes = DocValues.getNumeric(context.reader(), LONGITUDE_VALUE_FIELD);
+                TwoPhaseIterator distanceCheck = new TwoPhaseIterator(approximation) {
+                    @Override
+                    public boolean matches() throws IOException {
+                        int doc = approximation.docID();
+                        return distanceInKM(latitude, longitude, Double.longBitsToDouble(latitudes.get(doc)),
+                            Double.longBitsToDouble(longitudes.get(doc)), approximate) <= radiusInKM;
+                    }
+
+                    @Override
+                    public float matchCost() {
+                        return approximate ? 10 : 50;
+                    }
+                };
+                return new ConstantScoreScorer(this, score(), distanceCheck);
+            }
+        };
+    }
+
+    @Override
+    public String toString(String field) {
+        return "GeoDistanceQuery(" + latitude + "," + longitude + " within " + radiusInKM + "km, candidates "
+            + boundingBoxQuery.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!super.equals(o)) return false;
+        GeoDistanceQuery that = (GeoDistanceQuery) o;
+        return Double.compare(that.latitude, latitude) == 0 && Double.compare(that.longitude, longitude) == 0
+            && Double.compare(that.radiusInKM, radiusInKM) == 0 && boundingBoxQuery.equals(that.boundingBoxQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), boundingBoxQuery, latitude, longitude, radiusInKM);
+    }
+}
@@ -0,0 +1,73 @@
+package com.gardle.repository.search.impl;
+
+import com.gardle.repository.search.ReservedLeasingLookup;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.*;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Matches every gardenfield with a RESERVED leasing overlapping [from, to). The check is answered by the in-memory
+ * {@link ReservedLeasingLookup} for the {@code idSort} doc value of each candidate instead of the indexed reserved
+ * days, so it is exact and sees a reservation as soon as the lookup does.
+ * <p>
+ * The result depends on the current state of the lookup, the query is therefore only equal to itself and never
+ * served from the lucene query cache.
+ */
+final class ReservedBetweenQuery extends Query {
+
+    static final String ID_FIELD = "idSort";
+
+    private final ReservedLeasingLookup reservedLeasingLookup;
+    private final long from;
+    private final long to;
+
+    ReservedBetweenQuery(@NotNull ReservedLeasingLookup reservedLeasingLookup, @NotNull Instant from,
+                         @NotNull Instant to) {
+        this.reservedLeasingLookup = reservedLeasingLookup;
+        this.from = from.toEpochMilli();
+        this.to = to.toEpochMilli();
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                DocIdSetIterator approximation = DocIdSetIterator.all(context.reader().maxDoc());
+                NumericDocValues ids = DocValues.getNumeric(context.reader(), ID_FIELD);
+                TwoPhaseIterator reservedCheck = new TwoPhaseIterator(approximation) {
+                    @Override
+                    public boolean matches() throws IOException {
+                        return reservedLeasingLookup.isReservedBetween(ids.get(approximation.docID()), from, to);
+                    }
+
+                    @Override
+                    public float matchCost() {
+                        return 20;
+                    }
+                };
+                return new ConstantScoreScorer(this, score(), reservedCheck);
+            }
+        };
+    }
+
+    @Override
+    public String toString(String field) {
+        return "ReservedBetweenQuery(" + Instant.ofEpochMilli(from) + " - " + Instant.ofEpochMilli(to) + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+}
@@ -0,0 +1,173 @@
+package com.gardle.service;
+
+import com.gardle.service.dto.leasing.AvailabilityCalendarDTO;
+import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserved days of every gardenfield for the next {@link #MONTHS} months as day bitmaps, served to the booking
+ * calendar as base64 instead of a list of date ranges.
+ * <p>
+ * A bitmap is derived from the {@link ReservedLeasingIndex} and rebuilt by the
+ * {@link com.gardle.domain.listener.LeasingChangeListener} once a leasing of the gardenfield was reserved or
+ * cancelled. Bitmaps built from outdated intervals (reload, refresh, reconciliation) or for a past day are rebuilt on
+ * the next read. A leasing reserves every UTC day from its start to
+ * its end. Every calendar carries the revision (last change log id) of the intervals it was built from, see
+ * {@link LeasingService#getAvailabilityCalendar}.
+ */
+@Service
+public class GardenFieldAvailabilityCalendar {
+
+    static final int MONTHS = 24;
+
+    private final ReservedLeasingIndex reservedLeasingIndex;
+    private final Clock clock;
+
+    private final Map<Long, DayBitmap> bitmapsByGardenField = new ConcurrentHashMap<>();
+
+    public GardenFieldAvailabilityCalendar(ReservedLeasingIndex reservedLeasingIndex) {
+        this(reservedLeasingIndex, Clock.systemUTC());
+    }
+
+    GardenFieldAvailabilityCalendar(ReservedLeasingIndex reservedLeasingIndex, Clock clock) {
+        this.reservedLeasingIndex = reservedLeasingIndex;
+        this.clock = clock;
+    }
+
+    /**
+     * Requires the {@link ReservedLeasingIndex} to be loaded.
+     */
+    @NotNull
+    public AvailabilityCalendarDTO getCalendar(@NotNull Long gardenFieldId) {
+        LocalDate today = LocalDate.now(clock);
+        ReservedLeasingIndex.ReservedIntervals intervals = reservedLeasingIndex.getReservedIntervals(gardenFieldId);
+        DayBitmap bitmap = bitmapsByGardenField.get(gardenFieldId);
+        if (bitmap == null || bitmap.intervals != intervals || !bitmap.firstDay.equals(today)) {
+            bitmap = DayBitmap.of(today, intervals);
+            bitmapsByGardenField.put(gardenFieldId, bitmap);
+        }
+        return bitmap.toDto(bitmap.intervals == null ? 0L : bitmap.intervals.getRevision());
+    }
+
+    /**
+     * Calendar of the given reserved ranges read from the database, for reads before the {@link ReservedLeasingIndex}
+     * is loaded or while it is behind the revision of the database.
+     *
+     * @param revision of the gardenfield, read before the ranges
+     */
+    @NotNull
+    public AvailabilityCalendarDTO getCalendar(@NotNull Collection<LeasingDateRangeDTO> reservedRanges, long revision) {
+        DayBitmap bitmap = new DayBitmap(LocalDate.now(clock), null);
+        reservedRanges.forEach(range -> bitmap.reserve(range.getFrom().toEpochMilli(), range.getTo().toEpochMilli()));
+        return bitmap.toDto(revision);
+    }
+
+    /**
+     * Rebuilds the bitmap of the gardenfield once the surrounding transaction committed. Has to be called after
+     * {@link ReservedLeasingIndex#update}, so the index is updated first.
+     */
+    public void update(@NotNull Long gardenFieldId) {
+        Runnable apply = () -> bitmapsByGardenField.put(gardenFieldId,
+            DayBitmap.of(LocalDate.now(clock), reservedLeasingIndex.getReservedIntervals(gardenFieldId)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Bit i is set if the day {@code firstDay + i} is reserved. Only modified while it is built.
+     */
+    static final class DayBitmap {
+
+        private final LocalDate firstDay;
+        private final int days;
+        private final long[] words;
+
+        /**
+         * the intervals the bitmap was built from, to detect outdated bitmaps
+         */
+        @Nullable
+        private final ReservedLeasingIndex.ReservedIntervals intervals;
+
+        private final long firstDayStart;
+
+        DayBitmap(@NotNull LocalDate firstDay, @Nullable ReservedLeasingIndex.ReservedIntervals intervals) {
+            this.firstDay = firstDay;
+            this.days = (int) ChronoUnit.DAYS.between(firstDay, firstDay.plusMonths(MONTHS));
+            this.words = new long[(days + 63) >>> 6];
+            this.intervals = intervals;
+            this.firstDayStart = firstDay.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+
+        static DayBitmap of(@NotNull LocalDate firstDay, @Nullable ReservedLeasingIndex.ReservedIntervals intervals) {
+            DayBitmap bitmap = new DayBitmap(firstDay, intervals);
+            if (intervals != null) {
+                for (int i = 0; i < intervals.size(); i++) {
+                    bitmap.reserve(intervals.getFrom(i), intervals.getTo(i));
+                }
+            }
+            return bitmap;
+        }
+
+        /**
+         * Sets the days from the day of {@code from} until the day of {@code to}, clipped to the calendar.
+         */
+        void reserve(long from, long to) {
+            long firstIndex = Math.max(0, Math.floorDiv(from - firstDayStart, Duration.ofDays(1).toMillis()));
+            long lastIndex = Math.min(days - 1, Math.floorDiv(to - firstDayStart, Duration.ofDays(1).toMillis()));
+            if (firstIndex > lastIndex) {
+                return;
+            }
+            int firstWord = (int) (firstIndex >>> 6);
+            int lastWord = (int) (lastIndex >>> 6);
+            long firstMask = -1L << firstIndex;
+            long lastMask = -1L >>> (63 - (lastIndex & 63));
+            if (firstWord == lastWord) {
+                words[firstWord] |= firstMask & lastMask;
+                return;
+            }
+            words[firstWord] |= firstMask;
+            for (int word = firstWord + 1; word < lastWord; word++) {
+                words[word] = -1L;
+            }
+            words[lastWord] |= lastMask;
+        }
+
+        boolean isReserved(@NotNull LocalDate day) {
+            long index = ChronoUnit.DAYS.between(firstDay, day);
+            return index >= 0 && index < days && (words[(int) (index >>> 6)] & (1L << index)) != 0;
+        }
+
+        AvailabilityCalendarDTO toDto(long revision) {
+            ByteBuffer buffer = ByteBuffer.allocate(words.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asLongBuffer().put(words);
+            int length = (days + 7) >>> 3;
+            while (length > 0 && buffer.get(length - 1) == 0) {
+                length--;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new AvailabilityCalendarDTO(firstDay, days, Base64.getEncoder().encodeToString(bytes), revision);
+        }
+    }
+}
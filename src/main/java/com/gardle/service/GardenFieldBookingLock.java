@@ -0,0 +1,94 @@
+package com.gardle.service;
+
+import com.gardle.service.exception.GardenFieldBookingBusyServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the bookings of one gardenfield until the booking transaction completed, bookings of different
+ * gardenfields run in parallel.
+ * <p>
+ * Within the node a striped lock serializes the bookings, across the nodes a transaction scoped PostgreSQL advisory
+ * lock keyed on the gardenfield id does the same (skipped on other databases, e.g. the H2 of the tests). Both are
+ * released when the transaction commits or rolls back, so the overlap check and the insert of a booking are atomic
+ * for the gardenfield. The lock is taken within the booking transaction, so a waiting booking holds its pooled
+ * connection; the wait for the striped lock is bounded by {@link #TIMEOUT_SECONDS}, the one for the advisory lock by
+ * the {@code lock_timeout} of the database.
+ */
+@Service
+public class GardenFieldBookingLock {
+
+    static final int STRIPES = 64;
+    static final long TIMEOUT_SECONDS = 10;
+
+    private static final String ADVISORY_LOCK_SQL = "select pg_advisory_xact_lock(?)";
+
+    private final Logger log = LoggerFactory.getLogger(GardenFieldBookingLock.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    private boolean advisoryLocks;
+
+    public GardenFieldBookingLock(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void detectAdvisoryLocks() {
+        advisoryLocks = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+            "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+        log.debug("Advisory locks for gardenfield bookings: {}", advisoryLocks);
+    }
+
+    /**
+     * Locks the gardenfield until the surrounding transaction completed.
+     *
+     * @throws GardenFieldBookingBusyServiceException if the lock could not be acquired within {@link #TIMEOUT_SECONDS}
+     */
+    public void lock(@NotNull Long gardenFieldId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Gardenfield bookings can only be locked within a transaction");
+        }
+        ReentrantLock stripe = stripes[stripe(gardenFieldId)];
+        try {
+            if (!stripe.tryLock(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new GardenFieldBookingBusyServiceException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GardenFieldBookingBusyServiceException();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                stripe.unlock();
+            }
+        });
+        if (advisoryLocks) {
+            jdbcTemplate.execute(ADVISORY_LOCK_SQL, (PreparedStatementCallback<Boolean>) statement -> {
+                statement.setLong(1, gardenFieldId);
+                return statement.execute();
+            });
+        }
+    }
+
+    static int stripe(long gardenFieldId) {
+        return Math.floorMod(Long.hashCode(gardenFieldId), STRIPES);
+    }
+}
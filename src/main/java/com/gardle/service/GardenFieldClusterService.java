@@ -0,0 +1,221 @@
+package com.gardle.service;
+
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.search.GardenFieldSearchRepository;
+import com.gardle.service.dto.GardenFieldClusterDTO;
+import com.gardle.service.dto.GardenFieldLocationDTO;
+import com.gardle.service.exception.GardenFieldClusterBoundsServiceException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Aggregates gardenfields into map clusters.
+ * <p>
+ * The requested bounding box is split into the web mercator tiles of the zoom level (the tiles the map client
+ * renders) and every tile into a grid of {@link #CELLS_PER_TILE} x {@link #CELLS_PER_TILE} cells. Every non empty
+ * cell becomes one cluster at the centroid of its gardenfields, aggregated from the doc values of the index. The
+ * clusters are cached per tile, a gardenfield change only invalidates the tiles which contained the gardenfield or
+ * contain its new location, so panning the map mostly hits the cache.
+ */
+@Service
+public class GardenFieldClusterService {
+
+    static final int MAX_ZOOM = 20;
+    static final int MAX_TILES = 64;
+    static final int CELLS_PER_TILE = 4;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final GardenFieldRepository gardenFieldRepository;
+
+    private final Cache<String, Tile> tileCache;
+
+    public GardenFieldClusterService(GardenFieldRepository gardenFieldRepository, JHipsterProperties jHipsterProperties,
+                                     MeterRegistry meterRegistry) {
+        this.gardenFieldRepository = gardenFieldRepository;
+        JHipsterProperties.Cache.Caffeine caffeineProperties = jHipsterProperties.getCache().getCaffeine();
+        this.tileCache = Caffeine.newBuilder()
+            .maximumSize(caffeineProperties.getMaxEntries())
+            .expireAfterWrite(Duration.ofSeconds(caffeineProperties.getTimeToLiveSeconds()))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tileCache, "gardenFieldClusterTiles");
+    }
+
+    /**
+     * Bounding boxes crossing the antimeridian are not supported, the client has to split them.
+     */
+    @NotNull
+    public List<GardenFieldClusterDTO> getClusters(double south, double west, double north, double east, int zoom) {
+        if (zoom < 0 || zoom > MAX_ZOOM || south > north || west > east || west < -180 || east > 180) {
+            throw new GardenFieldClusterBoundsServiceException();
+        }
+        int minTileX = tileX(west, zoom);
+        int maxTileX = tileX(east, zoom);
+        int minTileY = tileY(Math.min(north, MAX_LATITUDE), zoom);
+        int maxTileY = tileY(Math.max(south, -MAX_LATITUDE), zoom);
+        if ((long) (maxTileX - minTileX + 1) * (maxTileY - minTileY + 1) > MAX_TILES) {
+            throw new GardenFieldClusterBoundsServiceException("Bounding box covers more than " + MAX_TILES + " tiles");
+        }
+        List<GardenFieldClusterDTO> clusters = new ArrayList<>();
+        for (int x = minTileX; x <= maxTileX; x++) {
+            for (int y = minTileY; y <= maxTileY; y++) {
+                final int tileX = x;
+                final int tileY = y;
+                clusters.addAll(tileCache.get(zoom + "/" + x + "/" + y, key -> computeTile(zoom, tileX, tileY)).clusters);
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Invalidates the tiles which contained one of the changed gardenfields or contain its new location once the
+     * surrounding transaction committed.
+     *
+     * @param changedLocations new locations of the changed gardenfields, without coordinates if deleted
+     */
+    public void invalidate(@NotNull Collection<GardenFieldLocationDTO> changedLocations) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidateTiles(changedLocations);
+                }
+            });
+        } else {
+            invalidateTiles(changedLocations);
+        }
+    }
+
+    private void invalidateTiles(Collection<GardenFieldLocationDTO> changedLocations) {
+        tileCache.asMap().values().removeIf(tile -> changedLocations.stream().anyMatch(tile::isAffectedBy));
+    }
+
+    @NotNull
+    private Tile computeTile(int zoom, int x, int y) {
+        TileAggregate aggregate = new TileAggregate(zoom, x, y);
+        gardenFieldRepository.forEachLocationWithin(
+            tileLatitude(y + 1, zoom), tileLongitude(x, zoom), tileLatitude(y, zoom), tileLongitude(x + 1, zoom),
+            aggregate);
+        return aggregate.toTile();
+    }
+
+    private static int tileX(double longitude, int zoom) {
+        int tiles = 1 << zoom;
+        return Math.min(tiles - 1, (int) Math.floor((longitude + 180.0) / 360.0 * tiles));
+    }
+
+    private static int tileY(double latitude, int zoom) {
+        int tiles = 1 << zoom;
+        return Math.max(0, Math.min(tiles - 1, (int) Math.floor(mercatorY(latitude) * tiles)));
+    }
+
+    /**
+     * @return web mercator y in [0, 1], 0 being the north border
+     */
+    private static double mercatorY(double latitude) {
+        double latitudeRad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        return (1.0 - Math.log(Math.tan(latitudeRad) + 1.0 / Math.cos(latitudeRad)) / Math.PI) / 2.0;
+    }
+
+    private static double tileLongitude(int x, int zoom) {
+        return x / (double) (1 << zoom) * 360.0 - 180.0;
+    }
+
+    private static double tileLatitude(int y, int zoom) {
+        double n = Math.PI - 2.0 * Math.PI * y / (1 << zoom);
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    private static final class Tile {
+        private final int zoom;
+        private final int x;
+        private final int y;
+        private final List<GardenFieldClusterDTO> clusters;
+        /**
+         * sorted ids of the gardenfields aggregated into the clusters
+         */
+        private final long[] gardenFieldIds;
+
+        private Tile(int zoom, int x, int y, List<GardenFieldClusterDTO> clusters, long[] gardenFieldIds) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.clusters = clusters;
+            this.gardenFieldIds = gardenFieldIds;
+        }
+
+        private boolean isAffectedBy(GardenFieldLocationDTO changedLocation) {
+            if (Arrays.binarySearch(gardenFieldIds, changedLocation.getId()) >= 0) {
+                return true;
+            }
+            return changedLocation.getLatitude() != null && changedLocation.getLongitude() != null
+                && tileX(changedLocation.getLongitude(), zoom) == x && tileY(changedLocation.getLatitude(), zoom) == y;
+        }
+    }
+
+    /**
+     * Sums up the locations per cell in primitive arrays, indexed by cellY * {@link #CELLS_PER_TILE} + cellX.
+     */
+    private static final class TileAggregate implements GardenFieldSearchRepository.LocationConsumer {
+        private final int zoom;
+        private final int x;
+        private final int y;
+        private final double cellZoomScale;
+        private final int[] counts = new int[CELLS_PER_TILE * CELLS_PER_TILE];
+        private final double[] latitudeSums = new double[CELLS_PER_TILE * CELLS_PER_TILE];
+        private final double[] longitudeSums = new double[CELLS_PER_TILE * CELLS_PER_TILE];
+        private final long[] lastGardenFieldIds = new long[CELLS_PER_TILE * CELLS_PER_TILE];
+        private long[] gardenFieldIds = new long[16];
+        private int size;
+
+        private TileAggregate(int zoom, int x, int y) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.cellZoomScale = CELLS_PER_TILE * (double) (1 << zoom);
+        }
+
+        @Override
+        public void accept(long gardenFieldId, double latitude, double longitude) {
+            int cellX = (int) Math.floor((longitude + 180.0) / 360.0 * cellZoomScale) - x * CELLS_PER_TILE;
+            int cellY = (int) Math.floor(mercatorY(latitude) * cellZoomScale) - y * CELLS_PER_TILE;
+            //the range query includes both borders, locations exactly on the east or south border belong to the next tile
+            if (cellX < 0 || cellX >= CELLS_PER_TILE || cellY < 0 || cellY >= CELLS_PER_TILE) {
+                return;
+            }
+            int cell = cellY * CELLS_PER_TILE + cellX;
+            counts[cell]++;
+            latitudeSums[cell] += latitude;
+            longitudeSums[cell] += longitude;
+            lastGardenFieldIds[cell] = gardenFieldId;
+            if (size == gardenFieldIds.length) {
+                gardenFieldIds = Arrays.copyOf(gardenFieldIds, size * 2);
+            }
+            gardenFieldIds[size++] = gardenFieldId;
+        }
+
+        private Tile toTile() {
+            List<GardenFieldClusterDTO> clusters = new ArrayList<>();
+            for (int cell = 0; cell < counts.length; cell++) {
+                int count = counts[cell];
+                if (count > 0) {
+                    clusters.add(new GardenFieldClusterDTO(latitudeSums[cell] / count, longitudeSums[cell] / count,
+                        count, count == 1 ? lastGardenFieldIds[cell] : null));
+                }
+            }
+            long[] sortedIds = Arrays.copyOf(gardenFieldIds, size);
+            Arrays.sort(sortedIds);
+            return new Tile(zoom, x, y, clusters, sortedIds);
+        }
+    }
+}
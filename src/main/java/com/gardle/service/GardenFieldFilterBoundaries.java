@@ -0,0 +1,144 @@
+package com.gardle.service;
+
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.service.dto.FilterBoundariesDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Materialized min/max of price per month and size over all gardenfields, served from memory.
+ * <p>
+ * Every write of a gardenfield marks the boundaries outdated once its transaction committed, on this node through the
+ * {@link com.gardle.domain.listener.GardenFieldChangeListener} and on the others through the consumer of the
+ * {@link GardenFieldIndexReplication}. The next read recomputes them with the aggregate queries, so a range widens and
+ * shrinks on every node; reads between two changes never touch the database.
+ */
+@Service
+public class GardenFieldFilterBoundaries {
+
+    private final Logger log = LoggerFactory.getLogger(GardenFieldFilterBoundaries.class);
+
+    private final GardenFieldRepository gardenFieldRepository;
+
+    /**
+     * number of changes so far, the boundaries are current if they were computed after the last one
+     */
+    private final AtomicLong changes = new AtomicLong();
+
+    @Nullable
+    private volatile Boundaries boundaries;
+
+    public GardenFieldFilterBoundaries(GardenFieldRepository gardenFieldRepository) {
+        this.gardenFieldRepository = gardenFieldRepository;
+    }
+
+    @NotNull
+    public FilterBoundariesDTO getFilterBoundaries() {
+        Boundaries current = boundaries;
+        if (current == null || current.changes < changes.get()) {
+            current = reconcileIfOutdated();
+        }
+        FilterBoundariesDTO filterBoundariesDTO = new FilterBoundariesDTO();
+        filterBoundariesDTO.setMinPrice(floor(current.minPrice));
+        filterBoundariesDTO.setMaxPrice(ceil(current.maxPrice));
+        filterBoundariesDTO.setMinSize(floor(current.minSize));
+        filterBoundariesDTO.setMaxSize(ceil(current.maxSize));
+        return filterBoundariesDTO;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 */5 * * * ?")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        long computedAfter = changes.get();
+        Boundaries reconciled = new Boundaries(gardenFieldRepository.getMinPriceForPerMonth(),
+            gardenFieldRepository.getMaxPriceForSizePerMonth(), gardenFieldRepository.getMinSize(),
+            gardenFieldRepository.getMaxSize(), computedAfter);
+        synchronized (this) {
+            Boundaries current = boundaries;
+            if (current == null || current.changes <= computedAfter) {
+                boundaries = reconciled;
+            }
+        }
+        log.debug("Reconciled gardenfield filter boundaries: {}", reconciled);
+    }
+
+    /**
+     * Marks the boundaries outdated once the surrounding transaction committed.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    changes.incrementAndGet();
+                }
+            });
+        } else {
+            changes.incrementAndGet();
+        }
+    }
+
+    /**
+     * Only one of the concurrent readers of outdated boundaries runs the aggregate queries.
+     */
+    @NotNull
+    private synchronized Boundaries reconcileIfOutdated() {
+        Boundaries current = boundaries;
+        if (current == null || current.changes < changes.get()) {
+            reconcile();
+            current = boundaries;
+        }
+        return current;
+    }
+
+    @Nullable
+    private static Double floor(@Nullable Double value) {
+        return value == null ? null : Math.floor(value);
+    }
+
+    @Nullable
+    private static Double ceil(@Nullable Double value) {
+        return value == null ? null : Math.ceil(value);
+    }
+
+    private static final class Boundaries {
+        @Nullable
+        private final Double minPrice;
+        @Nullable
+        private final Double maxPrice;
+        private final Double minSize;
+        private final Double maxSize;
+
+        /**
+         * value of the change counter when the aggregate queries started
+         */
+        private final long changes;
+
+        private Boundaries(@Nullable Double minPrice, @Nullable Double maxPrice, Double minSize, Double maxSize,
+                           long changes) {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.changes = changes;
+        }
+
+        @Override
+        public String toString() {
+            return "Boundaries{minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", minSize=" + minSize
+                + ", maxSize=" + maxSize + "}";
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.gardle.service;
+
+import com.gardle.config.LuceneIndexServiceBean;
+import com.gardle.config.LuceneIndexingProperties;
+import com.gardle.domain.IndexChangeLogEntry;
+import com.gardle.repository.IndexChangeLogRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Replicates gardenfield changes into the local lucene index of every node through the {@code index_change_log}
+ * table, so each node owns its index exclusively instead of sharing one over the network.
+ * <p>
+ * Writes of gardenfields and leasings append the id of the affected gardenfield in their own transaction. Every node
+ * polls the entries after its watermark and hands the gardenfields to its {@link GardenFieldIndexingQueue}, which
+ * reindexes them from the database and invalidates the search and cluster caches. The reserved leasings of the
+ * gardenfields are refreshed in its {@link ReservedLeasingIndex} as well, which invalidates the search cache entries
+ * filtering on a leasing time, and the {@link GardenFieldFilterBoundaries} are marked outdated. Both consumers keep their own
+ * {@link Cursor}: the lucene one waits for the mass indexing, the reserved leasing one for the load of the index. Identity values become visible in commit order
+ * only roughly: an entry behind a gap is applied, but the watermark stays before the gap until the missing entry shows
+ * up or the gap is older than {@link #GAP_TIMEOUT}. The missing ids are then looked up again on every poll until the
+ * retention of the change log is over, so a transaction committing late is still applied while a rolled back one
+ * costs a lookup per poll for that time. Reindexing and refreshing are
+ * idempotent, so applying an entry twice is harmless. The age of the oldest entry the last poll found pending for the
+ * lucene index is exported as {@code lucene.replication.lag}, whether or not the batch was full.
+ * <p>
+ * Only active with {@code lucene.indexing.change-log-replication}, which goes together with
+ * {@code hibernate.search.indexing_strategy: manual} and a node local index directory.
+ */
+@Service
+public class GardenFieldIndexReplication {
+
+    static final int BATCH_SIZE = 500;
+    static final Duration GAP_TIMEOUT = Duration.ofMinutes(1);
+    private static final long CATCH_UP_POLL_MILLIS = 100;
+    static final Duration CAUGHT_UP_MAX_AGE = Duration.ofSeconds(5);
+
+    private static final String APPEND_SQL = "insert into index_change_log (garden_field_id, created_date) values (?, ?)";
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final Logger log = LoggerFactory.getLogger(GardenFieldIndexReplication.class);
+
+    private final IndexChangeLogRepository indexChangeLogRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final LuceneIndexServiceBean luceneIndexServiceBean;
+    private final LuceneIndexingProperties luceneIndexingProperties;
+    private final GardenFieldIndexingQueue gardenFieldIndexingQueue;
+    private final ReservedLeasingIndex reservedLeasingIndex;
+    private final GardenFieldSearchCache gardenFieldSearchCache;
+    private final GardenFieldFilterBoundaries gardenFieldFilterBoundaries;
+
+    private final Cursor indexCursor = new Cursor();
+    private final Cursor reservedLeasingCursor = new Cursor();
+
+    @Nullable
+    private volatile Instant oldestPending;
+
+    private final AtomicLong applied = new AtomicLong();
+
+    public GardenFieldIndexReplication(IndexChangeLogRepository indexChangeLogRepository, JdbcTemplate jdbcTemplate,
+                                       LuceneIndexServiceBean luceneIndexServiceBean,
+                                       LuceneIndexingProperties luceneIndexingProperties,
+                                       GardenFieldIndexingQueue gardenFieldIndexingQueue,
+                                       ReservedLeasingIndex reservedLeasingIndex,
+                                       GardenFieldSearchCache gardenFieldSearchCache,
+                                       GardenFieldFilterBoundaries gardenFieldFilterBoundaries,
+                                       MeterRegistry meterRegistry) {
+        this.indexChangeLogRepository = indexChangeLogRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.luceneIndexServiceBean = luceneIndexServiceBean;
+        this.luceneIndexingProperties = luceneIndexingProperties;
+        this.gardenFieldIndexingQueue = gardenFieldIndexingQueue;
+        this.reservedLeasingIndex = reservedLeasingIndex;
+        this.gardenFieldSearchCache = gardenFieldSearchCache;
+        this.gardenFieldFilterBoundaries = gardenFieldFilterBoundaries;
+        Gauge.builder("lucene.replication.lag", this, GardenFieldIndexReplication::getLagSeconds)
+            .description("Age in seconds of the oldest index change not applied to the local lucene index")
+            .register(meterRegistry);
+        FunctionCounter.builder("lucene.replication.applied", applied, AtomicLong::get)
+            .description("Index changes handed to the local indexing queue")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Appends a change of the gardenfield to the change log within the current transaction.
+     * Called from entity listeners, therefore plain jdbc instead of the entity manager.
+     */
+    public void append(@NotNull Long gardenFieldId) {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            return;
+        }
+        jdbcTemplate.update(APPEND_SQL, ps -> {
+            ps.setLong(1, gardenFieldId);
+            ps.setTimestamp(2, Timestamp.from(Instant.now()), Calendar.getInstance(UTC));
+        });
+    }
+
+    /**
+     * @return true if the {@link ReservedLeasingIndex} contains the whole change log as of a poll at most
+     * {@link #CAUGHT_UP_MAX_AGE} ago. Always true without the replication, the writes of this node are applied to the
+     * index at their commit.
+     */
+    public boolean isReservedLeasingIndexCaughtUp() {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            return true;
+        }
+        Instant caughtUp = reservedLeasingCursor.caughtUpAt;
+        return caughtUp != null && caughtUp.isAfter(Instant.now().minus(CAUGHT_UP_MAX_AGE));
+    }
+
+    public double getLagSeconds() {
+        Instant pending = oldestPending;
+        return pending == null ? 0.0 : Math.max(0, Duration.between(pending, Instant.now()).toMillis() / 1000.0);
+    }
+
+    /**
+     * Changes before the watermark are contained in the index built on startup. Runs before the load of the
+     * {@link ReservedLeasingIndex}, so it contains them as well.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public void initWatermark() {
+        Long maxId = indexChangeLogRepository.findMaxId();
+        indexCursor.watermark = maxId == null ? 0L : maxId;
+        reservedLeasingCursor.watermark = indexCursor.watermark;
+    }
+
+    /**
+     * Blocks while the indexing queue is full, which holds back the log consumption instead of the writers.
+     */
+    @Scheduled(cron = "* * * * * ?")
+    @Transactional(readOnly = true)
+    public synchronized void poll() {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            return;
+        }
+        Instant now = Instant.now();
+        if (reservedLeasingIndex.isLoaded()) {
+            consume(reservedLeasingCursor, now, pending -> {
+                Map<Long, Long> revisions = new HashMap<>();
+                pending.forEach(entry -> revisions.merge(entry.getGardenFieldId(), entry.getId(), Math::max));
+                reservedLeasingIndex.refresh(revisions);
+                gardenFieldSearchCache.invalidateLeasingTimes();
+                gardenFieldFilterBoundaries.invalidate();
+            });
+        }
+        if (luceneIndexServiceBean.isReady()) {
+            List<IndexChangeLogEntry> pendingEntries = consume(indexCursor, now, pending -> {
+                //set before the hand-off, so the lag keeps growing while the indexing queue is full
+                oldestPending = pending.get(0).getCreatedDate();
+                Set<Long> gardenFieldIds = new LinkedHashSet<>();
+                pending.forEach(entry -> gardenFieldIds.add(entry.getGardenFieldId()));
+                gardenFieldIndexingQueue.enqueue(gardenFieldIds);
+                applied.addAndGet(gardenFieldIds.size());
+                log.debug("Applied {} index changes, watermark {}", gardenFieldIds.size(), indexCursor.watermark);
+            });
+            if (pendingEntries.isEmpty()) {
+                oldestPending = null;
+            }
+        }
+    }
+
+    /**
+     * Consumes the change log up to the end it has when called, for the high-water mark stored on shutdown.
+     *
+     * @return false if the lucene watermark did not reach that end within the timeout, e.g. behind a gap
+     */
+    public boolean catchUp(@NotNull Duration timeout) throws InterruptedException {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            return true;
+        }
+        Long maxId = indexChangeLogRepository.findMaxId();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            poll();
+            Long watermark = indexCursor.watermark;
+            if (maxId == null || watermark != null && watermark >= maxId) {
+                return true;
+            }
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(CATCH_UP_POLL_MILLIS);
+        }
+    }
+
+    @Scheduled(cron = "0 0 * * * ?")
+    @Transactional
+    public void removeExpiredEntries() {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            return;
+        }
+        int removed = indexChangeLogRepository.deleteCreatedBefore(
+            Instant.now().minus(Duration.ofHours(luceneIndexingProperties.getChangeLogRetentionHours())));
+        log.debug("Removed {} expired index change log entries", removed);
+    }
+
+    /**
+     * Hands the entries after the watermark of the cursor, which were not applied yet, to the consumer and advances
+     * the watermark.
+     *
+     * @return the entries handed to the consumer, ordered by id
+     */
+    private List<IndexChangeLogEntry> consume(@NotNull Cursor cursor, @NotNull Instant now,
+                                              @NotNull Consumer<List<IndexChangeLogEntry>> consumer) {
+        Long current = cursor.watermark;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        List<IndexChangeLogEntry> entries = indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(current,
+            PageRequest.of(0, BATCH_SIZE));
+        List<IndexChangeLogEntry> pending = new ArrayList<>(findLateEntries(cursor, now));
+        for (IndexChangeLogEntry entry : entries) {
+            if (!cursor.appliedAfterWatermark.contains(entry.getId())) {
+                pending.add(entry);
+            }
+        }
+        if (!pending.isEmpty()) {
+            consumer.accept(pending);
+            pending.forEach(entry -> cursor.appliedAfterWatermark.add(entry.getId()));
+        }
+        Set<Long> skipped = new HashSet<>();
+        long advanced = advanceWatermark(current, entries, now, skipped);
+        skipped.forEach(id -> cursor.skipped.put(id, now));
+        cursor.appliedAfterWatermark.removeIf(id -> id <= advanced);
+        cursor.watermark = advanced;
+        if (entries.size() < BATCH_SIZE && (entries.isEmpty() || entries.get(entries.size() - 1).getId() == advanced)) {
+            cursor.caughtUpAt = now;
+        }
+        return pending;
+    }
+
+    /**
+     * Looks up the entries the watermark skipped which showed up since, and forgets the skipped ids older than the
+     * retention of the change log.
+     *
+     * @return the late entries, ordered by id
+     */
+    private List<IndexChangeLogEntry> findLateEntries(@NotNull Cursor cursor, @NotNull Instant now) {
+        if (cursor.skipped.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Instant expired = now.minus(Duration.ofHours(luceneIndexingProperties.getChangeLogRetentionHours()));
+        cursor.skipped.values().removeIf(skippedAt -> skippedAt.isBefore(expired));
+        List<IndexChangeLogEntry> late = new ArrayList<>(indexChangeLogRepository.findAllById(cursor.skipped.keySet()));
+        late.sort(Comparator.comparing(IndexChangeLogEntry::getId));
+        late.forEach(entry -> cursor.skipped.remove(entry.getId()));
+        return late;
+    }
+
+    /**
+     * Advances the watermark over all consecutive entries. A gap stops it unless the entry after the gap is older
+     * than {@link #GAP_TIMEOUT}, the missing ids are then added to skipped.
+     *
+     * @param entries ordered by id, all after the watermark
+     */
+    static long advanceWatermark(long watermark, @NotNull List<IndexChangeLogEntry> entries, @NotNull Instant now,
+                                 @NotNull Set<Long> skipped) {
+        long advanced = watermark;
+        for (IndexChangeLogEntry entry : entries) {
+            if (entry.getId() != advanced + 1) {
+                if (entry.getCreatedDate().isAfter(now.minus(GAP_TIMEOUT))) {
+                    break;
+                }
+                for (long missing = advanced + 1; missing < entry.getId(); missing++) {
+                    skipped.add(missing);
+                }
+            }
+            advanced = entry.getId();
+        }
+        return advanced;
+    }
+
+    /**
+     * Position of one consumer in the change log, only accessed within {@link #poll()} once initialized.
+     */
+    private static final class Cursor {
+
+        /**
+         * id of the last entry up to which all entries were applied, null until the application is ready
+         */
+        @Nullable
+        private volatile Long watermark;
+
+        /**
+         * time of the last poll after which no entry was pending, null if none was
+         */
+        @Nullable
+        private volatile Instant caughtUpAt;
+
+        /**
+         * entries after the watermark which were already applied
+         */
+        private final Set<Long> appliedAfterWatermark = new HashSet<>();
+
+        /**
+         * ids before the watermark which were missing when it advanced over their gap, mapped to that time
+         */
+        private final Map<Long, Instant> skipped = new HashMap<>();
+    }
+}
@@ -0,0 +1,299 @@
+package com.gardle.service;
+
+import com.gardle.config.LuceneIndexingProperties;
+import com.gardle.domain.GardenField;
+import com.gardle.service.dto.GardenFieldLocationDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.Search;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue of gardenfields to reindex, applied in batches by a single worker thread.
+ * <p>
+ * Changes of the same gardenfield are merged while they wait, so repeated saves (e.g. cover image updates) and
+ * leasing changes cost one reindex. A writer offering to a full queue waits up to
+ * {@code lucene.indexing.queue-offer-timeout-millis} and then reindexes in its own thread, so writers are slowed down
+ * instead of changes being lost. Each applied batch invalidates the search and cluster caches, the index only
+ * contains the change from then on. Queue depth, batch apply time and the latency from enqueueing to the applied
+ * index are exported as {@code lucene.indexing.queue.*} metrics.
+ * <p>
+ * Fed after commit by the entity listeners if {@code lucene.indexing.async-indexing} is set (together with
+ * {@code hibernate.search.indexing_strategy: manual}) and by the {@link GardenFieldIndexReplication}.
+ */
+@Service
+public class GardenFieldIndexingQueue {
+
+    private final Logger log = LoggerFactory.getLogger(GardenFieldIndexingQueue.class);
+
+    private final LuceneIndexingProperties luceneIndexingProperties;
+    private final GardenFieldSearchCache gardenFieldSearchCache;
+    private final GardenFieldClusterService gardenFieldClusterService;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final PendingChanges pendingChanges;
+    private final Timer applyTimer;
+    private final Timer latencyTimer;
+
+    private final Thread worker = new Thread(this::work, "gardenfield-indexing");
+
+    private volatile boolean running = true;
+
+    public GardenFieldIndexingQueue(LuceneIndexingProperties luceneIndexingProperties,
+                                    GardenFieldSearchCache gardenFieldSearchCache,
+                                    GardenFieldClusterService gardenFieldClusterService,
+                                    PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.luceneIndexingProperties = luceneIndexingProperties;
+        this.gardenFieldSearchCache = gardenFieldSearchCache;
+        this.gardenFieldClusterService = gardenFieldClusterService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pendingChanges = new PendingChanges(luceneIndexingProperties.getQueueCapacity());
+        Gauge.builder("lucene.indexing.queue.depth", pendingChanges, PendingChanges::size)
+            .description("Gardenfields waiting to be reindexed")
+            .register(meterRegistry);
+        this.applyTimer = Timer.builder("lucene.indexing.queue.apply")
+            .description("Time to reindex one batch of gardenfields")
+            .register(meterRegistry);
+        this.latencyTimer = Timer.builder("lucene.indexing.queue.latency")
+            .description("Time from enqueueing a gardenfield until its reindex is committed")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public int size() {
+        return pendingChanges.size();
+    }
+
+    /**
+     * Waits until no gardenfield is pending and the worker applied its last batch.
+     *
+     * @return false if the queue did not drain within the timeout
+     */
+    public boolean awaitDrained(@NotNull Duration timeout) throws InterruptedException {
+        return pendingChanges.awaitDrained(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @return true if changes only reach the lucene index through this queue, with asynchronous indexing or the change
+     * log replication, so the caches are invalidated once it applied them
+     */
+    public boolean isIndexingAsynchronously() {
+        return luceneIndexingProperties.isAsyncIndexing() || luceneIndexingProperties.isChangeLogReplication();
+    }
+
+    /**
+     * Enqueues the gardenfield once the surrounding transaction committed, if asynchronous indexing of local writes is
+     * enabled. With the change log replication the gardenfield arrives through the log instead.
+     */
+    public void enqueueAfterCommit(@NotNull Long gardenFieldId) {
+        if (!luceneIndexingProperties.isAsyncIndexing() || luceneIndexingProperties.isChangeLogReplication()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    enqueue(Collections.singleton(gardenFieldId));
+                }
+            });
+        } else {
+            enqueue(Collections.singleton(gardenFieldId));
+        }
+    }
+
+    /**
+     * Enqueues the gardenfields, waits while the queue is full and reindexes the remaining gardenfields in the
+     * calling thread if the queue stays full.
+     */
+    public void enqueue(@NotNull Collection<Long> gardenFieldIds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(luceneIndexingProperties.getQueueOfferTimeoutMillis());
+        Set<Long> rejected = new LinkedHashSet<>();
+        try {
+            for (Long gardenFieldId : gardenFieldIds) {
+                if (!pendingChanges.offer(gardenFieldId, deadline)) {
+                    rejected.add(gardenFieldId);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Long gardenFieldId : gardenFieldIds) {
+                if (!pendingChanges.contains(gardenFieldId)) {
+                    rejected.add(gardenFieldId);
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            log.warn("Gardenfield indexing queue is full, reindexing {} gardenfields in the writing thread", rejected.size());
+            apply(toEnqueued(rejected));
+        }
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                Map<Long, Long> batch = pendingChanges.take(luceneIndexingProperties.getQueueBatchSize());
+                try {
+                    apply(batch);
+                } finally {
+                    pendingChanges.applied();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Reindexing a batch of gardenfields failed", e);
+            }
+        }
+    }
+
+    /**
+     * @param batch gardenfield ids mapped to the {@link System#nanoTime()} they were enqueued
+     */
+    private void apply(Map<Long, Long> batch) {
+        applyTimer.record(() -> transactionTemplate.execute(status -> {
+            FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+            List<GardenFieldLocationDTO> changedLocations = new ArrayList<>(batch.size());
+            for (Long gardenFieldId : batch.keySet()) {
+                GardenField gardenField = entityManager.find(GardenField.class, gardenFieldId);
+                if (gardenField == null) {
+                    fullTextEntityManager.purge(GardenField.class, gardenFieldId);
+                    changedLocations.add(new GardenFieldLocationDTO(gardenFieldId, null, null));
+                } else {
+                    fullTextEntityManager.index(gardenField);
+                    changedLocations.add(new GardenFieldLocationDTO(gardenFieldId, gardenField.getLatitude(),
+                        gardenField.getLongitude()));
+                }
+            }
+            //registered on this transaction, also when applied from the after commit callback of a writer
+            gardenFieldSearchCache.invalidateAll();
+            gardenFieldClusterService.invalidate(changedLocations);
+            return null;
+        }));
+        long now = System.nanoTime();
+        batch.values().forEach(enqueued -> latencyTimer.record(now - enqueued, TimeUnit.NANOSECONDS));
+        log.debug("Reindexed {} gardenfields", batch.size());
+    }
+
+    private static Map<Long, Long> toEnqueued(Set<Long> gardenFieldIds) {
+        long now = System.nanoTime();
+        Map<Long, Long> enqueued = new LinkedHashMap<>();
+        gardenFieldIds.forEach(gardenFieldId -> enqueued.put(gardenFieldId, now));
+        return enqueued;
+    }
+
+    /**
+     * Bounded, insertion ordered set of gardenfield ids with the time of their first enqueueing. Offering an id
+     * which is already pending merges with it and never blocks.
+     */
+    static final class PendingChanges {
+
+        private final int capacity;
+        private final LinkedHashMap<Long, Long> enqueued = new LinkedHashMap<>();
+        /**
+         * batches taken but not yet {@link #applied()}
+         */
+        private int applying;
+
+        PendingChanges(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized int size() {
+            return enqueued.size();
+        }
+
+        synchronized boolean contains(Long gardenFieldId) {
+            return enqueued.containsKey(gardenFieldId);
+        }
+
+        /**
+         * @param deadline {@link System#nanoTime()} until which to wait for free capacity
+         * @return false if the queue stayed full until the deadline
+         */
+        synchronized boolean offer(Long gardenFieldId, long deadline) throws InterruptedException {
+            while (!enqueued.containsKey(gardenFieldId) && enqueued.size() >= capacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            enqueued.putIfAbsent(gardenFieldId, System.nanoTime());
+            notifyAll();
+            return true;
+        }
+
+        /**
+         * Waits until at least one id is pending and removes up to maxSize ids in the order of their enqueueing.
+         */
+        synchronized Map<Long, Long> take(int maxSize) throws InterruptedException {
+            while (enqueued.isEmpty()) {
+                wait();
+            }
+            Map<Long, Long> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<Long, Long>> iterator = enqueued.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < maxSize) {
+                Map.Entry<Long, Long> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            applying++;
+            notifyAll();
+            return batch;
+        }
+
+        synchronized void applied() {
+            applying--;
+            notifyAll();
+        }
+
+        /**
+         * @param deadline {@link System#nanoTime()} until which to wait
+         * @return false if ids were still pending or applied at the deadline
+         */
+        synchronized boolean awaitDrained(long deadline) throws InterruptedException {
+            while (!enqueued.isEmpty() || applying > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.gardle.service;
+
+import com.gardle.domain.criteria.GardenFieldFilterCriteria;
+import com.gardle.domain.criteria.LocationFilterCriteria;
+import com.gardle.service.dto.GardenFieldDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Caches pages of gardenfield search results, keyed on the normalized filter criteria and the requested page.
+ * <p>
+ * Size and time to live come from {@code jhipster.cache.caffeine}. A write to any gardenfield invalidates the whole
+ * cache (a changed or new gardenfield can enter or leave every result) once the lucene index contains it: with the
+ * synchronous indexing of hibernate search that is the commit, so the {@link com.gardle.domain.listener.GardenFieldChangeListener}
+ * invalidates after it; with asynchronous indexing or the change log replication only the batch applied by the
+ * {@link GardenFieldIndexingQueue} makes the change searchable and invalidates the cache.
+ * <p>
+ * Reserved gardenfields are excluded through the in-memory {@link ReservedLeasingIndex}, so a status change of a
+ * leasing invalidates the entries filtering on an overlapping leasing time once that index contains it: after the
+ * commit on the writing node and after the refresh of the {@link GardenFieldIndexReplication} on the others.
+ * Hits, misses and evictions are exported as {@code cache.*} metrics with the tag {@code cache=gardenFieldSearch}.
+ */
+@Service
+public class GardenFieldSearchCache {
+
+    static final String CACHE_NAME = "gardenFieldSearch";
+
+    private final Logger log = LoggerFactory.getLogger(GardenFieldSearchCache.class);
+
+    private final Cache<SearchKey, Page<GardenFieldDTO>> cache;
+
+    public GardenFieldSearchCache(JHipsterProperties jHipsterProperties, MeterRegistry meterRegistry) {
+        JHipsterProperties.Cache.Caffeine caffeineProperties = jHipsterProperties.getCache().getCaffeine();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(caffeineProperties.getMaxEntries())
+            .expireAfterWrite(Duration.ofSeconds(caffeineProperties.getTimeToLiveSeconds()))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @NotNull
+    public Page<GardenFieldDTO> get(@NotNull Pageable pageable, @NotNull GardenFieldFilterCriteria gardenFieldFilterCriteria,
+                                    @NotNull Function<GardenFieldFilterCriteria, Page<GardenFieldDTO>> search) {
+        SearchKey key = new SearchKey(normalize(gardenFieldFilterCriteria), pageable);
+        return cache.get(key, k -> search.apply(k.criteria));
+    }
+
+    /**
+     * Invalidates all entries once the surrounding transaction committed.
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            cache.invalidateAll();
+            log.debug("Invalidated gardenfield search cache");
+        });
+    }
+
+    /**
+     * Invalidates all entries which filter on a leasing time overlapping [from, to] once the surrounding transaction
+     * committed. Entries without leasing time are not affected by reservations.
+     */
+    public void invalidateLeasingTime(@NotNull Instant from, @NotNull Instant to) {
+        afterCommit(() -> cache.asMap().keySet().removeIf(key -> key.overlapsLeasingTime(from, to)));
+    }
+
+    /**
+     * Invalidates all entries which filter on a leasing time once the surrounding transaction committed, for changes
+     * of reservations whose interval is unknown.
+     */
+    public void invalidateLeasingTimes() {
+        afterCommit(() -> cache.asMap().keySet().removeIf(SearchKey::hasLeasingTime));
+    }
+
+    private void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    /**
+     * Creates a copy of the criteria in which equivalent requests are equal, e.g. keywords are trimmed and
+     * lowercased (the analyzers lowercase anyway) and empty values are null.
+     */
+    @NotNull
+    static GardenFieldFilterCriteria normalize(@NotNull GardenFieldFilterCriteria criteria) {
+        LocationFilterCriteria location = criteria.getLocationFilterCriteria();
+        if (location != null) {
+            location = location.checkAllNull() ? null
+                : new LocationFilterCriteria(location.getLatitude(), location.getLongitude(), location.getRadiusInKM());
+        }
+        String keywords = criteria.getKeywords();
+        if (keywords != null) {
+            keywords = keywords.trim().isEmpty() ? null : keywords.trim().toLowerCase(Locale.ROOT);
+        }
+        return new GardenFieldFilterCriteria(location, criteria.getMinPricePerM2(), criteria.getMaxPricePerM2(),
+            criteria.getSizeInM2LowerBound(), criteria.getSizeInM2UpperBound(), criteria.getRoofed(),
+            criteria.getLeasingTimeFrom(), criteria.getLeasingTimeTo(), keywords, criteria.getWater(),
+            criteria.getElectricity(), criteria.getHigh(), criteria.getGlassHouse());
+    }
+
+    @EqualsAndHashCode
+    private static final class SearchKey {
+        private final GardenFieldFilterCriteria criteria;
+        private final Pageable pageable;
+
+        private SearchKey(GardenFieldFilterCriteria criteria, Pageable pageable) {
+            this.criteria = criteria;
+            this.pageable = pageable;
+        }
+
+        private boolean hasLeasingTime() {
+            return criteria.getLeasingTimeFrom() != null || criteria.getLeasingTimeTo() != null;
+        }
+
+        private boolean overlapsLeasingTime(@NotNull Instant from, @NotNull Instant to) {
+            Instant leasingTimeFrom = criteria.getLeasingTimeFrom();
+            Instant leasingTimeTo = criteria.getLeasingTimeTo();
+            if (!hasLeasingTime()) {
+                return false;
+            }
+            return (leasingTimeFrom == null || !leasingTimeFrom.isAfter(to))
+                && (leasingTimeTo == null || !leasingTimeTo.isBefore(from));
+        }
+    }
+}
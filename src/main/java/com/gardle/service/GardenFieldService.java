@@ -1,12 +1,16 @@
 package com.gardle.service;
 
+import com.gardle.config.LuceneIndexServiceBean;
 import com.gardle.domain.GardenField;
 import com.gardle.domain.User;
 import com.gardle.domain.criteria.GardenFieldFilterCriteria;
 import com.gardle.repository.GardenFieldRepository;
 import com.gardle.repository.UserRepository;
+import com.gardle.repository.search.GardenFieldSearchRepository;
 import com.gardle.service.dto.FilterBoundariesDTO;
+import com.gardle.service.dto.GardenFieldCursorPageDTO;
 import com.gardle.service.dto.GardenFieldDTO;
+import com.gardle.service.dto.GardenFieldFacetsDTO;
 import com.gardle.service.exception.*;
 import com.gardle.service.mapper.GardenFieldMapper;
 import com.gardle.validator.GardenFieldFilterCriteriaValidator;
@@ -14,7 +18,9 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nullable;
@@ -35,6 +41,9 @@ public class GardenFieldService {
     private final SecurityHelperService securityHelperService;
     private final GardenFieldFilterCriteriaValidator gardenFieldFilterCriteriaValidator;
     private final GardenFieldMapper gardenFieldMapper;
+    private final GardenFieldSearchCache gardenFieldSearchCache;
+    private final GardenFieldFilterBoundaries gardenFieldFilterBoundaries;
+    private final LuceneIndexServiceBean luceneIndexServiceBean;
 
     public GardenFieldDTO createGardenField(GardenFieldDTO gardenFieldDTO) {
         User currentUser = securityHelperService.getLoggedInUser();
@@ -105,27 +114,58 @@ public class GardenFieldService {
     public Page<GardenFieldDTO> filterGardenFields(Pageable pageable, @Nullable GardenFieldFilterCriteria gardenFieldFilterCriteria) {
         final String validationResult = gardenFieldFilterCriteriaValidator.isValid(gardenFieldFilterCriteria);
         if (validationResult.isEmpty()) {
-            if (gardenFieldFilterCriteria == null || gardenFieldFilterCriteria.checkAllNull()) {
-                return gardenFieldRepository.findAll(pageable).map(gardenFieldMapper::toDto);
+            if (gardenFieldFilterCriteria == null) {
+                gardenFieldFilterCriteria = new GardenFieldFilterCriteria();
             }
-            return gardenFieldRepository.filter(pageable, gardenFieldFilterCriteria).map(gardenFieldMapper::toDto);
+            if (gardenFieldFilterCriteria.checkAllNull() && !luceneIndexServiceBean.isReady()) {
+                //unfiltered listings are served from the database while the index is still being built,
+                //distance sorting needs a location criteria and is ignored like in the index
+                Sort sort = Sort.by(pageable.getSort().stream()
+                    .filter(order -> !GardenFieldSearchRepository.SORT_DISTANCE.equals(order.getProperty()))
+                    .collect(Collectors.toList()));
+                return gardenFieldRepository.findAll(PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort))
+                    .map(gardenFieldMapper::toDto);
+            }
+            //result cards are built from the index only, no entity is loaded
+            return gardenFieldSearchCache.get(pageable, gardenFieldFilterCriteria,
+                criteria -> gardenFieldRepository.filterProjected(pageable, criteria));
         } else {
             throw new GardenFieldFilterCriteriaValidationServiceException(validationResult);
         }
     }
 
+    public GardenFieldCursorPageDTO filterGardenFieldsAfter(@Nullable String cursor, int size, Sort sort,
+                                                            @Nullable GardenFieldFilterCriteria gardenFieldFilterCriteria) {
+        final String validationResult = gardenFieldFilterCriteriaValidator.isValid(gardenFieldFilterCriteria);
+        if (!validationResult.isEmpty()) {
+            throw new GardenFieldFilterCriteriaValidationServiceException(validationResult);
+        }
+        if (gardenFieldFilterCriteria == null) {
+            gardenFieldFilterCriteria = new GardenFieldFilterCriteria();
+        }
+        try {
+            return gardenFieldRepository.filterAfter(cursor, size, sort, gardenFieldFilterCriteria);
+        } catch (IllegalArgumentException e) {
+            throw new GardenFieldFilterCriteriaValidationServiceException("invalid cursor: " + e.getMessage());
+        }
+    }
+
+    public GardenFieldFacetsDTO getFacets(@Nullable GardenFieldFilterCriteria gardenFieldFilterCriteria) {
+        final String validationResult = gardenFieldFilterCriteriaValidator.isValid(gardenFieldFilterCriteria);
+        if (!validationResult.isEmpty()) {
+            throw new GardenFieldFilterCriteriaValidationServiceException(validationResult);
+        }
+        if (gardenFieldFilterCriteria == null) {
+            gardenFieldFilterCriteria = new GardenFieldFilterCriteria();
+        }
+        return gardenFieldRepository.facets(gardenFieldFilterCriteria, gardenFieldFilterBoundaries.getFilterBoundaries());
+    }
+
     public List<GardenFieldDTO> autocomplete(@Nullable final String partialSearchString) {
-        return this.gardenFieldRepository.autocompleteSearch(partialSearchString)
-            .stream().map(gardenFieldMapper::toDto).collect(Collectors.toList());
+        return this.gardenFieldRepository.autocompleteSearchProjected(partialSearchString);
     }
 
     public FilterBoundariesDTO getFilterBoundaries() {
-        FilterBoundariesDTO filterBoundariesDTO = new FilterBoundariesDTO();
-        filterBoundariesDTO.setMinPrice(Math.floor(gardenFieldRepository.getMinPriceForPerMonth()));
-        filterBoundariesDTO.setMaxPrice(Math.ceil(gardenFieldRepository.getMaxPriceForSizePerMonth()));
-
-        filterBoundariesDTO.setMinSize(Math.floor(gardenFieldRepository.getMinSize()));
-        filterBoundariesDTO.setMaxSize(Math.ceil(gardenFieldRepository.getMaxSize()));
-        return filterBoundariesDTO;
+        return gardenFieldFilterBoundaries.getFilterBoundaries();
     }
 }
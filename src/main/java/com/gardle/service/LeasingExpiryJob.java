@@ -0,0 +1,251 @@
+package com.gardle.service;
+
+import com.gardle.config.Constants;
+import com.gardle.config.LeasingExpiryProperties;
+import com.gardle.config.LuceneIndexingProperties;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.service.dto.leasing.ExpiringLeasingDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cancels open leasings which the owner can no longer accept, i.e. starting within the next
+ * {@link #ANSWER_DAYS_BEFORE_START} days or in the past, and cancels their payments.
+ * <p>
+ * The leasings are selected in chunks of {@code leasing.expiry.chunk-size} ordered by id (keyset paging) and cancelled
+ * with one bulk update per chunk, each chunk in its own transaction. The payments are cancelled after the commit by a
+ * bounded pool of workers; if its queue is full the job cancels the payment itself, which slows the job down instead
+ * of piling up work. Bulk updates bypass the entity listeners, so the affected gardenfields are handed to the
+ * {@link GardenFieldIndexReplication} log or the {@link GardenFieldIndexingQueue} explicitly. The
+ * {@link ReservedLeasingIndex} only contains reserved leasings and is not affected.
+ * <p>
+ * The cancellation marks the payment to be released in the same transaction, a released payment clears the mark.
+ * Payments which failed or were dropped on shutdown are claimed again by a later run, on any node, once
+ * {@code leasing.expiry.payment-retry-delay-minutes} passed since the last attempt, up to
+ * {@code leasing.expiry.payment-release-attempts} attempts.
+ * <p>
+ * Exported metrics: {@code leasing.expiry.expired} and {@code leasing.expiry.payments.*} counters, the
+ * {@code leasing.expiry.backlog} of expired leasings not cancelled yet, the {@code leasing.expiry.payments.pending}
+ * cancellations and the {@code leasing.expiry.chunk} timer.
+ */
+@Service
+public class LeasingExpiryJob {
+
+    /**
+     * same as {@link LeasingService#UPDATE_DAY_RANGE}, the owner has to answer before
+     */
+    static final int ANSWER_DAYS_BEFORE_START = 14;
+
+    private final Logger log = LoggerFactory.getLogger(LeasingExpiryJob.class);
+
+    private final LeasingRepository leasingRepository;
+    private final PaymentService paymentService;
+    private final GardenFieldIndexReplication gardenFieldIndexReplication;
+    private final GardenFieldIndexingQueue gardenFieldIndexingQueue;
+    private final LuceneIndexingProperties luceneIndexingProperties;
+    private final LeasingExpiryProperties leasingExpiryProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ThreadPoolExecutor paymentExecutor;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong paymentsCancelled = new AtomicLong();
+    private final AtomicLong paymentsFailed = new AtomicLong();
+    private final AtomicLong paymentsRetried = new AtomicLong();
+    private final AtomicLong backlog = new AtomicLong();
+    private final Timer chunkTimer;
+
+    public LeasingExpiryJob(LeasingRepository leasingRepository, PaymentService paymentService,
+                            GardenFieldIndexReplication gardenFieldIndexReplication,
+                            GardenFieldIndexingQueue gardenFieldIndexingQueue,
+                            LuceneIndexingProperties luceneIndexingProperties,
+                            LeasingExpiryProperties leasingExpiryProperties,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.leasingRepository = leasingRepository;
+        this.paymentService = paymentService;
+        this.gardenFieldIndexReplication = gardenFieldIndexReplication;
+        this.gardenFieldIndexingQueue = gardenFieldIndexingQueue;
+        this.luceneIndexingProperties = luceneIndexingProperties;
+        this.leasingExpiryProperties = leasingExpiryProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.paymentExecutor = new ThreadPoolExecutor(leasingExpiryProperties.getPaymentThreads(),
+            leasingExpiryProperties.getPaymentThreads(), 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(leasingExpiryProperties.getPaymentQueueCapacity()), runnable -> {
+            Thread thread = new Thread(runnable, "leasing-payment-cancel-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        FunctionCounter.builder("leasing.expiry.expired", expired, AtomicLong::get)
+            .description("Open leasings cancelled because they expired")
+            .register(meterRegistry);
+        FunctionCounter.builder("leasing.expiry.payments.cancelled", paymentsCancelled, AtomicLong::get)
+            .description("Payments of expired leasings cancelled")
+            .register(meterRegistry);
+        FunctionCounter.builder("leasing.expiry.payments.failed", paymentsFailed, AtomicLong::get)
+            .description("Payments of expired leasings which could not be cancelled")
+            .register(meterRegistry);
+        FunctionCounter.builder("leasing.expiry.payments.retried", paymentsRetried, AtomicLong::get)
+            .description("Payment cancellations of expired leasings claimed again after a failure or shutdown")
+            .register(meterRegistry);
+        Gauge.builder("leasing.expiry.backlog", backlog, AtomicLong::get)
+            .description("Expired open leasings not cancelled yet by the running job")
+            .register(meterRegistry);
+        Gauge.builder("leasing.expiry.payments.pending", paymentExecutor, executor -> executor.getQueue().size()
+            + executor.getActiveCount())
+            .description("Payment cancellations waiting or running")
+            .register(meterRegistry);
+        this.chunkTimer = Timer.builder("leasing.expiry.chunk")
+            .description("Time to cancel one chunk of expired leasings")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        paymentExecutor.shutdown();
+        if (!paymentExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} payment cancellations of expired leasings were not executed, they are retried by a later run",
+                paymentExecutor.getQueue().size());
+            paymentExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * This is scheduled to get fired every 15 minutes.
+     */
+    @Scheduled(cron = "0 */15 * * * ?")
+    public synchronized void expireOpenLeasings() {
+        Instant cutoff = LocalDate.now(ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant()
+            .plus(ANSWER_DAYS_BEFORE_START, ChronoUnit.DAYS);
+        retryPaymentReleases();
+        backlog.set(leasingRepository.countExpiringOpen(cutoff));
+        long lastId = 0L;
+        int cancelled = 0;
+        try {
+            while (true) {
+                final long after = lastId;
+                List<ExpiringLeasingDTO> chunk = chunkTimer.record(() -> transactionTemplate.execute(status ->
+                    expireChunk(cutoff, after)));
+                if (chunk == null || chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getLeasingId();
+                cancelled += chunk.size();
+                expired.addAndGet(chunk.size());
+                backlog.set(Math.max(0, backlog.get() - chunk.size()));
+                afterChunkCommitted(chunk);
+            }
+        } finally {
+            backlog.set(0);
+        }
+        if (cancelled > 0) {
+            log.info("Cancelled {} expired open leasings", cancelled);
+        }
+    }
+
+    /**
+     * Claims the payments of cancelled leasings whose release is still pending after the retry delay, chunk by chunk,
+     * and hands them to the workers after each commit.
+     */
+    private void retryPaymentReleases() {
+        Instant before = Instant.now().minus(leasingExpiryProperties.getPaymentRetryDelayMinutes(), ChronoUnit.MINUTES);
+        long lastId = 0L;
+        int retried = 0;
+        while (true) {
+            final long after = lastId;
+            List<ExpiringLeasingDTO> chunk = transactionTemplate.execute(status -> claimPaymentReleases(before, after));
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getLeasingId();
+            retried += chunk.size();
+            paymentsRetried.addAndGet(chunk.size());
+            chunk.forEach(leasing -> paymentExecutor.execute(() -> cancelPayment(leasing)));
+        }
+        if (retried > 0) {
+            log.info("Retrying {} payment cancellations of expired leasings", retried);
+        }
+    }
+
+    /**
+     * @return the claimed leasings, ordered by id
+     */
+    @NotNull
+    private List<ExpiringLeasingDTO> claimPaymentReleases(Instant before, long lastId) {
+        List<Long> ids = leasingRepository.findPaymentReleaseIds(leasingExpiryProperties.getPaymentReleaseAttempts(),
+            before, lastId, PageRequest.of(0, leasingExpiryProperties.getChunkSize()));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ExpiringLeasingDTO> chunk = new ArrayList<>(leasingRepository.findExpiringByIdIn(ids));
+        chunk.sort(Comparator.comparing(ExpiringLeasingDTO::getLeasingId));
+        leasingRepository.claimPaymentRelease(ids, Constants.SYSTEM_ACCOUNT, Instant.now());
+        return chunk;
+    }
+
+    /**
+     * @return the cancelled leasings, ordered by id
+     */
+    @NotNull
+    private List<ExpiringLeasingDTO> expireChunk(Instant cutoff, long lastId) {
+        List<Long> ids = leasingRepository.findExpiringOpenIds(cutoff, lastId,
+            PageRequest.of(0, leasingExpiryProperties.getChunkSize()));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ExpiringLeasingDTO> chunk = new ArrayList<>(leasingRepository.findExpiringByIdIn(ids));
+        chunk.sort(Comparator.comparing(ExpiringLeasingDTO::getLeasingId));
+        leasingRepository.cancelOpenAndMarkPaymentRelease(ids, Constants.SYSTEM_ACCOUNT, Instant.now());
+        chunk.stream().map(ExpiringLeasingDTO::getGardenFieldId).distinct()
+            .forEach(gardenFieldIndexReplication::append);
+        return chunk;
+    }
+
+    private void afterChunkCommitted(List<ExpiringLeasingDTO> chunk) {
+        if (!luceneIndexingProperties.isChangeLogReplication()) {
+            Set<Long> gardenFieldIds = new LinkedHashSet<>();
+            chunk.forEach(leasing -> gardenFieldIds.add(leasing.getGardenFieldId()));
+            gardenFieldIndexingQueue.enqueue(gardenFieldIds);
+        }
+        for (ExpiringLeasingDTO leasing : chunk) {
+            paymentExecutor.execute(() -> cancelPayment(leasing));
+        }
+    }
+
+    /**
+     * A failed cancellation keeps the payment marked, so a later run retries it.
+     */
+    private void cancelPayment(ExpiringLeasingDTO leasing) {
+        try {
+            paymentService.cancelPayment(leasing.getPaymentSessionId());
+        } catch (RuntimeException e) {
+            paymentsFailed.incrementAndGet();
+            log.warn("Could not cancel payment of expired leasing {}: {}", leasing.getLeasingId(), e.getMessage());
+            return;
+        }
+        paymentsCancelled.incrementAndGet();
+        transactionTemplate.execute(status -> leasingRepository.clearPaymentRelease(leasing.getLeasingId()));
+    }
+}
@@ -1,8 +1,13 @@
 package com.gardle.service;
 
+import com.gardle.domain.GardenField;
+import com.gardle.domain.GardenField_;
 import com.gardle.domain.Leasing;
 import com.gardle.domain.Leasing_;
 import com.gardle.domain.Message_;
+import com.gardle.domain.User;
+import com.gardle.domain.enumeration.LeasingState;
+import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.service.dto.LeasingCriteria;
 import com.gardle.service.dto.leasing.LeasingDTO;
@@ -16,7 +21,9 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.JoinType;
+import java.time.Instant;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -51,8 +58,9 @@ public class LeasingQueryService extends QueryService<Leasing> {
     public List<LeasingDTO> findByCriteria(LeasingCriteria criteria) {
         log.debug("find by criteria : {}", criteria);
         final Specification<Leasing> specification = createSpecification(criteria);
-        return (leasingRepository.findAll(specification)).stream()
-            .map(leasingMapper::toDto).collect(Collectors.toList());
+        List<Leasing> leasings = leasingRepository.findAll(specification);
+        fetchMessages(leasings);
+        return leasings.stream().map(leasingMapper::toDto).collect(Collectors.toList());
     }
 
     /**
@@ -66,8 +74,97 @@ public class LeasingQueryService extends QueryService<Leasing> {
     public Page<LeasingDTO> findByCriteria(LeasingCriteria criteria, Pageable page) {
         log.debug("find by criteria : {}, page: {}", criteria, page);
         final Specification<Leasing> specification = createSpecification(criteria);
-        return leasingRepository.findAll(specification, page)
-            .map(leasingMapper::toDto);
+        return toDtoPage(leasingRepository.findAll(specification, page));
+    }
+
+    /**
+     * Return a {@link Page} of {@link LeasingDTO} of the gardenfield which matches the optional filters.
+     */
+    @Transactional(readOnly = true)
+    public Page<LeasingDTO> findByGardenField(Pageable page, GardenField gardenField,
+                                              @Nullable List<LeasingStatus> leasingStatusList, @Nullable Instant from,
+                                              @Nullable Instant to, @Nullable LeasingState state) {
+        Specification<Leasing> specification = Specification.<Leasing>where((root, query, builder) ->
+            builder.equal(root.get(Leasing_.gardenField), gardenField))
+            .and(createFilterSpecification(leasingStatusList, from, to, state));
+        return toDtoPage(leasingRepository.findAll(specification, page));
+    }
+
+    /**
+     * Return a {@link Page} of {@link LeasingDTO} requested by the user which matches the optional filters.
+     */
+    @Transactional(readOnly = true)
+    public Page<LeasingDTO> findByUser(Pageable page, User user, @Nullable List<LeasingStatus> leasingStatusList,
+                                       @Nullable Instant from, @Nullable Instant to, @Nullable LeasingState state) {
+        Specification<Leasing> specification = Specification.<Leasing>where((root, query, builder) ->
+            builder.equal(root.get(Leasing_.user), user))
+            .and(createFilterSpecification(leasingStatusList, from, to, state));
+        return toDtoPage(leasingRepository.findAll(specification, page));
+    }
+
+    /**
+     * Return a {@link Page} of {@link LeasingDTO} of all gardenfields of the owner which matches the optional filters.
+     */
+    @Transactional(readOnly = true)
+    public Page<LeasingDTO> findByOwner(Pageable page, User owner, @Nullable List<LeasingStatus> leasingStatusList,
+                                        @Nullable Instant from, @Nullable Instant to, @Nullable LeasingState state) {
+        Specification<Leasing> specification = Specification.<Leasing>where((root, query, builder) ->
+            builder.equal(root.get(Leasing_.gardenField).get(GardenField_.owner), owner))
+            .and(createFilterSpecification(leasingStatusList, from, to, state));
+        return toDtoPage(leasingRepository.findAll(specification, page));
+    }
+
+    /**
+     * The page query fetches user, gardenfield and owner, the messages of the whole page are fetched with one more
+     * statement before the mapping, so a page costs the same number of statements whatever its size.
+     */
+    private Page<LeasingDTO> toDtoPage(Page<Leasing> leasings) {
+        fetchMessages(leasings.getContent());
+        return leasings.map(leasingMapper::toDto);
+    }
+
+    private void fetchMessages(List<Leasing> leasings) {
+        if (!leasings.isEmpty()) {
+            leasingRepository.fetchMessages(leasings);
+        }
+    }
+
+    /**
+     * Only the supplied filters become predicates, so the database plans every combination with the matching
+     * indexes instead of one catch-all statement.
+     */
+    private Specification<Leasing> createFilterSpecification(@Nullable List<LeasingStatus> leasingStatusList,
+                                                             @Nullable Instant from, @Nullable Instant to,
+                                                             @Nullable LeasingState state) {
+        Specification<Leasing> specification = Specification.where(null);
+        if (leasingStatusList != null && !leasingStatusList.isEmpty()) {
+            specification = specification.and((root, query, builder) -> root.get(Leasing_.status).in(leasingStatusList));
+        }
+        if (from != null) {
+            specification = specification.and((root, query, builder) -> builder.greaterThanOrEqualTo(root.get(Leasing_.from), from));
+        }
+        if (to != null) {
+            specification = specification.and((root, query, builder) -> builder.lessThanOrEqualTo(root.get(Leasing_.to), to));
+        }
+        if (state != null) {
+            final Instant now = Instant.now();
+            switch (state) {
+                case PAST:
+                    specification = specification.and((root, query, builder) -> builder.lessThan(root.get(Leasing_.to), now));
+                    break;
+                case ONGOING:
+                    specification = specification.and((root, query, builder) -> builder.and(
+                        builder.lessThanOrEqualTo(root.get(Leasing_.from), now),
+                        builder.greaterThanOrEqualTo(root.get(Leasing_.to), now)));
+                    break;
+                case FUTURE:
+                    specification = specification.and((root, query, builder) -> builder.greaterThan(root.get(Leasing_.from), now));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return specification;
     }
 
     /**
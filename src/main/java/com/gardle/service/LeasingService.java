@@ -6,8 +6,10 @@ import com.gardle.domain.User;
 import com.gardle.domain.enumeration.LeasingState;
 import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.IndexChangeLogRepository;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.UserRepository;
+import com.gardle.service.dto.leasing.AvailabilityCalendarDTO;
 import com.gardle.service.dto.leasing.CreatorLeasingDTO;
 import com.gardle.service.dto.leasing.LeasingDTO;
 import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
@@ -51,6 +53,12 @@ public class LeasingService {
     private final SecurityHelperService securityHelperService;
     private final PaymentService paymentService;
     private final MessageService messageService;
+    private final ReservedLeasingIndex reservedLeasingIndex;
+    private final GardenFieldAvailabilityCalendar gardenFieldAvailabilityCalendar;
+    private final GardenFieldBookingLock gardenFieldBookingLock;
+    private final IndexChangeLogRepository indexChangeLogRepository;
+    private final GardenFieldIndexReplication gardenFieldIndexReplication;
+    private final LeasingQueryService leasingQueryService;
 
     public final Integer UPDATE_DAY_RANGE = 14; //numbers of days where an status update of the leasing is allowed
     public final Integer CREATE_DAY_RANGE = 14; //number of days before start a leasing can be created
@@ -70,13 +78,13 @@ public class LeasingService {
         leasing.setUser(requester);
         leasing.setPaymentSessionId(paymentSessionId);
 
-        List<Leasing> overlappings;
-        overlappings = leasingRepository.findAllOverlapping(leasing.getGardenField(), requester, leasing.getFrom(), leasing.getTo());
-
-        if (overlappings.size() > 0) {
+        //concurrent bookings (e.g. webhooks) of the same gardenfield must not both pass the overlap check
+        gardenFieldBookingLock.lock(leasing.getGardenField().getId());
+        if (isOverlapping(leasing.getGardenField(), requester, leasing.getFrom(), leasing.getTo())) {
             throw new LeasingsOverlapServiceException();
         }
         leasing.setStatus(LeasingStatus.OPEN);
+        leasing.getGardenField().addLeasing(leasing);
         leasing = leasingRepository.save(leasing);
         messageService.createLeasingNotification(leasing);
         return leasingMapper.toDto(leasing);
@@ -84,7 +92,13 @@ public class LeasingService {
 
     public LeasingDTO updateLeasing(UpdatingLeasingDTO leasingDTO) {
         Leasing updatedLeasing = updatingLeasingMapper.toEntity(leasingDTO);
-        Leasing currentLeasing = leasingRepository.findById(updatedLeasing.getId()).orElseThrow(LeasingNotFoundServiceException::new);
+        //locked before the leasing is loaded, so concurrent answers (e.g. reserved and rejected) see each other's status
+        Long gardenFieldId = leasingRepository.findGardenFieldIdById(updatedLeasing.getId())
+            .orElseThrow(LeasingNotFoundServiceException::new);
+        gardenFieldBookingLock.lock(gardenFieldId);
+        //the expiry job cancels open leasings without the gardenfield lock, the row lock serializes with it
+        Leasing currentLeasing = leasingRepository.findByIdForUpdate(updatedLeasing.getId())
+            .orElseThrow(LeasingNotFoundServiceException::new);
         if (securityHelperService.loggedInUserIsOwnerOfGardenField(currentLeasing.getGardenField().getId())) {
             updateLeasingForOwnerOfGardenField(currentLeasing, updatedLeasing);
         } else {
@@ -173,87 +187,81 @@ public class LeasingService {
 
     public List<LeasingDateRangeDTO> getLeasedDateRanges(Long gardenFieldId, Instant from, Instant to) {
         GardenField gardenField = gardenFieldRepository.findById(gardenFieldId).orElseThrow(GardenFieldNotFoundServiceException::new);
+        if (reservedLeasingIndex.isLoaded()) {
+            return reservedLeasingIndex.findReservedDateRanges(gardenField.getId(), from, to);
+        }
         return leasingRepository.findLeasedDateRangesByFromAndTo(gardenField, LeasingStatus.RESERVED, from, to);
     }
 
+    /**
+     * The calendar of the node local {@link ReservedLeasingIndex} without a database query if the index knows the
+     * gardenfield and caught up with the change log at the last poll. Otherwise the existence and the last change of
+     * the gardenfield in the change log, which all nodes agree on, are read from the database and the calendar as
+     * well if the index is behind that change, so a lagging node neither serves nor revalidates an outdated calendar
+     * for longer than a poll interval.
+     */
+    @Transactional(readOnly = true)
+    public AvailabilityCalendarDTO getAvailabilityCalendar(Long gardenFieldId) {
+        if (reservedLeasingIndex.isLoaded() && reservedLeasingIndex.contains(gardenFieldId)
+            && gardenFieldIndexReplication.isReservedLeasingIndexCaughtUp()) {
+            return gardenFieldAvailabilityCalendar.getCalendar(gardenFieldId);
+        }
+        GardenField gardenField = gardenFieldRepository.findById(gardenFieldId).orElseThrow(GardenFieldNotFoundServiceException::new);
+        Long lastChangeId = indexChangeLogRepository.findLastIdByGardenFieldId(gardenField.getId());
+        long revision = lastChangeId == null ? 0L : lastChangeId;
+        if (reservedLeasingIndex.isLoaded()) {
+            AvailabilityCalendarDTO calendar = gardenFieldAvailabilityCalendar.getCalendar(gardenField.getId());
+            if (calendar.getRevision() >= revision) {
+                return calendar;
+            }
+        }
+        return gardenFieldAvailabilityCalendar.getCalendar(
+            leasingRepository.findLeasedDateRangesByFromAndTo(gardenField, LeasingStatus.RESERVED, null, null), revision);
+    }
+
     public Page<LeasingDTO> findByGardenFieldId(Pageable pageable, Long gardenFieldId, List<LeasingStatus> leasingStatusList, Instant from, Instant to, LeasingState state) {
         securityHelperService.checkPermissionByGardenFieldId(gardenFieldId);
         GardenField gardenField = gardenFieldRepository.findById(gardenFieldId)
             .orElseThrow(() -> new GardenFieldUnknownServiceException("Unknown Leasing"));
-        if (state == null) {
-            return leasingRepository.findAllByGardenFieldAndStatusAndFromAndTo(pageable, gardenField, leasingStatusList, from, to,
-                null, null, null).map(leasingMapper::toDto);
-        }
-        switch (state) {
-            case PAST:
-                return leasingRepository.findAllByGardenFieldAndStatusAndFromAndTo(pageable, gardenField, leasingStatusList,
-                    from, to, Instant.now(), null, null).map(leasingMapper::toDto);
-            case ONGOING:
-                return leasingRepository.findAllByGardenFieldAndStatusAndFromAndTo(pageable, gardenField, leasingStatusList,
-                    from, to, null, Instant.now(), null).map(leasingMapper::toDto);
-            case FUTURE:
-                return leasingRepository.findAllByGardenFieldAndStatusAndFromAndTo(pageable, gardenField, leasingStatusList,
-                    from, to, null, null, Instant.now()).map(leasingMapper::toDto);
-            default:
-                return leasingRepository.findAllByGardenFieldAndStatusAndFromAndTo(pageable, gardenField, leasingStatusList,
-                    from, to, null, null, null).map(leasingMapper::toDto);
-        }
+        return leasingQueryService.findByGardenField(pageable, gardenField, leasingStatusList, from, to, state);
     }
 
     public Page<LeasingDTO> findByUserId(Pageable pageable, Long userId, List<LeasingStatus> leasingStatusList, Instant from, Instant to, LeasingState state) {
         securityHelperService.checkPermission(userId);
         User user = securityHelperService.getLoggedInUser();
-        if (state == null) {
-            return leasingRepository.findAllByUserAndStatusAndFromAndTo(pageable, user, leasingStatusList, from, to,
-                null, null, null).map(leasingMapper::toDto);
-        }
-        switch (state) {
-            case PAST:
-                return leasingRepository.findAllByUserAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, Instant.now(), null, null).map(leasingMapper::toDto);
-            case ONGOING:
-                return leasingRepository.findAllByUserAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, Instant.now(), null).map(leasingMapper::toDto);
-            case FUTURE:
-                return leasingRepository.findAllByUserAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, null, Instant.now()).map(leasingMapper::toDto);
-            default:
-                return leasingRepository.findAllByUserAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, null, null).map(leasingMapper::toDto);
-        }
+        return leasingQueryService.findByUser(pageable, user, leasingStatusList, from, to, state);
     }
 
     public Page<LeasingDTO> findByOwner(Pageable pageable, List<LeasingStatus> leasingStatusList, Instant from, Instant to, LeasingState state) {
         User user = securityHelperService.getLoggedInUser();
-        if (state == null) {
-            return leasingRepository.findAllByOwnerAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                from, to, null, null, null).map(leasingMapper::toDto);
-        }
-        switch (state) {
-            case PAST:
-                return leasingRepository.findAllByOwnerAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, Instant.now(), null, null).map(leasingMapper::toDto);
-            case ONGOING:
-                return leasingRepository.findAllByOwnerAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, Instant.now(), null).map(leasingMapper::toDto);
-            case FUTURE:
-                return leasingRepository.findAllByOwnerAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, null, Instant.now()).map(leasingMapper::toDto);
-            default:
-                return leasingRepository.findAllByOwnerAndStatusAndFromAndTo(pageable, user, leasingStatusList,
-                    from, to, null, null, null).map(leasingMapper::toDto);
-        }
+        return leasingQueryService.findByOwner(pageable, user, leasingStatusList, from, to, state);
     }
 
-    public List<Leasing> getOverLappingLeasingsForGardenfieldAndUserInInterval(final Long gardenfieldId,
-                                                                               final Instant from,
-                                                                               final Instant to) {
+    public boolean isOverlappingForGardenfieldAndUserInInterval(final Long gardenfieldId,
+                                                                final Instant from,
+                                                                final Instant to) {
         if (securityHelperService.getLoggedInUser() == null) {
             throw new MissingAuthorityServiceException();
         }
-        return this.leasingRepository.findAllOverlapping(
+        return isOverlapping(
             gardenFieldRepository.findById(gardenfieldId).orElseThrow(GardenFieldNotFoundServiceException::new),
             securityHelperService.getLoggedInUser(),
             from, to);
     }
+
+    /**
+     * Same result as {@link LeasingRepository#findAllOverlapping}. The reserved leasings are checked in the
+     * {@link ReservedLeasingIndex} and only the open leasings of the user are queried, unless the index is loading or
+     * behind the last change of the gardenfield in the change log.
+     */
+    private boolean isOverlapping(GardenField gardenField, User user, Instant from, Instant to) {
+        if (reservedLeasingIndex.isLoaded()) {
+            Long lastChangeId = indexChangeLogRepository.findLastIdByGardenFieldId(gardenField.getId());
+            if (reservedLeasingIndex.getRevision(gardenField.getId()) >= (lastChangeId == null ? 0L : lastChangeId)) {
+                return reservedLeasingIndex.isReservedBetween(gardenField.getId(), from, to)
+                    || leasingRepository.existsOpenOverlapping(gardenField, user, from, to);
+            }
+        }
+        return !leasingRepository.findAllOverlapping(gardenField, user, from, to).isEmpty();
+    }
 }
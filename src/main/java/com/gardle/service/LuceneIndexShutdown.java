@@ -0,0 +1,43 @@
+package com.gardle.service;
+
+import com.gardle.config.LuceneIndexServiceBean;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Stores the lucene high-water mark on shutdown once the index caught up with the database: the change log is
+ * consumed up to its end and the {@link GardenFieldIndexingQueue} is drained. Depending on them, this bean is destroyed
+ * before them, while they are still running.
+ */
+@Service
+public class LuceneIndexShutdown {
+
+    private static final Duration CATCH_UP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final LuceneIndexServiceBean luceneIndexServiceBean;
+    private final GardenFieldIndexReplication gardenFieldIndexReplication;
+    private final GardenFieldIndexingQueue gardenFieldIndexingQueue;
+
+    public LuceneIndexShutdown(LuceneIndexServiceBean luceneIndexServiceBean,
+                               GardenFieldIndexReplication gardenFieldIndexReplication,
+                               GardenFieldIndexingQueue gardenFieldIndexingQueue) {
+        this.luceneIndexServiceBean = luceneIndexServiceBean;
+        this.gardenFieldIndexReplication = gardenFieldIndexReplication;
+        this.gardenFieldIndexingQueue = gardenFieldIndexingQueue;
+    }
+
+    @PreDestroy
+    public void storeHighWaterMark() {
+        luceneIndexServiceBean.storeHighWaterMark(() -> {
+            try {
+                return gardenFieldIndexReplication.catchUp(CATCH_UP_TIMEOUT)
+                    && gardenFieldIndexingQueue.awaitDrained(CATCH_UP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+    }
+}
@@ -5,7 +5,9 @@ import com.gardle.domain.Message;
 import com.gardle.domain.User;
 import com.gardle.domain.enumeration.MessageType;
 import com.gardle.repository.MessageRepository;
+import com.gardle.repository.UserRepository;
 import com.gardle.service.dto.MessageDTO;
+import com.gardle.service.dto.UnreadCountDTO;
 import com.gardle.service.exception.MissingAuthorityForMessageThreadServiceException;
 import com.gardle.service.mapper.MessageMapper;
 import com.google.common.base.CaseFormat;
@@ -20,10 +22,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -37,24 +36,34 @@ public class MessageService {
     private final Logger log = LoggerFactory.getLogger(MessageService.class);
 
     private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
     private final MessageMapper messageMapper;
     private final SecurityHelperService securityHelperService;
+    private final NotificationPushService notificationPushService;
+    private final UnreadMessageCounterService unreadMessageCounterService;
 
 
     public MessageDTO save(MessageDTO messageDTO) {
         log.debug("Request to save Message : {}", messageDTO);
         securityHelperService.checkPermission(messageDTO.getUserFrom().getId());
         Message message = messageMapper.toEntity(messageDTO);
+        //only the id of the recipient is taken from the client, the login for the push is loaded
+        message.setUserTo(userRepository.getOne(message.getUserTo().getId()));
         message.setType(MessageType.USER); //So far, only user messages are supported
         setThreadBetweenTwoUsers(message);
         message.setOpened(false);
         message = messageRepository.save(message);
-        return messageMapper.toDto(message);
+        MessageDTO result = messageMapper.toDto(message);
+        unreadMessageCounterService.recount(getUserIds(message));
+        notificationPushService.pushAfterCommit(message.getUserTo(), result);
+        return result;
     }
 
     public void delete(Long id) {
         log.debug("Request to delete Message : {}", id);
+        Optional<Message> message = messageRepository.findById(id);
         messageRepository.deleteById(id);
+        message.ifPresent(deleted -> unreadMessageCounterService.recount(getUserIds(deleted)));
     }
 
     @Transactional(readOnly = true)
@@ -81,8 +90,10 @@ public class MessageService {
     @Transactional(propagation = Propagation.REQUIRED)
     public void updateThreadToOpenedForUser(UUID thread) {
         log.debug("Request to open messages in thread: {}", thread);
-        if (messageRepository.canUserAccessThread(securityHelperService.getLoggedInUser(), thread)) {
-            messageRepository.updateThreadToOpenedForUser(securityHelperService.getLoggedInUser(), thread);
+        User user = securityHelperService.getLoggedInUser();
+        if (messageRepository.canUserAccessThread(user, thread)) {
+            messageRepository.updateThreadToOpenedForUser(user, thread);
+            unreadMessageCounterService.recount(Collections.singleton(user.getId()));
         } else {
             throw new MissingAuthorityForMessageThreadServiceException();
         }
@@ -91,7 +102,14 @@ public class MessageService {
     @Transactional(propagation = Propagation.REQUIRED)
     public void updateAllSystemNotificationsToOpenedForLoggedInUser() {
         log.debug("Request to open all system messages for logged-in user");
-        messageRepository.updateSystemMessagesToOpenedForUser(securityHelperService.getLoggedInUser());
+        User user = securityHelperService.getLoggedInUser();
+        messageRepository.updateSystemMessagesToOpenedForUser(user);
+        unreadMessageCounterService.recount(Collections.singleton(user.getId()));
+    }
+
+    public UnreadCountDTO getUnreadCountForLoggedInUser() {
+        log.debug("Request to get the number of unread messages for logged in user");
+        return unreadMessageCounterService.getUnreadCount(securityHelperService.getLoggedInUser().getId());
     }
 
     @Transactional(readOnly = true)
@@ -141,7 +159,27 @@ public class MessageService {
         notification.setOpened(false);
         notification.setType(msgType);
         notification = messageRepository.save(notification);
-        return messageMapper.toDto(notification);
+        MessageDTO result = messageMapper.toDto(notification);
+        if (userTo != null) {
+            unreadMessageCounterService.recount(Collections.singleton(userTo.getId()));
+            notificationPushService.pushAfterCommit(userTo, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the users whose unread notifications can change with the message: as the latest message of its thread
+     * it hides an unopened message to the sender
+     */
+    private static List<Long> getUserIds(Message message) {
+        List<Long> userIds = new ArrayList<>(2);
+        if (message.getUserFrom() != null) {
+            userIds.add(message.getUserFrom().getId());
+        }
+        if (message.getUserTo() != null) {
+            userIds.add(message.getUserTo().getId());
+        }
+        return userIds;
     }
 
     private void setThreadBetweenTwoUsers(Message message) {
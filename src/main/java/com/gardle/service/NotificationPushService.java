@@ -0,0 +1,63 @@
+package com.gardle.service;
+
+import com.gardle.domain.User;
+import com.gardle.service.dto.MessageDTO;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Pushes new messages and notifications to the STOMP user destination {@link #NOTIFICATION_DESTINATION} of the
+ * recipient, so the client does not have to poll for unread notifications. Clients query the unread notifications
+ * once per (re)connect to catch up on messages pushed while they were disconnected.
+ * <p>
+ * The recipient's login is taken from the user entity, the one of the message could be supplied by the client.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationPushService {
+
+    /**
+     * subscribed by the client as {@code /user/queue/notifications}
+     */
+    public static final String NOTIFICATION_DESTINATION = "/queue/notifications";
+
+    private final Logger log = LoggerFactory.getLogger(NotificationPushService.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    /**
+     * Pushes the message to its recipient once the surrounding transaction committed, or immediately without one.
+     *
+     * @param userTo recipient loaded by the server, its login is read within the surrounding transaction
+     */
+    public void pushAfterCommit(@NotNull User userTo, @NotNull MessageDTO message) {
+        String login = userTo.getLogin();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    push(login, message);
+                }
+            });
+        } else {
+            push(login, message);
+        }
+    }
+
+    private void push(String login, MessageDTO message) {
+        try {
+            messagingTemplate.convertAndSendToUser(login, NOTIFICATION_DESTINATION, message);
+        } catch (MessagingException e) {
+            // the client catches up on its next connect
+            log.warn("Could not push message {} to user {}: {}", message.getId(), login, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.gardle.service;
+
+import com.gardle.domain.IndexChangeLogEntry;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.repository.IndexChangeLogRepository;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.repository.search.ReservedLeasingLookup;
+import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
+import com.gardle.service.dto.leasing.LeasingIntervalDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of all RESERVED leasing intervals per gardenfield.
+ * <p>
+ * Every gardenfield maps to an immutable {@link ReservedIntervals} of sorted primitive arrays, so reads never touch
+ * the database and overlap checks are a binary search. The index is loaded on startup and kept current by the {@link com.gardle.domain.listener.LeasingChangeListener} for the
+ * writes of this node. With {@code lucene.indexing.change-log-replication} the {@link GardenFieldIndexReplication}
+ * additionally refreshes every gardenfield named in the change log from the database, which brings in the writes of
+ * the other nodes within a poll interval; the id of the last applied entry is the revision of the gardenfield. A
+ * periodic reconciliation repairs drift, e.g. of a rolled back transaction. Refresh and reconciliation never replace
+ * intervals written on this node after their snapshot was loaded. Until the first load finished {@link #isLoaded()}
+ * is false and callers have to fall back to the database.
+ */
+@Service
+public class ReservedLeasingIndex implements ReservedLeasingLookup {
+
+    private final Logger log = LoggerFactory.getLogger(ReservedLeasingIndex.class);
+
+    private final LeasingRepository leasingRepository;
+    private final IndexChangeLogRepository indexChangeLogRepository;
+
+    private final Map<Long, ReservedIntervals> intervalsByGardenField = new ConcurrentHashMap<>();
+
+    /**
+     * numbers every write of the index, so a snapshot of the database can tell which entries changed after it
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    private volatile boolean loaded = false;
+
+    public ReservedLeasingIndex(LeasingRepository leasingRepository, IndexChangeLogRepository indexChangeLogRepository) {
+        this.leasingRepository = leasingRepository;
+        this.indexChangeLogRepository = indexChangeLogRepository;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Runs after {@link GardenFieldIndexReplication#initWatermark()}, so changes committed during the load are
+     * refreshed again by the replication.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long started = modifications.get();
+        Map<Long, ReservedIntervals> loadedIntervals = loadFromDatabase(
+            leasingRepository.findAllIntervalsByStatus(LeasingStatus.RESERVED));
+        for (IndexChangeLogEntry lastChange : indexChangeLogRepository.findLastEntryPerGardenField()) {
+            loadedIntervals.compute(lastChange.getGardenFieldId(), (id, intervals) ->
+                (intervals == null ? ReservedIntervals.EMPTY : intervals).withRevision(lastChange.getId()));
+        }
+        replaceUnmodifiedSince(started, loadedIntervals, intervalsByGardenField.keySet());
+        loaded = true;
+        log.debug("Loaded reserved leasing index for {} gardenfields", loadedIntervals.size());
+    }
+
+    /**
+     * Replaces the intervals of the gardenfields with the ones in the database.
+     *
+     * @param revisions id of the last change log entry of every gardenfield to refresh
+     */
+    @Transactional(readOnly = true)
+    public void refresh(@NotNull Map<Long, Long> revisions) {
+        if (!loaded || revisions.isEmpty()) {
+            return;
+        }
+        long started = modifications.get();
+        Map<Long, ReservedIntervals> databaseIntervals = loadFromDatabase(
+            leasingRepository.findAllIntervalsByStatusAndGardenFieldIdIn(LeasingStatus.RESERVED, revisions.keySet()));
+        revisions.forEach((gardenFieldId, revision) -> databaseIntervals.compute(gardenFieldId, (id, intervals) ->
+            (intervals == null ? ReservedIntervals.EMPTY : intervals).withRevision(revision)));
+        replaceUnmodifiedSince(started, databaseIntervals, Collections.emptySet());
+    }
+
+    /**
+     * Compares the index with the leasing table and replaces every gardenfield entry that drifted,
+     * e.g. because of a rolled back transaction.
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        if (!loaded) {
+            return;
+        }
+        long started = modifications.get();
+        int drifted = replaceUnmodifiedSince(started,
+            loadFromDatabase(leasingRepository.findAllIntervalsByStatus(LeasingStatus.RESERVED)),
+            intervalsByGardenField.keySet());
+        if (drifted > 0) {
+            log.warn("Reserved leasing index was inconsistent for {} gardenfields, reconciled with database", drifted);
+        }
+    }
+
+    /**
+     * Applies the current status of the leasing to the index once the surrounding transaction committed.
+     */
+    public void update(@NotNull Leasing leasing) {
+        final Long leasingId = leasing.getId();
+        final Long gardenFieldId = leasing.getGardenField().getId();
+        final boolean reserved = LeasingStatus.RESERVED.equals(leasing.getStatus()) && leasing.getDeleted() == null;
+        final long from = leasing.getFrom().toEpochMilli();
+        final long to = leasing.getTo().toEpochMilli();
+        Runnable apply = () -> intervalsByGardenField.compute(gardenFieldId, (id, intervals) -> {
+            ReservedIntervals current = intervals == null ? ReservedIntervals.EMPTY : intervals;
+            ReservedIntervals updated = reserved ? current.with(leasingId, from, to) : current.without(leasingId);
+            return updated.withModification(modifications.incrementAndGet()).orNullIfEmpty();
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Same semantics as {@link LeasingRepository#findLeasedDateRangesByFromAndTo} for status RESERVED:
+     * all reserved ranges of the gardenfield which lie completely within the optional bounds.
+     */
+    @NotNull
+    public List<LeasingDateRangeDTO> findReservedDateRanges(@NotNull Long gardenFieldId, @Nullable Instant from,
+                                                            @Nullable Instant to) {
+        ReservedIntervals intervals = intervalsByGardenField.get(gardenFieldId);
+        if (intervals == null) {
+            return Collections.emptyList();
+        }
+        List<LeasingDateRangeDTO> dateRanges = new ArrayList<>();
+        for (int i = 0; i < intervals.size(); i++) {
+            if ((from == null || intervals.froms[i] >= from.toEpochMilli())
+                && (to == null || intervals.tos[i] <= to.toEpochMilli())) {
+                dateRanges.add(new LeasingDateRangeDTO(Instant.ofEpochMilli(intervals.froms[i]),
+                    Instant.ofEpochMilli(intervals.tos[i])));
+            }
+        }
+        return dateRanges;
+    }
+
+    /**
+     * Same semantics as {@link LeasingRepository#findAllOverlapping} restricted to status RESERVED: true if a reserved
+     * leasing of the gardenfield overlaps [from, to).
+     */
+    public boolean isReservedBetween(@NotNull Long gardenFieldId, @NotNull Instant from, @NotNull Instant to) {
+        return isReservedBetween(gardenFieldId.longValue(), from.toEpochMilli(), to.toEpochMilli());
+    }
+
+    @Override
+    public boolean isReservedBetween(long gardenFieldId, long from, long to) {
+        ReservedIntervals intervals = intervalsByGardenField.get(gardenFieldId);
+        return intervals != null && intervals.overlaps(from, to);
+    }
+
+    /**
+     * @return true if the index has reservations or a revision of the gardenfield, which therefore exists, gardenfields
+     * are only soft deleted
+     */
+    public boolean contains(@NotNull Long gardenFieldId) {
+        return intervalsByGardenField.containsKey(gardenFieldId);
+    }
+
+    /**
+     * @return id of the last change log entry of the gardenfield the index contains, 0 if none is known
+     */
+    public long getRevision(@NotNull Long gardenFieldId) {
+        ReservedIntervals intervals = intervalsByGardenField.get(gardenFieldId);
+        return intervals == null ? 0L : intervals.revision;
+    }
+
+    /**
+     * @return the current, immutable intervals of the gardenfield, null if it has neither a reservation nor a revision
+     */
+    @Nullable
+    ReservedIntervals getReservedIntervals(@NotNull Long gardenFieldId) {
+        return intervalsByGardenField.get(gardenFieldId);
+    }
+
+    /**
+     * Replaces every entry which differs from the database, unless it was written after {@code started}, and removes
+     * the reservations of the given gardenfields which are missing in the database. Revisions never decrease.
+     *
+     * @return the number of replaced entries
+     */
+    private int replaceUnmodifiedSince(long started, Map<Long, ReservedIntervals> databaseIntervals,
+                                       Collection<Long> indexedGardenFieldIds) {
+        Set<Long> gardenFieldIds = new HashSet<>(databaseIntervals.keySet());
+        gardenFieldIds.addAll(indexedGardenFieldIds);
+        int[] replaced = {0};
+        for (Long gardenFieldId : gardenFieldIds) {
+            ReservedIntervals database = databaseIntervals.getOrDefault(gardenFieldId, ReservedIntervals.EMPTY);
+            intervalsByGardenField.compute(gardenFieldId, (id, intervals) -> {
+                long revision = Math.max(database.revision, intervals == null ? 0 : intervals.revision);
+                if (intervals != null && (intervals.modification > started || intervals.hasSameIntervals(database))) {
+                    // equal to the snapshot or written after it, so the changes up to the revision are contained
+                    return intervals.revision == revision ? intervals : intervals.withRevision(revision);
+                }
+                if (intervals != null || !database.isEmpty()) {
+                    replaced[0]++;
+                }
+                return database.withRevision(revision).withModification(modifications.incrementAndGet()).orNullIfEmpty();
+            });
+        }
+        return replaced[0];
+    }
+
+    private static Map<Long, ReservedIntervals> loadFromDatabase(List<LeasingIntervalDTO> reservedLeasings) {
+        Map<Long, List<LeasingIntervalDTO>> leasingsByGardenField = new HashMap<>();
+        for (LeasingIntervalDTO interval : reservedLeasings) {
+            leasingsByGardenField.computeIfAbsent(interval.getGardenFieldId(), id -> new ArrayList<>()).add(interval);
+        }
+        Map<Long, ReservedIntervals> intervals = new HashMap<>();
+        leasingsByGardenField.forEach((gardenFieldId, leasings) -> {
+            ReservedIntervals reservedIntervals = ReservedIntervals.EMPTY;
+            for (LeasingIntervalDTO leasing : leasings) {
+                reservedIntervals = reservedIntervals.with(leasing.getLeasingId(),
+                    leasing.getFrom().toEpochMilli(), leasing.getTo().toEpochMilli());
+            }
+            intervals.put(gardenFieldId, reservedIntervals);
+        });
+        return intervals;
+    }
+
+    /**
+     * Immutable, sorted (by from) set of intervals of one gardenfield. {@code maxTos[i]} is the largest end of the
+     * intervals 0..i, which makes the overlap check a single binary search even if intervals overlap.
+     */
+    static final class ReservedIntervals {
+
+        static final ReservedIntervals EMPTY = new ReservedIntervals(new long[0], new long[0], new long[0], 0L, 0L);
+
+        private final long[] leasingIds;
+        private final long[] froms;
+        private final long[] tos;
+        private final long[] maxTos;
+
+        /**
+         * id of the last change log entry of the gardenfield the intervals contain, 0 if none is known
+         */
+        private final long revision;
+
+        /**
+         * number of the write of the index which stored the intervals
+         */
+        private final long modification;
+
+        private ReservedIntervals(long[] leasingIds, long[] froms, long[] tos, long revision, long modification) {
+            this.leasingIds = leasingIds;
+            this.froms = froms;
+            this.tos = tos;
+            this.revision = revision;
+            this.modification = modification;
+            this.maxTos = new long[tos.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < tos.length; i++) {
+                max = Math.max(max, tos[i]);
+                maxTos[i] = max;
+            }
+        }
+
+        int size() {
+            return froms.length;
+        }
+
+        long getFrom(int index) {
+            return froms[index];
+        }
+
+        long getTo(int index) {
+            return tos[index];
+        }
+
+        long getRevision() {
+            return revision;
+        }
+
+        boolean isEmpty() {
+            return froms.length == 0;
+        }
+
+        /**
+         * @return true if any interval [f, t) satisfies f < to and from < t
+         */
+        boolean overlaps(long from, long to) {
+            int lastStartingBeforeEnd = lowerBound(to) - 1;
+            return lastStartingBeforeEnd >= 0 && maxTos[lastStartingBeforeEnd] > from;
+        }
+
+        ReservedIntervals with(long leasingId, long from, long to) {
+            ReservedIntervals base = without(leasingId);
+            int size = base.size();
+            int insertAt = base.upperBound(from);
+            long[] newIds = new long[size + 1];
+            long[] newFroms = new long[size + 1];
+            long[] newTos = new long[size + 1];
+            System.arraycopy(base.leasingIds, 0, newIds, 0, insertAt);
+            System.arraycopy(base.froms, 0, newFroms, 0, insertAt);
+            System.arraycopy(base.tos, 0, newTos, 0, insertAt);
+            newIds[insertAt] = leasingId;
+            newFroms[insertAt] = from;
+            newTos[insertAt] = to;
+            System.arraycopy(base.leasingIds, insertAt, newIds, insertAt + 1, size - insertAt);
+            System.arraycopy(base.froms, insertAt, newFroms, insertAt + 1, size - insertAt);
+            System.arraycopy(base.tos, insertAt, newTos, insertAt + 1, size - insertAt);
+            return new ReservedIntervals(newIds, newFroms, newTos, revision, modification);
+        }
+
+        ReservedIntervals without(long leasingId) {
+            int index = -1;
+            for (int i = 0; i < leasingIds.length; i++) {
+                if (leasingIds[i] == leasingId) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return this;
+            }
+            return new ReservedIntervals(remove(leasingIds, index), remove(froms, index), remove(tos, index),
+                revision, modification);
+        }
+
+        ReservedIntervals withRevision(long revision) {
+            return new ReservedIntervals(leasingIds, froms, tos, revision, modification);
+        }
+
+        ReservedIntervals withModification(long modification) {
+            return new ReservedIntervals(leasingIds, froms, tos, revision, modification);
+        }
+
+        /**
+         * @return null if there is neither an interval nor a revision to keep
+         */
+        @Nullable
+        ReservedIntervals orNullIfEmpty() {
+            return isEmpty() && revision == 0 ? null : this;
+        }
+
+        boolean hasSameIntervals(@NotNull ReservedIntervals other) {
+            return Arrays.equals(leasingIds, other.leasingIds) && Arrays.equals(froms, other.froms)
+                && Arrays.equals(tos, other.tos);
+        }
+
+        /**
+         * @return index of the first interval starting after the given instant
+         */
+        private int upperBound(long instant) {
+            int low = 0;
+            int high = froms.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (froms[mid] <= instant) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return index of the first interval starting at or after the given instant
+         */
+        private int lowerBound(long instant) {
+            int low = 0;
+            int high = froms.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (froms[mid] < instant) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static long[] remove(long[] values, int index) {
+            long[] result = new long[values.length - 1];
+            System.arraycopy(values, 0, result, 0, index);
+            System.arraycopy(values, index + 1, result, index, values.length - index - 1);
+            return result;
+        }
+    }
+}
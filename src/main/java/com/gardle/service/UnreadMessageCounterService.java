@@ -0,0 +1,185 @@
+package com.gardle.service;
+
+import com.gardle.config.WebsocketConfiguration;
+import com.gardle.domain.UnreadMessageCounter;
+import com.gardle.domain.User;
+import com.gardle.repository.MessageRepository;
+import com.gardle.repository.UnreadMessageCounterRepository;
+import com.gardle.service.dto.UnreadCountDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Per user counters of the unread notifications, so the unread badge does not have to query them. The counter uses the
+ * rule of the notification list: the latest message of every thread if it is unopened and addressed to the user, and
+ * every unopened system message.
+ * <p>
+ * The counter of a user is recounted in the transaction of every write of its messages, or created from the messages on
+ * the first read. Both are serialized by a lock on the user, so the last of concurrent transactions counts the messages
+ * of all of them. The creation on a read happens outside of the cache loader. Reads are cached for
+ * {@link #CACHE_TIME_TO_LIVE}: entries are evicted after a commit, on the other nodes by an eviction sent to
+ * {@link #EVICTION_DESTINATION}, which the websocket fan-out relays. An eviction lost by the fan-out is covered by the expiry. Hits, misses and evictions are exported as
+ * {@code cache.*} metrics with the tag {@code cache=unreadMessageCounter}.
+ */
+@Service
+@Transactional
+public class UnreadMessageCounterService {
+
+    static final String CACHE_NAME = "unreadMessageCounter";
+    static final Duration CACHE_TIME_TO_LIVE = Duration.ofSeconds(5);
+
+    /**
+     * carries the id of the user whose counter changed
+     */
+    static final String EVICTION_DESTINATION = WebsocketConfiguration.INTERNAL_DESTINATION_PREFIX + "unread-message-counter";
+
+    private final Logger log = LoggerFactory.getLogger(UnreadMessageCounterService.class);
+
+    private final UnreadMessageCounterRepository unreadMessageCounterRepository;
+    private final MessageRepository messageRepository;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final SubscribableChannel brokerChannel;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Cache<Long, UnreadCountDTO> cache;
+
+    public UnreadMessageCounterService(UnreadMessageCounterRepository unreadMessageCounterRepository,
+                                       MessageRepository messageRepository, SimpMessageSendingOperations messagingTemplate,
+                                       @Qualifier("brokerChannel") SubscribableChannel brokerChannel,
+                                       JHipsterProperties jHipsterProperties, MeterRegistry meterRegistry) {
+        this.unreadMessageCounterRepository = unreadMessageCounterRepository;
+        this.messageRepository = messageRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.brokerChannel = brokerChannel;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(jHipsterProperties.getCache().getCaffeine().getMaxEntries())
+            .expireAfterWrite(CACHE_TIME_TO_LIVE)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @PostConstruct
+    public void subscribeEvictions() {
+        brokerChannel.subscribe(this::receiveEviction);
+    }
+
+    @NotNull
+    public UnreadCountDTO getUnreadCount(@NotNull Long userId) {
+        UnreadCountDTO cached = cache.get(userId, id -> unreadMessageCounterRepository.findById(id).map(this::toDto)
+            .orElse(null));
+        if (cached != null) {
+            return cached;
+        }
+        // created outside of the loader, which would block other reads of the cache while waiting for the lock, the
+        // next read caches it
+        lockUser(userId);
+        return toDto(unreadMessageCounterRepository.findById(userId).orElseGet(() -> create(userId)));
+    }
+
+    /**
+     * Recounts the counters of the users whose messages were written, opened or deleted in the surrounding transaction.
+     * The users are locked in the order of their ids, which avoids deadlocks between two users messaging each other.
+     */
+    public void recount(@NotNull Collection<Long> userIds) {
+        // the count is a native query, which only sees flushed changes
+        messageRepository.flush();
+        for (Long userId : new TreeSet<>(userIds)) {
+            lockUser(userId);
+            if (unreadMessageCounterRepository.setUnread(userId, countUnread(userId)) == 0) {
+                create(userId);
+            }
+            evictAfterCommit(userId);
+        }
+    }
+
+    /**
+     * Serializes the counting of the messages of the user.
+     */
+    private void lockUser(Long userId) {
+        entityManager.find(User.class, userId, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    private UnreadMessageCounter create(Long userId) {
+        UnreadMessageCounter counter = unreadMessageCounterRepository.saveAndFlush(new UnreadMessageCounter(userId,
+            countUnread(userId), 0L));
+        // later changes are bulk updates, which would not be visible on the managed entity
+        entityManager.detach(counter);
+        return counter;
+    }
+
+    private int countUnread(Long userId) {
+        return (int) messageRepository.countUnreadNotificationsForUser(userId);
+    }
+
+    private UnreadCountDTO toDto(UnreadMessageCounter counter) {
+        return new UnreadCountDTO(counter.getUnread(), counter.getRevision());
+    }
+
+    private void evictAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        } else {
+            evict(userId);
+        }
+    }
+
+    private void evict(Long userId) {
+        cache.invalidate(userId);
+        try {
+            messagingTemplate.convertAndSend(EVICTION_DESTINATION, userId);
+        } catch (MessagingException e) {
+            // the entries of the other nodes expire
+            log.warn("Could not evict the unread message counter of user {} on the other nodes: {}", userId,
+                e.getMessage());
+        }
+    }
+
+    /**
+     * Evicts the counter of the user of an eviction sent by this or another node.
+     */
+    private void receiveEviction(Message<?> message) {
+        if (!EVICTION_DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+            || !(message.getPayload() instanceof byte[])) {
+            return;
+        }
+        String userId = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+        try {
+            cache.invalidate(Long.valueOf(userId.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid unread message counter eviction: {}", userId);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.gardle.service.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Number of gardenfields within a value range")
+public class FacetBucketDTO implements Serializable {
+
+    @ApiModelProperty(value = "Lower bound of the range (inclusive)", dataType = "Double")
+    private Double from;
+
+    @ApiModelProperty(value = "Upper bound of the range (exclusive, inclusive for the last bucket)", dataType = "Double")
+    private Double to;
+
+    @ApiModelProperty(value = "Number of matching gardenfields within the range", dataType = "Integer")
+    private Integer count;
+}
@@ -0,0 +1,28 @@
+package com.gardle.service.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Cluster of gardenfields on the map")
+public class GardenFieldClusterDTO implements Serializable {
+
+    @ApiModelProperty(value = "Latitude of the centroid of all gardenfields in the cluster", dataType = "Double")
+    private Double latitude;
+
+    @ApiModelProperty(value = "Longitude of the centroid of all gardenfields in the cluster", dataType = "Double")
+    private Double longitude;
+
+    @ApiModelProperty(value = "Number of gardenfields in the cluster", dataType = "Integer")
+    private Integer count;
+
+    @ApiModelProperty(value = "Id of the gardenfield if the cluster contains exactly one", dataType = "Long")
+    private Long gardenFieldId;
+}
@@ -0,0 +1,26 @@
+package com.gardle.service.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "A page of found gardenfields with a cursor to the next page")
+public class GardenFieldCursorPageDTO implements Serializable {
+
+    @ApiModelProperty(value = "The gardenfields of this page")
+    private List<GardenFieldDTO> content;
+
+    @ApiModelProperty(value = "Opaque cursor of the next page, null if this is the last page", dataType = "String")
+    private String nextCursor;
+
+    @ApiModelProperty(value = "Number of all matching gardenfields", dataType = "Integer")
+    private Integer totalElements;
+}
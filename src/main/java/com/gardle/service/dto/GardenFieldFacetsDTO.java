@@ -0,0 +1,30 @@
+package com.gardle.service.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@ApiModel(description = "Facet counts of the gardenfields matching a filter")
+public class GardenFieldFacetsDTO implements Serializable {
+
+    @ApiModelProperty(value = "Number of all matching gardenfields", dataType = "Integer")
+    private Integer totalElements;
+
+    @ApiModelProperty(value = "Per amenity (water, electricity, ...) the number of matching gardenfields per value (true, false)")
+    private Map<String, Map<String, Integer>> amenities = new LinkedHashMap<>();
+
+    @ApiModelProperty(value = "Number of matching gardenfields per price per month range")
+    private List<FacetBucketDTO> priceBuckets = new ArrayList<>();
+
+    @ApiModelProperty(value = "Number of matching gardenfields per size range")
+    private List<FacetBucketDTO> sizeBuckets = new ArrayList<>();
+}
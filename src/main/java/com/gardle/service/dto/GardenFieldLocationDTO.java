@@ -0,0 +1,14 @@
+package com.gardle.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GardenFieldLocationDTO {
+    private Long id;
+    private Double latitude;
+    private Double longitude;
+}
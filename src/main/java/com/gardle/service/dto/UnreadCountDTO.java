@@ -0,0 +1,27 @@
+package com.gardle.service.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Number of unread messages of the logged in user.")
+public class UnreadCountDTO implements Serializable {
+
+    @NotNull
+    @ApiModelProperty(value = "number of unread notifications: the latest message of every thread if it is unopened "
+        + "and addressed to the user, and every unopened system message")
+    private Integer unread;
+
+    @NotNull
+    @ApiModelProperty(value = "incremented on every change of the unread messages, the unread notifications only have "
+        + "to be fetched again if it changed")
+    private Long revision;
+}
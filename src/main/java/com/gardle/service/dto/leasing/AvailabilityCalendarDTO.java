@@ -0,0 +1,35 @@
+package com.gardle.service.dto.leasing;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Reserved days of a gardenfield as bitmap.")
+public class AvailabilityCalendarDTO implements Serializable {
+
+    @NotNull
+    @ApiModelProperty(value = "first day (UTC) of the calendar, bit 0 of the bitmap", dataType = "LocalDate")
+    private LocalDate firstDay;
+
+    @NotNull
+    @ApiModelProperty(value = "number of days covered by the calendar")
+    private Integer days;
+
+    @NotNull
+    @ApiModelProperty(value = "base64 encoded bitmap of the reserved days, bit i (byte i / 8, bit i % 8) is set if "
+        + "firstDay + i days is reserved, trailing free days may be omitted")
+    private String reservedDays;
+
+    @NotNull
+    @ApiModelProperty(value = "id of the last change of the gardenfield the calendar contains, 0 if unknown")
+    private Long revision;
+}
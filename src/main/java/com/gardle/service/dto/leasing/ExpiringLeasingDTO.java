@@ -0,0 +1,22 @@
+package com.gardle.service.dto.leasing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Minimal projection of an expired, still open {@link com.gardle.domain.Leasing} used by the expiry job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpiringLeasingDTO implements Serializable {
+
+    private Long leasingId;
+
+    private Long gardenFieldId;
+
+    private String paymentSessionId;
+}
@@ -0,0 +1,25 @@
+package com.gardle.service.dto.leasing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Minimal projection of a {@link com.gardle.domain.Leasing} used to build the in-memory availability index.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeasingIntervalDTO implements Serializable {
+
+    private Long leasingId;
+
+    private Long gardenFieldId;
+
+    private Instant from;
+
+    private Instant to;
+}
@@ -0,0 +1,8 @@
+package com.gardle.service.exception;
+
+public class GardenFieldBookingBusyServiceException extends RuntimeException {
+
+    public GardenFieldBookingBusyServiceException() {
+        super("The gardenfield is being booked by another request, please try again");
+    }
+}
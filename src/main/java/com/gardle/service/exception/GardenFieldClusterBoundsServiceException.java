@@ -0,0 +1,12 @@
+package com.gardle.service.exception;
+
+public class GardenFieldClusterBoundsServiceException extends RuntimeException {
+
+    public GardenFieldClusterBoundsServiceException() {
+        super("Invalid bounding box or zoom level");
+    }
+
+    public GardenFieldClusterBoundsServiceException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,5 @@
 package com.gardle.validator;
 
-import com.gardle.domain.Leasing;
 import com.gardle.service.LeasingService;
 import com.gardle.service.dto.leasing.CreatorLeasingDTO;
 import org.apache.commons.lang3.StringUtils;
@@ -62,14 +61,14 @@ public class LeasingDataValidator implements ConstraintValidator<ValidLeasingDat
             violations.add("{gardenfieldId is null}");
             return;
         }
-        List<Leasing> overlappings = leasingService.getOverLappingLeasingsForGardenfieldAndUserInInterval(
+        boolean overlapping = leasingService.isOverlappingForGardenfieldAndUserInInterval(
             creatorLeasingDTO.getGardenFieldId(),
             creatorLeasingDTO.getFrom(),
             creatorLeasingDTO.getTo()
         );
 
-        if (!overlappings.isEmpty()) {
-            LOG.debug("overlappings detected: {}", overlappings);
+        if (overlapping) {
+            LOG.debug("overlappings detected for gardenfield {}", creatorLeasingDTO.getGardenFieldId());
             violations.add("{leasing overlaps with other leasings}");
         }
     }
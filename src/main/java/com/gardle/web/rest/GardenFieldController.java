@@ -5,10 +5,14 @@ import com.gardle.domain.criteria.LocationFilterCriteria;
 import com.gardle.domain.enumeration.LeasingState;
 import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.security.AuthoritiesConstants;
+import com.gardle.service.GardenFieldClusterService;
 import com.gardle.service.GardenFieldService;
 import com.gardle.service.LeasingService;
 import com.gardle.service.dto.FilterBoundariesDTO;
+import com.gardle.service.dto.GardenFieldCursorPageDTO;
+import com.gardle.service.dto.GardenFieldClusterDTO;
 import com.gardle.service.dto.GardenFieldDTO;
+import com.gardle.service.dto.GardenFieldFacetsDTO;
 import com.gardle.service.dto.leasing.LeasingDTO;
 import com.gardle.web.rest.errors.BadRequestException;
 import com.gardle.web.rest.errors.GardleErrorKey;
@@ -27,6 +31,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
@@ -42,11 +47,14 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class GardenFieldController {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final Logger log = LoggerFactory.getLogger(GardenFieldController.class);
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
     private final GardenFieldService gardenFieldService;
     private final LeasingService leasingService;
+    private final GardenFieldClusterService gardenFieldClusterService;
 
     @ApiOperation(value = "Create a gardenfield")
     @ApiResponses(value = {
@@ -154,6 +162,89 @@ public class GardenFieldController {
         return new ResponseEntity<>(resultPage, headers, HttpStatus.OK);
     }
 
+    @ApiOperation(value = "View the page of found fields after a cursor, for infinite scrolling. " +
+        "Pass an empty cursor for the first page and the nextCursor of the response for the following pages.")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved gardenfields"),
+        @ApiResponse(code = 400, message = "BadRequest, e.g. invalid cursor")
+    })
+    @GetMapping(value = "/gardenfields/filter", params = "cursor")
+    public ResponseEntity<GardenFieldCursorPageDTO> filterGardenFieldsAfter(@RequestParam(value = "cursor") String cursor,
+                                                                            Pageable pageable,
+                                                                            @RequestParam(required = false, value = "latitude") Double latitude,
+                                                                            @RequestParam(required = false, value = "longitude") Double longitude,
+                                                                            @RequestParam(required = false, value = "radiusInKM") Integer radiusInKM,
+                                                                            @RequestParam(required = false, value = "minPrice") Double minPricePerMonth,
+                                                                            @RequestParam(required = false, value = "maxPrice") Double maxPricePerMonth,
+                                                                            @RequestParam(required = false, value = "sizeInM2LowerBound") Double sizeInM2LowerBound,
+                                                                            @RequestParam(required = false, value = "sizeInM2UpperBound") Double sizeInM2UpperBound,
+                                                                            @RequestParam(required = false, value = "roofed") Boolean roofed,
+                                                                            @RequestParam(required = false, value = "leasingTimeFrom") Instant leasingTimeFrom,
+                                                                            @RequestParam(required = false, value = "leasingTimeTo") Instant leasingTimeTo,
+                                                                            @RequestParam(required = false, value = "keywords") String keywords,
+                                                                            @RequestParam(required = false, value = "water") Boolean water,
+                                                                            @RequestParam(required = false, value = "electricity") Boolean electricity,
+                                                                            @RequestParam(required = false, value = "high") Boolean high,
+                                                                            @RequestParam(required = false, value = "glassHouse") Boolean glassHouse) {
+        //only size and sort of the pageable are used, the cursor replaces the page number
+        int size = pageable.getPageSize();
+        if (size > MAX_CURSOR_PAGE_SIZE) {
+            throw new BadRequestException(GardleErrorKey.GARDENFIELD_FILTER_CRITERIA_VALIDATION,
+                "size must be at most " + MAX_CURSOR_PAGE_SIZE);
+        }
+        GardenFieldFilterCriteria gardenFieldFilterCriteria = new GardenFieldFilterCriteria(
+            new LocationFilterCriteria(latitude, longitude, radiusInKM), minPricePerMonth, maxPricePerMonth,
+            sizeInM2LowerBound, sizeInM2UpperBound, roofed, leasingTimeFrom, leasingTimeTo, keywords, water, electricity, high, glassHouse);
+
+        GardenFieldCursorPageDTO page = this.gardenFieldService.filterGardenFieldsAfter(cursor, size, pageable.getSort(),
+            gardenFieldFilterCriteria);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Facet counts of the gardenfields matching a filter, per amenity and per price and size range")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved facet counts"),
+        @ApiResponse(code = 400, message = "BadRequest")
+    })
+    @GetMapping("/gardenfields/filter/facets")
+    public ResponseEntity<GardenFieldFacetsDTO> getFacets(@RequestParam(required = false, value = "latitude") Double latitude,
+                                                          @RequestParam(required = false, value = "longitude") Double longitude,
+                                                          @RequestParam(required = false, value = "radiusInKM") Integer radiusInKM,
+                                                          @RequestParam(required = false, value = "minPrice") Double minPricePerMonth,
+                                                          @RequestParam(required = false, value = "maxPrice") Double maxPricePerMonth,
+                                                          @RequestParam(required = false, value = "sizeInM2LowerBound") Double sizeInM2LowerBound,
+                                                          @RequestParam(required = false, value = "sizeInM2UpperBound") Double sizeInM2UpperBound,
+                                                          @RequestParam(required = false, value = "roofed") Boolean roofed,
+                                                          @RequestParam(required = false, value = "leasingTimeFrom") Instant leasingTimeFrom,
+                                                          @RequestParam(required = false, value = "leasingTimeTo") Instant leasingTimeTo,
+                                                          @RequestParam(required = false, value = "keywords") String keywords,
+                                                          @RequestParam(required = false, value = "water") Boolean water,
+                                                          @RequestParam(required = false, value = "electricity") Boolean electricity,
+                                                          @RequestParam(required = false, value = "high") Boolean high,
+                                                          @RequestParam(required = false, value = "glassHouse") Boolean glassHouse) {
+
+        GardenFieldFilterCriteria gardenFieldFilterCriteria = new GardenFieldFilterCriteria(
+            new LocationFilterCriteria(latitude, longitude, radiusInKM), minPricePerMonth, maxPricePerMonth,
+            sizeInM2LowerBound, sizeInM2UpperBound, roofed, leasingTimeFrom, leasingTimeTo, keywords, water, electricity, high, glassHouse);
+
+        return new ResponseEntity<>(this.gardenFieldService.getFacets(gardenFieldFilterCriteria), HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Clusters of gardenfields within a bounding box for a map zoom level")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved clusters"),
+        @ApiResponse(code = 400, message = "Invalid bounding box or zoom level, or the bounding box covers too many tiles")
+    })
+    @GetMapping("/gardenfields/clusters")
+    public ResponseEntity<List<GardenFieldClusterDTO>> getClusters(@RequestParam(value = "south") Double south,
+                                                                   @RequestParam(value = "west") Double west,
+                                                                   @RequestParam(value = "north") Double north,
+                                                                   @RequestParam(value = "east") Double east,
+                                                                   @RequestParam(value = "zoom") Integer zoom) {
+        List<GardenFieldClusterDTO> clusters = gardenFieldClusterService.getClusters(south, west, north, east, zoom);
+        return new ResponseEntity<>(clusters, HttpStatus.OK);
+    }
+
     @ApiOperation(value = "Autocomplete search results for gardenfields")
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "Successfully retrieved autocompletion results")
@@ -182,10 +273,24 @@ public class GardenFieldController {
 
     @ApiOperation(value = "Boundaries for gardenfield filters")
     @ApiResponses(value = {
-        @ApiResponse(code = 200, message = "Successfully retrieved boundaries for gardenfield filters")
+        @ApiResponse(code = 200, message = "Successfully retrieved boundaries for gardenfield filters"),
+        @ApiResponse(code = 304, message = "Boundaries did not change since the given ETag")
     })
     @GetMapping("/gardenfields/filterBoundaries")
-    public ResponseEntity<FilterBoundariesDTO> getFilterBoundaries() {
-        return new ResponseEntity<>(this.gardenFieldService.getFilterBoundaries(), HttpStatus.OK);
+    public ResponseEntity<FilterBoundariesDTO> getFilterBoundaries(WebRequest webRequest) {
+        FilterBoundariesDTO filterBoundariesDTO = this.gardenFieldService.getFilterBoundaries();
+        String eTag = createETag(filterBoundariesDTO);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).body(filterBoundariesDTO);
+    }
+
+    /**
+     * The boundaries themselves, so equal boundaries have the same ETag on every node and different ones never do.
+     */
+    private static String createETag(FilterBoundariesDTO filterBoundariesDTO) {
+        return "\"" + filterBoundariesDTO.getMinPrice() + "_" + filterBoundariesDTO.getMaxPrice() + "_"
+            + filterBoundariesDTO.getMinSize() + "_" + filterBoundariesDTO.getMaxSize() + "\"";
     }
 }
@@ -4,6 +4,7 @@ import com.gardle.security.AuthoritiesConstants;
 import com.gardle.service.LeasingQueryService;
 import com.gardle.service.LeasingService;
 import com.gardle.service.dto.LeasingCriteria;
+import com.gardle.service.dto.leasing.AvailabilityCalendarDTO;
 import com.gardle.service.dto.leasing.LeasingDTO;
 import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
 import com.gardle.service.dto.leasing.UpdatingLeasingDTO;
@@ -18,15 +19,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -146,4 +152,32 @@ public class LeasingController {
         return ResponseEntity.ok().body(leasingDateRanges);
     }
 
+    @ApiOperation(value = "Get the reserved days of a specific gardenField for the next 24 months as bitmap")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved availability calendar"),
+        @ApiResponse(code = 304, message = "Calendar did not change since the given ETag"),
+        @ApiResponse(code = 404, message = "Gardenfield does not exist")
+    })
+    @GetMapping("/leasings/{gardenFieldId}/availabilityCalendar")
+    public ResponseEntity<AvailabilityCalendarDTO> getAvailabilityCalendar(@ApiParam(value = "Gardenfield Id for which the calendar should be returned", required = true)
+                                                                           @PathVariable Long gardenFieldId,
+                                                                           WebRequest webRequest) {
+        log.debug("REST request to get availability calendar : {}", gardenFieldId);
+        AvailabilityCalendarDTO availabilityCalendarDTO = leasingService.getAvailabilityCalendar(gardenFieldId);
+        String eTag = createETag(availabilityCalendarDTO);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(availabilityCalendarDTO);
+    }
+
+    /**
+     * Revision of the gardenfield and digest of the calendar, both the same on every node serving the calendar.
+     */
+    private static String createETag(AvailabilityCalendarDTO availabilityCalendarDTO) {
+        String content = availabilityCalendarDTO.getFirstDay() + "/" + availabilityCalendarDTO.getDays() + "/"
+            + availabilityCalendarDTO.getReservedDays();
+        return "\"" + availabilityCalendarDTO.getRevision() + "-"
+            + DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
 }
@@ -3,6 +3,7 @@ package com.gardle.web.rest;
 import com.gardle.security.AuthoritiesConstants;
 import com.gardle.service.MessageService;
 import com.gardle.service.dto.MessageDTO;
+import com.gardle.service.dto.UnreadCountDTO;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -12,11 +13,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
@@ -123,4 +126,21 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    @ApiOperation(value = "Get the number of unread messages of the logged-in user, the unread notifications only have to be fetched if its revision changed")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Successfully retrieved the number of unread messages"),
+        @ApiResponse(code = 304, message = "Unread messages did not change since the given ETag"),
+        @ApiResponse(code = 401, message = "Unauthenticated")
+    })
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.USER + "\")")
+    @GetMapping("/messages/unread/count")
+    public ResponseEntity<UnreadCountDTO> getUnreadCountForLoggedInUser(WebRequest webRequest) {
+        UnreadCountDTO unreadCountDTO = messageService.getUnreadCountForLoggedInUser();
+        String eTag = "\"" + unreadCountDTO.getRevision() + "-" + unreadCountDTO.getUnread() + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache()).body(unreadCountDTO);
+    }
+
 }
@@ -79,6 +79,11 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         return create(new BadRequestException(GardleErrorKey.GARDENFIELD_FILTER_CRITERIA_VALIDATION, ex.getMessage()), request);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleGardenFieldClusterBoundsException(GardenFieldClusterBoundsServiceException ex, NativeWebRequest request) {
+        return create(new BadRequestException(GardleErrorKey.GARDENFIELD_CLUSTER_BOUNDS_INVALID, ex.getMessage()), request);
+    }
+
     @ExceptionHandler
     public ResponseEntity<Problem> handleInvalidPasswordException(InvalidPasswordServiceException ex, NativeWebRequest request) {
         return create(new BadRequestException(GardleErrorKey.PASSWORD_INVALID, ex.getMessage()), request);
@@ -192,6 +197,11 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         return create(new ConflictException(GardleErrorKey.LEASINGS_OVERLAP, ex.getMessage()), request);
     }
 
+    @ExceptionHandler(GardenFieldBookingBusyServiceException.class)
+    public ResponseEntity<Problem> handleGardenFieldBookingBusyException(GardenFieldBookingBusyServiceException ex, NativeWebRequest request) {
+        return create(new ConflictException(GardleErrorKey.GARDENFIELD_BOOKING_BUSY, ex.getMessage()), request);
+    }
+
     @ExceptionHandler(InvalidLeasingStateServiceException.class)
     public ResponseEntity<Problem> handleInvalidLeasingStateException(InvalidLeasingStateServiceException ex, NativeWebRequest request) {
         return create(new ConflictException(GardleErrorKey.LEASING_STATUS_TRANSITION_NOT_ALLOWED, ex.getMessage()), request);
@@ -19,6 +19,7 @@ public enum GardleErrorKey {
 
     //Gardenfield
     GARDENFIELD_FILTER_CRITERIA_VALIDATION,
+    GARDENFIELD_CLUSTER_BOUNDS_INVALID,
     GARDENFIELD_NOT_FOUND,
     GARDENFIELD_WITHOUT_OWNER,
     GARDENFIELD_ID_ALREADY_EXISTS,
@@ -34,6 +35,7 @@ public enum GardleErrorKey {
 
     //Leasing
     LEASINGS_OVERLAP,
+    GARDENFIELD_BOOKING_BUSY,
     LEASING_ID_ALREADY_EXISTS,
     LEASING_INVALID_ID,
     LEASING_NOT_FOUND,
@@ -0,0 +1,349 @@
+package com.gardle.web.websocket;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gardle.config.WebsocketConfiguration;
+import com.gardle.config.WebsocketFanOutProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.MimeType;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relays the messages published to the in-memory broker of one node to the brokers of the other nodes through
+ * PostgreSQL {@code LISTEN/NOTIFY}, so subscribers receive them regardless of the node their socket is connected to.
+ * <p>
+ * Intercepts the broker channel: messages to {@code /topic/**}, unresolved user destinations ({@code /user/**}) and
+ * {@link WebsocketConfiguration#INTERNAL_DESTINATION_PREFIX internal destinations} are queued and published by one
+ * thread in batches of up to {@code websocket.fan-out.batch-size}, collected for
+ * {@code websocket.fan-out.flush-interval-millis}. A batch is split into notifications below the 8000 byte payload
+ * limit of postgres, larger messages are only delivered locally. Every node listens on its own connection and sends
+ * the messages of the other nodes to its broker channel, marked with {@link #FAN_OUT_ID_HEADER} so they are not relayed
+ * again. A batch whose commit failed is published once more, the receivers drop messages whose id they already saw.
+ * <p>
+ * Messages are not persisted, a node which is not listening at the time of the notification misses them. Only active
+ * with {@code websocket.fan-out.enabled} and a postgres database. Exported metrics: {@code websocket.fan-out.*}.
+ */
+@Component
+public class BrokerFanOut implements ChannelInterceptor {
+
+    static final String FAN_OUT_ID_HEADER = "fanOutId";
+
+    /**
+     * below the 8000 bytes postgres accepts, leaving room for the json array
+     */
+    static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private static final int LISTEN_TIMEOUT_MILLIS = 500;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+
+    private final Logger log = LoggerFactory.getLogger(BrokerFanOut.class);
+
+    private final MessageChannel brokerChannel;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final WebsocketFanOutProperties websocketFanOutProperties;
+    private final ObjectMapper objectMapper;
+
+    private final String node = UUID.randomUUID().toString();
+    private final BlockingQueue<Envelope> outgoing;
+
+    /**
+     * ids of the last received messages
+     */
+    private final Set<UUID> received;
+
+    private final Thread publisher = new Thread(this::publish, "websocket-fan-out-publisher");
+    private final Thread listener = new Thread(this::listen, "websocket-fan-out-listener");
+
+    private volatile boolean running;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BrokerFanOut(@Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel, JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager, DataSourceProperties dataSourceProperties,
+                        WebsocketFanOutProperties websocketFanOutProperties, ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry) {
+        this.brokerChannel = brokerChannel;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataSourceProperties = dataSourceProperties;
+        this.websocketFanOutProperties = websocketFanOutProperties;
+        this.objectMapper = objectMapper;
+        this.outgoing = new ArrayBlockingQueue<>(websocketFanOutProperties.getQueueCapacity());
+        int deduplicationCapacity = websocketFanOutProperties.getDeduplicationCapacity();
+        this.received = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<UUID, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > deduplicationCapacity;
+            }
+        }));
+        FunctionCounter.builder("websocket.fan-out.published", published, AtomicLong::get)
+            .description("Broker messages published to the other nodes")
+            .register(meterRegistry);
+        FunctionCounter.builder("websocket.fan-out.delivered", delivered, AtomicLong::get)
+            .description("Broker messages of other nodes delivered to the local broker")
+            .register(meterRegistry);
+        FunctionCounter.builder("websocket.fan-out.duplicates", duplicates, AtomicLong::get)
+            .description("Broker messages of other nodes received more than once")
+            .register(meterRegistry);
+        FunctionCounter.builder("websocket.fan-out.dropped", dropped, AtomicLong::get)
+            .description("Broker messages only delivered locally, because they were too large or could not be published")
+            .register(meterRegistry);
+        Gauge.builder("websocket.fan-out.pending", outgoing, Collection::size)
+            .description("Broker messages waiting to be published")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!websocketFanOutProperties.isEnabled()) {
+            return;
+        }
+        if (!websocketFanOutProperties.getChannel().matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("Invalid websocket fan-out channel " + websocketFanOutProperties.getChannel());
+        }
+        String url = dataSourceProperties.determineUrl();
+        if (url == null || !url.startsWith("jdbc:postgresql:")) {
+            log.warn("Websocket fan-out requires postgres, messages are only delivered to the sockets of this node");
+            return;
+        }
+        running = true;
+        publisher.setDaemon(true);
+        publisher.start();
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisher.interrupt();
+        publisher.join(TimeUnit.SECONDS.toMillis(10));
+        listener.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!running || message.getHeaders().containsKey(FAN_OUT_ID_HEADER) || !(message.getPayload() instanceof byte[])
+            || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !(destination.startsWith("/topic/") || destination.startsWith("/user/")
+            || destination.startsWith(WebsocketConfiguration.INTERNAL_DESTINATION_PREFIX))) {
+            return message;
+        }
+        MimeType contentType = SimpMessageHeaderAccessor.getContentType(message.getHeaders());
+        Envelope envelope = new Envelope(UUID.randomUUID(), node, destination,
+            contentType == null ? null : contentType.toString(), (byte[]) message.getPayload());
+        if (!outgoing.offer(envelope)) {
+            dropped.incrementAndGet();
+            log.warn("Websocket fan-out queue is full, message to {} is only delivered locally", destination);
+        }
+        return message;
+    }
+
+    private void publish() {
+        List<Envelope> batch = new ArrayList<>();
+        while (running) {
+            try {
+                Envelope first = outgoing.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                Thread.sleep(websocketFanOutProperties.getFlushIntervalMillis());
+                outgoing.drainTo(batch, websocketFanOutProperties.getBatchSize() - 1);
+                publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void publish(List<Envelope> batch) {
+        List<String> payloads = toPayloads(batch);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // delivered together on commit
+                transactionTemplate.execute(status -> {
+                    payloads.forEach(payload -> jdbcTemplate.queryForList("select pg_notify(?, ?)",
+                        websocketFanOutProperties.getChannel(), payload));
+                    return null;
+                });
+                published.addAndGet(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == 2) {
+                    dropped.addAndGet(batch.size());
+                    log.warn("Could not publish {} broker messages to the other nodes: {}", batch.size(), e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return json arrays of the envelopes, each below {@link #MAX_PAYLOAD_BYTES}
+     */
+    @NotNull
+    List<String> toPayloads(@NotNull List<Envelope> batch) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder();
+        int payloadBytes = 0;
+        for (Envelope envelope : batch) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(envelope);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            int bytes = json.getBytes(StandardCharsets.UTF_8).length;
+            if (bytes + 2 > MAX_PAYLOAD_BYTES) {
+                dropped.incrementAndGet();
+                log.warn("Broker message to {} is too large for the fan-out and only delivered locally",
+                    envelope.getDestination());
+                continue;
+            }
+            if (payloadBytes + bytes + 1 > MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.append(']').toString());
+                payload.setLength(0);
+                payloadBytes = 0;
+            }
+            payload.append(payload.length() == 0 ? '[' : ',').append(json);
+            payloadBytes += bytes + 1;
+        }
+        if (payload.length() > 0) {
+            payloads.add(payload.append(']').toString());
+        }
+        return payloads;
+    }
+
+    private void listen() {
+        long reconnectDelay = 1000;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + websocketFanOutProperties.getChannel());
+                }
+                log.debug("Listening for broker messages of the other nodes");
+                reconnectDelay = 1000;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.warn("Lost the connection listening for broker messages of the other nodes: {}", e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Sends the messages of other nodes to the local broker, skipping own and already received ones.
+     */
+    void receive(@NotNull String payload) {
+        List<Envelope> envelopes;
+        try {
+            envelopes = objectMapper.readValue(payload, new TypeReference<List<Envelope>>() {
+            });
+        } catch (IOException e) {
+            log.warn("Ignoring invalid websocket fan-out notification: {}", e.getMessage());
+            return;
+        }
+        for (Envelope envelope : envelopes) {
+            if (node.equals(envelope.getNode())) {
+                continue;
+            }
+            if (!received.add(envelope.getId())) {
+                duplicates.incrementAndGet();
+                continue;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(envelope.getDestination());
+            if (envelope.getContentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.getContentType()));
+            }
+            accessor.setHeader(FAN_OUT_ID_HEADER, envelope.getId());
+            brokerChannel.send(MessageBuilder.createMessage(envelope.getPayload(), accessor.getMessageHeaders()));
+            delivered.incrementAndGet();
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Envelope {
+
+        private UUID id;
+
+        /**
+         * the node which published the message
+         */
+        private String node;
+
+        private String destination;
+
+        @Nullable
+        private String contentType;
+
+        private byte[] payload;
+    }
+}
@@ -0,0 +1,14 @@
+-- H2 counterpart of db/migration/postgresql/V1__hot_query_indexes.sql, H2 has no partial indexes.
+
+CREATE INDEX IF NOT EXISTS idx_leasing_garden_field_status_time ON leasing (garden_field_id, status, from_time, to_time);
+CREATE INDEX IF NOT EXISTS idx_leasing_user_time ON leasing (user_id, from_time);
+
+CREATE INDEX IF NOT EXISTS idx_garden_field_owner ON garden_field (owner_id);
+
+CREATE INDEX IF NOT EXISTS idx_message_thread_created_date ON message (thread, created_date);
+CREATE INDEX IF NOT EXISTS idx_message_user_to_opened_type ON message (user_to_id, opened, type);
+CREATE INDEX IF NOT EXISTS idx_message_user_from_created_date ON message (user_from_id, created_date);
+
+CREATE INDEX IF NOT EXISTS idx_gardle_user_activation_key ON gardle_user (activation_key);
+CREATE INDEX IF NOT EXISTS idx_gardle_user_reset_key ON gardle_user (reset_key);
+CREATE INDEX IF NOT EXISTS idx_gardle_user_not_activated_created_date ON gardle_user (activated, created_date);
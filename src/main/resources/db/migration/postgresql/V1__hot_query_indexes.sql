@@ -0,0 +1,31 @@
+-- Secondary indexes for the hot queries. The tables are still created by hibernate (ddl-auto: update),
+-- the migrations run afterwards, see FlywayConfiguration.
+-- Partial indexes on "deleted IS NULL" match the @Where clauses of the soft deletable entities.
+
+-- overlap checks and leasing lists of a gardenfield (LeasingRepository.findAllOverlapping, LeasingQueryService)
+CREATE INDEX IF NOT EXISTS idx_leasing_garden_field_status_time
+    ON leasing (garden_field_id, status, from_time, to_time) WHERE deleted IS NULL;
+-- leasing lists of a requester
+CREATE INDEX IF NOT EXISTS idx_leasing_user_time
+    ON leasing (user_id, from_time) WHERE deleted IS NULL;
+
+-- gardenfields of an owner, also the join of the leasing list of an owner
+CREATE INDEX IF NOT EXISTS idx_garden_field_owner
+    ON garden_field (owner_id) WHERE deleted IS NULL;
+
+-- messages of a thread and the latest message per thread
+CREATE INDEX IF NOT EXISTS idx_message_thread_created_date
+    ON message (thread, created_date) WHERE deleted IS NULL;
+-- unread notifications and threads of a user
+CREATE INDEX IF NOT EXISTS idx_message_user_to_opened_type
+    ON message (user_to_id, opened, type) WHERE deleted IS NULL;
+CREATE INDEX IF NOT EXISTS idx_message_user_from_created_date
+    ON message (user_from_id, created_date) WHERE deleted IS NULL;
+
+-- activation and password reset links, removal of not activated users
+CREATE INDEX IF NOT EXISTS idx_gardle_user_activation_key
+    ON gardle_user (activation_key) WHERE deleted IS NULL AND activation_key IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_gardle_user_reset_key
+    ON gardle_user (reset_key) WHERE deleted IS NULL AND reset_key IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_gardle_user_not_activated_created_date
+    ON gardle_user (created_date) WHERE deleted IS NULL AND activated = false;
@@ -2,6 +2,7 @@ import Vue from 'vue';
 import { Component, Inject } from 'vue-property-decorator';
 import NotificationTrayItem from '@/components/Messages/notificationTrayItem.vue';
 import MessageService from '@/shared/services/Message/message.service';
+import NotificationSocketService from '@/shared/services/Message/notification.socket.service';
 import { Message, MessageType } from '@/shared/model/message.model';
 import { EventBus } from '@/shared/eventbus/eventbus';
 
@@ -13,10 +14,14 @@ import { EventBus } from '@/shared/eventbus/eventbus';
 export default class NotificationTrayComponent extends Vue {
   @Inject('messageService')
   private messageService: () => MessageService;
+  @Inject('notificationSocketService')
+  private notificationSocketService: () => NotificationSocketService;
   private notificationList: Message[] = [];
   open = false;
-  pollInterval = null;
+  unsubscribeNotifications = null;
   nrOfUnreadMessages = 0;
+  // revision of the unread messages the notification list was fetched for
+  unreadRevision: number = null;
 
   public getNotifications() {
     if (this.$store.getters.loggedIn) {
@@ -42,6 +47,39 @@ export default class NotificationTrayComponent extends Vue {
     }
   }
 
+  /**
+   * Fetches the unread notifications only if they changed since the last fetch.
+   */
+  public refreshNotifications() {
+    if (this.$store.getters.loggedIn) {
+      this.messageService()
+        .getUnreadCount()
+        .then(res => {
+          if (res.revision !== this.unreadRevision) {
+            this.unreadRevision = res.revision;
+            this.getNotifications();
+          }
+        });
+    }
+  }
+
+  public receiveNotification(notification: Message) {
+    if (notification.type === MessageType.DEFAULT) {
+      if (this.$route.name === 'Account:Messages:Thread' && this.$route.params.id === notification.thread) {
+        // the open thread shows and opens it
+        return;
+      }
+      // one notification per thread with unread user messages
+      this.notificationList = this.notificationList.filter(
+        notif => notif.type !== MessageType.DEFAULT || notif.thread !== notification.thread
+      );
+    }
+    this.notificationList = [notification].concat(this.notificationList);
+    const newNrOfUnreadMessages = this.notificationList.filter(notif => !notif.opened).length;
+    this.notifyMessagesPage(newNrOfUnreadMessages);
+    this.nrOfUnreadMessages = newNrOfUnreadMessages;
+  }
+
   private getMessagesNewerThanDate(lastDate: Date, toBeFiltered: Message[], existingUnread: string[]): Message[] {
     const newMessages: Message[] = [];
     for (const msg of toBeFiltered) {
@@ -99,18 +137,21 @@ export default class NotificationTrayComponent extends Vue {
     }
   }
 
-  mounted() {
-    this.getNotifications();
+  created() {
+    EventBus.$on('thread-opened', this.onThreadOpened);
+    // the unread notifications are checked once per (re)connect, new ones are pushed
+    this.unsubscribeNotifications = this.notificationSocketService().subscribe({
+      onConnect: () => this.refreshNotifications(),
+      onMessage: notification => this.receiveNotification(notification)
+    });
   }
 
-  created() {
-    EventBus.$on('thread-opened', args => this.removeByThread(args.thread));
+  beforeDestroy() {
+    EventBus.$off('thread-opened', this.onThreadOpened);
+    this.unsubscribeNotifications();
+  }
 
-    this.pollInterval = setInterval(
-      function() {
-        this.getNotifications();
-      }.bind(this),
-      10000
-    );
+  private onThreadOpened(args) {
+    this.removeByThread(args.thread);
   }
 }
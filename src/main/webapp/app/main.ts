@@ -16,6 +16,7 @@ import GardenFieldService from '@/shared/services/gardenField/gardenfield.servic
 import SearchService from '@/shared/services/gardenField/search/search.service';
 import AccountService from '@/shared/services/auth/account.service';
 import MessageService from '@/shared/services/Message/message.service';
+import NotificationSocketService from '@/shared/services/Message/notification.socket.service';
 import ImageCompressorService from '@/shared/services/util/image.compressor.service';
 import LeasingService from '@/shared/services/leasing/leasing.service';
 import PaymentService from '@/shared/services/payment.service';
@@ -27,6 +28,7 @@ config.initVueApp(Vue);
 const vuetify = vuetifyConfig.initVuetify(Vue);
 
 const translationService = new TranslationService(store, i18n);
+const notificationSocketService = new NotificationSocketService();
 
 router.beforeEach((to, from, next) => {
   if (!to.matched.length) {
@@ -55,6 +57,7 @@ new Vue({
     accountService: () => new AccountService(),
     leasingService: () => new LeasingService(),
     messageService: () => new MessageService(),
+    notificationSocketService: () => notificationSocketService,
     searchService: () => new SearchService(),
     paymentService: () => new PaymentService()
     // jhipster-needle-add-entity-service-to-main - JHipster will import entities services here
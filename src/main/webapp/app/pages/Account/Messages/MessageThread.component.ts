@@ -1,6 +1,7 @@
 import { Component, Inject } from 'vue-property-decorator';
 import Vue from 'vue';
 import MessageService from '@/shared/services/Message/message.service';
+import NotificationSocketService from '@/shared/services/Message/notification.socket.service';
 import { Message, MessageType } from '@/shared/model/message.model';
 import { EventBus } from '@/shared/eventbus/eventbus';
 import { OffsetPageModel } from '@/shared/model/offsetPage.model';
@@ -25,7 +26,7 @@ export default class PageMessageThread extends Vue {
   lastScrollElementHeight = null;
   lastScrollOffsetBeforeInsertion = null;
   lastScrollElementHeightBeforeInsertion = null;
-  pollInterval = null;
+  unsubscribeNotifications = null;
   threadHeight = this.calcThreadHeight();
 
   // Needed for html access
@@ -44,6 +45,8 @@ export default class PageMessageThread extends Vue {
 
   @Inject('messageService')
   private messageService: () => MessageService;
+  @Inject('notificationSocketService')
+  private notificationSocketService: () => NotificationSocketService;
 
   private resetVariables() {
     this.thread = [];
@@ -117,14 +120,23 @@ export default class PageMessageThread extends Vue {
 
   async created() {
     await this.getMessages();
-    this.pollInterval = setInterval(
-      function() {
-        if (!this.currentlyLoading) {
-          this.updateMessages();
+    // new messages of the thread are pushed, the ones sent while disconnected are loaded on reconnect
+    let reconnect = false;
+    this.unsubscribeNotifications = this.notificationSocketService().subscribe({
+      onConnect: () => {
+        if (reconnect) {
+          this.onNotification(null);
         }
-      }.bind(this),
-      2000
-    );
+        reconnect = true;
+      },
+      onMessage: notification => this.onNotification(notification)
+    });
+  }
+
+  private onNotification(notification: Message) {
+    if (!this.currentlyLoading && (notification === null || notification.thread === this.$route.params.id)) {
+      this.updateMessages();
+    }
   }
 
   private markThreadOpened(thread: string) {
@@ -147,7 +159,9 @@ export default class PageMessageThread extends Vue {
   }
 
   public beforeDestroy() {
-    clearInterval(this.pollInterval);
+    if (this.unsubscribeNotifications) {
+      this.unsubscribeNotifications();
+    }
   }
 
   public updateThreadViewStyle() {
@@ -6,7 +6,7 @@ import LeasingService from '@/shared/services/leasing/leasing.service';
 import GardenFieldService from '@/shared/services/gardenField/gardenfield.service';
 import ImageGallery from '@/pages/ListingDetail/ImageGallery/ImageGallery.vue';
 import NewMessagePopup from '@/components/Messages/NewMessagePopup.vue';
-import { ILeasingDateRange } from '@/shared/model/leasingDateRange.model';
+import { AvailabilityCalendar } from '@/shared/model/availabilityCalendar.model';
 import Map from '@/components/maps/map.vue';
 import { differenceInDays, isBefore, parseISO } from 'date-fns';
 import PaymentService from '@/shared/services/payment.service';
@@ -26,7 +26,7 @@ export default class PageListingDetail extends Vue {
   gardenField: IGardenField = null;
   fieldImages: string[] = null;
   fieldThumbnails: string[] = null;
-  leasedDateRanges: ILeasingDateRange[] = [];
+  availabilityCalendar: AvailabilityCalendar = null;
 
   @Inject('gardenFieldService')
   private gardenFieldService: () => GardenFieldService;
@@ -57,7 +57,7 @@ export default class PageListingDetail extends Vue {
       this.gardenField = await this.gardenFieldService().getGardenField(this.fieldId);
       this.fieldImages = await this.gardenFieldService().getGardenFieldImages(this.fieldId);
       this.fieldThumbnails = await this.gardenFieldService().getGardenFieldThumbnails(this.fieldId);
-      this.leasedDateRanges = await this.leasingService().getLeasingDateRanges(this.fieldId);
+      this.availabilityCalendar = await this.leasingService().getAvailabilityCalendar(this.fieldId);
     } catch (e) {
       if (e instanceof Error) {
         let err_data = null;
@@ -117,13 +117,8 @@ export default class PageListingDetail extends Vue {
     return dates;
   }
 
-  allowedDates(val: Date): boolean {
-    for (const dateRange of this.leasedDateRanges) {
-      if (val >= dateRange.from && val <= dateRange.to) {
-        return false;
-      }
-    }
-    return true;
+  allowedDates(val: string): boolean {
+    return !this.availabilityCalendar || !this.availabilityCalendar.isReserved(val);
   }
 
   get selectedPrice() {
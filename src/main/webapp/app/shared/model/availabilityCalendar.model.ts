@@ -0,0 +1,31 @@
+export interface IAvailabilityCalendar {
+  firstDay?: string;
+  days?: number;
+  reservedDays?: string;
+  revision?: number;
+}
+
+export class AvailabilityCalendar implements IAvailabilityCalendar {
+  private bitmap: Uint8Array;
+
+  constructor(public firstDay?: string, public days?: number, public reservedDays?: string) {
+    const decoded = atob(reservedDays || '');
+    this.bitmap = new Uint8Array(decoded.length);
+    for (let i = 0; i < decoded.length; ++i) {
+      this.bitmap[i] = decoded.charCodeAt(i);
+    }
+  }
+
+  static of(calendar: IAvailabilityCalendar): AvailabilityCalendar {
+    return new AvailabilityCalendar(calendar.firstDay, calendar.days, calendar.reservedDays);
+  }
+
+  /**
+   * @param day ISO date (yyyy-MM-dd), days outside of the calendar are not reserved
+   */
+  isReserved(day: string): boolean {
+    const index = Math.round((Date.parse(day) - Date.parse(this.firstDay)) / 86400000);
+    const byteIndex = index >> 3;
+    return index >= 0 && byteIndex < this.bitmap.length && (this.bitmap[byteIndex] & (1 << (index & 7))) !== 0;
+  }
+}
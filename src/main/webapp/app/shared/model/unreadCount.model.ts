@@ -0,0 +1,8 @@
+export interface IUnreadCount {
+  unread?: number;
+  revision?: number;
+}
+
+export class UnreadCount implements IUnreadCount {
+  constructor(public unread?: number, public revision?: number) {}
+}
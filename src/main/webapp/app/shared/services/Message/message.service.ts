@@ -3,6 +3,7 @@ import { Message } from '@/shared/model/message.model';
 import { PageModel } from '@/shared/model/page.model';
 import { MessagePage } from '@/shared/model/messagePage.model';
 import { OffsetPageModel } from '@/shared/model/offsetPage.model';
+import { UnreadCount } from '@/shared/model/unreadCount.model';
 
 const messageApiClient = {
   getLatestMessageInThreadsPaged(page: PageModel) {
@@ -24,6 +25,9 @@ const messageApiClient = {
   },
   getUnreadNotifications() {
     return axios.get('/api/v1/messages/unread/');
+  },
+  getUnreadCount() {
+    return axios.get<UnreadCount>('/api/v1/messages/unread/count');
   }
 };
 
@@ -105,4 +109,17 @@ export default class MessageService {
         });
     });
   }
+
+  public getUnreadCount(): Promise<UnreadCount> {
+    return new Promise<UnreadCount>((resolve, reject) => {
+      messageApiClient
+        .getUnreadCount()
+        .then(res => {
+          resolve(res.data);
+        })
+        .catch(({ response }) => {
+          reject(response);
+        });
+    });
+  }
 }
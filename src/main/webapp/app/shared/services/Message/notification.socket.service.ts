@@ -0,0 +1,102 @@
+import SockJS from 'sockjs-client';
+import Stomp, { Client } from 'webstomp-client';
+import { GARDLE_TOKEN_NAME, SERVER_API_URL } from '@/constants';
+import { Message } from '@/shared/model/message.model';
+
+const NOTIFICATION_ENDPOINT = '/websocket/notifications';
+const NOTIFICATION_DESTINATION = '/user/queue/notifications';
+const MIN_RECONNECT_DELAY = 1000;
+const MAX_RECONNECT_DELAY = 30000;
+
+export interface NotificationListener {
+  // called on every (re)connect, messages sent while disconnected have to be queried once
+  onConnect: () => void;
+  onMessage: (message: Message) => void;
+}
+
+/**
+ * Receives the messages and notifications pushed to the logged in user. One connection is shared by all listeners,
+ * it is opened with the first and closed with the last one and reconnects with an increasing delay.
+ */
+export default class NotificationSocketService {
+  private listeners: NotificationListener[] = [];
+  private socket = null;
+  private client: Client = null;
+  private connected = false;
+  private reconnectDelay = MIN_RECONNECT_DELAY;
+  private reconnectTimeout = null;
+
+  public subscribe(listener: NotificationListener): () => void {
+    this.listeners.push(listener);
+    if (this.listeners.length === 1) {
+      this.connect();
+    } else if (this.connected) {
+      listener.onConnect();
+    }
+    return () => this.unsubscribe(listener);
+  }
+
+  private unsubscribe(listener: NotificationListener) {
+    this.listeners = this.listeners.filter(l => l !== listener);
+    if (this.listeners.length === 0) {
+      this.disconnect();
+    }
+  }
+
+  private connect() {
+    const token = localStorage.getItem(GARDLE_TOKEN_NAME) || sessionStorage.getItem(GARDLE_TOKEN_NAME);
+    if (!token) {
+      return;
+    }
+    // the handshake can't carry the authorization header
+    this.socket = new SockJS(`${SERVER_API_URL}${NOTIFICATION_ENDPOINT}?access_token=${token}`);
+    const client = Stomp.over(this.socket, { debug: false });
+    this.client = client;
+    client.connect(
+      {},
+      () => {
+        this.connected = true;
+        this.reconnectDelay = MIN_RECONNECT_DELAY;
+        client.subscribe(NOTIFICATION_DESTINATION, frame => {
+          const message: Message = JSON.parse(frame.body);
+          this.listeners.forEach(listener => listener.onMessage(message));
+        });
+        this.listeners.forEach(listener => listener.onConnect());
+      },
+      () => this.scheduleReconnect(client)
+    );
+  }
+
+  private scheduleReconnect(client: Client) {
+    if (this.client !== client) {
+      // closed on purpose
+      return;
+    }
+    this.connected = false;
+    this.client = null;
+    this.socket = null;
+    this.reconnectTimeout = setTimeout(() => {
+      this.reconnectTimeout = null;
+      if (this.listeners.length > 0) {
+        this.connect();
+      }
+    }, this.reconnectDelay);
+    this.reconnectDelay = Math.min(this.reconnectDelay * 2, MAX_RECONNECT_DELAY);
+  }
+
+  private disconnect() {
+    clearTimeout(this.reconnectTimeout);
+    this.reconnectTimeout = null;
+    const client = this.client;
+    const socket = this.socket;
+    this.client = null;
+    this.socket = null;
+    this.connected = false;
+    this.reconnectDelay = MIN_RECONNECT_DELAY;
+    if (client && client.connected) {
+      client.disconnect();
+    } else if (socket) {
+      socket.close();
+    }
+  }
+}
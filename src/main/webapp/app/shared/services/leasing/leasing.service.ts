@@ -1,5 +1,6 @@
 import axios from 'axios';
 import { LeasingDateRange } from '@/shared/model/leasingDateRange.model';
+import { AvailabilityCalendar } from '@/shared/model/availabilityCalendar.model';
 import { PageModel } from '@/shared/model/page.model';
 import { serializeUriComponents } from '@/shared/services/util/uriComponents.service';
 
@@ -7,6 +8,9 @@ const leasingClient = {
   getLeasingDateRanges(gardenFieldId) {
     return axios.get(`/api/v1/leasings/${gardenFieldId}/leasedDateRanges`);
   },
+  getAvailabilityCalendar(gardenFieldId) {
+    return axios.get(`/api/v1/leasings/${gardenFieldId}/availabilityCalendar`);
+  },
   update(leasingId: number, gardenFieldId: number, status: string) {
     return axios.put(`/api/v1/leasings/`, {
       id: leasingId,
@@ -47,6 +51,19 @@ export default class LeasingService {
     });
   }
 
+  public getAvailabilityCalendar(gardenFieldId: number): Promise<AvailabilityCalendar> {
+    return new Promise<any>((resolve, reject) => {
+      leasingClient
+        .getAvailabilityCalendar(gardenFieldId)
+        .then(res => {
+          resolve(AvailabilityCalendar.of(res.data));
+        })
+        .catch(({ response }) => {
+          reject(response);
+        });
+    });
+  }
+
   public getForGardenField(page: PageModel, gardenFieldId: number, filters: object) {
     return new Promise<any>((resolve, reject) => {
       leasingClient
@@ -0,0 +1,224 @@
+package com.gardle.repository.search.impl;
+
+import com.gardle.GardleApp;
+import com.gardle.domain.GardenField;
+import com.gardle.domain.User;
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.UserRepository;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.hibernate.search.jpa.FullTextEntityManager;
+import org.hibernate.search.jpa.FullTextQuery;
+import org.hibernate.search.jpa.Search;
+import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.query.dsl.Unit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares {@link GeoDistanceQuery} with the hash based spatial query of hibernate search it replaced, on the same
+ * index: both must find the same gardenfields, apart from the ones within the error of the equirectangular
+ * approximation at the border of the circle. The mean time per query of both is logged, it is a measurement and
+ * not asserted, as it depends on the machine.
+ */
+@SpringBootTest(classes = GardleApp.class)
+public class GeoDistanceQueryIT {
+
+    private static final int GARDEN_FIELDS = 2000;
+    private static final int CENTERS = 20;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+    //around vienna, about 300km x 220km
+    private static final double MIN_LATITUDE = 47.0;
+    private static final double MIN_LONGITUDE = 14.0;
+    private static final double SPREAD_IN_DEGREES = 3.0;
+    private static final double[] RADII_IN_KM = {5.0, 50.0, 150.0};
+
+    private final Logger log = LoggerFactory.getLogger(GeoDistanceQueryIT.class);
+
+    @Autowired
+    private GardenFieldRepository gardenFieldRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private User owner;
+    private List<GardenField> gardenFields;
+
+    @BeforeEach
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Random random = new Random(42);
+        //committed, the index is only updated on commit
+        transactionTemplate.execute(status -> {
+            owner = new User();
+            owner.setLogin("geoowner");
+            owner.setPassword(RandomStringUtils.random(60));
+            owner.setActivated(true);
+            owner.setEmail(RandomStringUtils.randomAlphabetic(5) + "@test.com");
+            owner.setFirstName("geo");
+            owner.setLastName("owner");
+            owner.setBankAccountIBAN("AT89370400440532013000");
+            owner = userRepository.saveAndFlush(owner);
+            List<GardenField> created = new ArrayList<>();
+            for (int i = 0; i < GARDEN_FIELDS; i++) {
+                GardenField gardenField = new GardenField();
+                gardenField.setName("geoGarden" + i);
+                gardenField.setCity("geoCity");
+                gardenField.setSizeInM2(10.0);
+                gardenField.setPricePerM2(3.0);
+                gardenField.setLatitude(MIN_LATITUDE + random.nextDouble() * SPREAD_IN_DEGREES);
+                gardenField.setLongitude(MIN_LONGITUDE + random.nextDouble() * SPREAD_IN_DEGREES);
+                gardenField.setOwner(owner);
+                created.add(gardenField);
+            }
+            gardenFields = gardenFieldRepository.saveAll(created);
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void cleanup() {
+        transactionTemplate.execute(status -> {
+            gardenFieldRepository.deleteAll(gardenFields);
+            userRepository.delete(owner);
+            return null;
+        });
+    }
+
+    @Test
+    public void testSameResultsAsHashSpatialQuery() {
+        Random random = new Random(7);
+        Map<Long, GardenField> gardenFieldsById = new HashMap<>();
+        gardenFields.forEach(gardenField -> gardenFieldsById.put(gardenField.getId(), gardenField));
+        transactionTemplate.execute(status -> {
+            FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+            QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory().buildQueryBuilder()
+                .forEntity(GardenField.class).get();
+            for (double radiusInKM : RADII_IN_KM) {
+                for (int i = 0; i < CENTERS; i++) {
+                    double latitude = MIN_LATITUDE + random.nextDouble() * SPREAD_IN_DEGREES;
+                    double longitude = MIN_LONGITUDE + random.nextDouble() * SPREAD_IN_DEGREES;
+                    Set<Long> expected = findIds(fullTextEntityManager,
+                        createHashSpatialQuery(queryBuilder, latitude, longitude, radiusInKM));
+                    Set<Long> actual = findIds(fullTextEntityManager,
+                        GeoDistanceQuery.create(queryBuilder, latitude, longitude, radiusInKM));
+
+                    Set<Long> differing = new HashSet<>(expected);
+                    differing.addAll(actual);
+                    differing.removeIf(id -> expected.contains(id) && actual.contains(id));
+                    for (Long id : differing) {
+                        GardenField gardenField = gardenFieldsById.get(id);
+                        double distance = GeoDistanceQuery.distanceInKM(latitude, longitude, gardenField.getLatitude(),
+                            gardenField.getLongitude(), false);
+                        assertThat(Math.abs(distance - radiusInKM)).isLessThanOrEqualTo(radiusInKM * 0.001);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Test
+    public void testMeasureQueryTimes() {
+        transactionTemplate.execute(status -> {
+            FullTextEntityManager fullTextEntityManager = Search.getFullTextEntityManager(entityManager);
+            QueryBuilder queryBuilder = fullTextEntityManager.getSearchFactory().buildQueryBuilder()
+                .forEntity(GardenField.class).get();
+            IndexReader indexReader = fullTextEntityManager.getSearchFactory().getIndexReaderAccessor()
+                .open(GardenField.class);
+            try {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                for (double radiusInKM : RADII_IN_KM) {
+                    long hashNanos = measure(indexSearcher, radiusInKM,
+                        center -> createHashSpatialQuery(queryBuilder, center[0], center[1], radiusInKM));
+                    long boundingBoxNanos = measure(indexSearcher, radiusInKM,
+                        center -> GeoDistanceQuery.create(queryBuilder, center[0], center[1], radiusInKM));
+                    log.info("Radius {}km over {} gardenfields: hash spatial query {}us, GeoDistanceQuery {}us per query",
+                        radiusInKM, GARDEN_FIELDS, hashNanos / 1000, boundingBoxNanos / 1000);
+                    assertThat(hashNanos).isPositive();
+                    assertThat(boundingBoxNanos).isPositive();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                fullTextEntityManager.getSearchFactory().getIndexReaderAccessor().close(indexReader);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return mean nanoseconds per query over the measured rounds, all rounds use the same centers
+     */
+    private long measure(IndexSearcher indexSearcher, double radiusInKM, Function<double[], Query> queryFactory)
+        throws IOException {
+        Random random = new Random(11);
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < CENTERS; i++) {
+            queries.add(queryFactory.apply(new double[]{MIN_LATITUDE + random.nextDouble() * SPREAD_IN_DEGREES,
+                MIN_LONGITUDE + random.nextDouble() * SPREAD_IN_DEGREES}));
+        }
+        long matches = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (Query query : queries) {
+                matches += indexSearcher.count(query);
+            }
+        }
+        long started = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            for (Query query : queries) {
+                matches += indexSearcher.count(query);
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        log.debug("{} matches within {}km", matches, radiusInKM);
+        return elapsed / ((long) MEASURED_ROUNDS * CENTERS);
+    }
+
+    /**
+     * The radius filter before {@link GeoDistanceQuery}.
+     */
+    private static Query createHashSpatialQuery(QueryBuilder queryBuilder, double latitude, double longitude,
+                                                double radiusInKM) {
+        return queryBuilder
+            .spatial()
+            .within(radiusInKM, Unit.KM)
+            .ofLatitude(latitude)
+            .andLongitude(longitude)
+            .createQuery();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Long> findIds(FullTextEntityManager fullTextEntityManager, Query query) {
+        List<Object[]> rows = fullTextEntityManager.createFullTextQuery(query, GardenField.class)
+            .setProjection(FullTextQuery.ID)
+            .getResultList();
+        Set<Long> ids = new HashSet<>();
+        rows.forEach(row -> ids.add((Long) row[0]));
+        return ids;
+    }
+}
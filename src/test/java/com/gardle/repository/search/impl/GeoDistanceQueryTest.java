@@ -0,0 +1,29 @@
+package com.gardle.repository.search.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class GeoDistanceQueryTest {
+
+    @Test
+    public void testHaversineDistance() {
+        //vienna to salzburg
+        assertThat(GeoDistanceQuery.distanceInKM(48.2082, 16.3738, 47.8095, 13.0550, false)).isCloseTo(251.0, within(1.0));
+    }
+
+    @Test
+    public void testEquirectangularApproximationWithinRadiusLimit() {
+        double exact = GeoDistanceQuery.distanceInKM(48.2082, 16.3738, 48.7, 17.5, false);
+        double approximated = GeoDistanceQuery.distanceInKM(48.2082, 16.3738, 48.7, 17.5, true);
+        assertThat(exact).isLessThan(GeoDistanceQuery.EQUIRECTANGULAR_MAX_RADIUS_KM);
+        assertThat(approximated).isCloseTo(exact, within(exact * 0.001));
+    }
+
+    @Test
+    public void testDistanceAcrossAntimeridian() {
+        assertThat(GeoDistanceQuery.distanceInKM(0.0, 179.9, 0.0, -179.9, true)).isCloseTo(22.2, within(0.1));
+        assertThat(GeoDistanceQuery.distanceInKM(0.0, 179.9, 0.0, -179.9, false)).isCloseTo(22.2, within(0.1));
+    }
+}
@@ -0,0 +1,117 @@
+package com.gardle.service;
+
+import com.gardle.domain.GardenField;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.repository.IndexChangeLogRepository;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.service.dto.leasing.AvailabilityCalendarDTO;
+import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
+import com.gardle.service.dto.leasing.LeasingIntervalDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GardenFieldAvailabilityCalendarTest {
+
+    private static final Long GARDEN_FIELD_ID = 1L;
+    private static final LocalDate TODAY = LocalDate.of(2021, 1, 1);
+
+    private LeasingRepository leasingRepository;
+    private ReservedLeasingIndex reservedLeasingIndex;
+    private GardenFieldAvailabilityCalendar gardenFieldAvailabilityCalendar;
+
+    @BeforeEach
+    public void setup() {
+        leasingRepository = mock(LeasingRepository.class);
+        when(leasingRepository.findAllIntervalsByStatus(LeasingStatus.RESERVED)).thenReturn(Collections.singletonList(
+            new LeasingIntervalDTO(1L, GARDEN_FIELD_ID, Instant.parse("2021-01-03T00:00:00Z"), Instant.parse("2021-01-10T23:59:59Z"))
+        ));
+        reservedLeasingIndex = new ReservedLeasingIndex(leasingRepository, mock(IndexChangeLogRepository.class));
+        reservedLeasingIndex.load();
+        gardenFieldAvailabilityCalendar = new GardenFieldAvailabilityCalendar(reservedLeasingIndex,
+            Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testCalendarCoversTwentyFourMonths() {
+        AvailabilityCalendarDTO calendar = gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID);
+        assertThat(calendar.getFirstDay()).isEqualTo(TODAY);
+        assertThat(calendar.getDays()).isEqualTo(730);
+    }
+
+    @Test
+    public void testReservedDaysAreSet() {
+        byte[] bitmap = Base64.getDecoder().decode(gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID).getReservedDays());
+        //days 2 to 9
+        assertThat(bitmap).containsExactly((byte) 0b11111100, (byte) 0b00000011);
+    }
+
+    @Test
+    public void testUnreservedGardenFieldHasEmptyBitmap() {
+        assertThat(gardenFieldAvailabilityCalendar.getCalendar(2L).getReservedDays()).isEmpty();
+    }
+
+    @Test
+    public void testUpdateRebuildsBitmap() {
+        AvailabilityCalendarDTO before = gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID);
+        Leasing leasing = createLeasing(LeasingStatus.CANCELLED);
+        reservedLeasingIndex.update(leasing);
+        gardenFieldAvailabilityCalendar.update(GARDEN_FIELD_ID);
+        AvailabilityCalendarDTO after = gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID);
+        assertThat(after.getReservedDays()).isEmpty();
+        assertThat(after).isNotEqualTo(before);
+    }
+
+    @Test
+    public void testBitmapIsClippedToCalendar() {
+        GardenFieldAvailabilityCalendar.DayBitmap bitmap = new GardenFieldAvailabilityCalendar.DayBitmap(TODAY, null);
+        bitmap.reserve(Instant.parse("2020-12-01T00:00:00Z").toEpochMilli(), Instant.parse("2021-01-01T10:00:00Z").toEpochMilli());
+        bitmap.reserve(Instant.parse("2021-03-01T00:00:00Z").toEpochMilli(), Instant.parse("2030-01-01T00:00:00Z").toEpochMilli());
+        assertThat(bitmap.isReserved(TODAY)).isTrue();
+        assertThat(bitmap.isReserved(TODAY.plusDays(1))).isFalse();
+        assertThat(bitmap.isReserved(LocalDate.of(2021, 2, 28))).isFalse();
+        assertThat(bitmap.isReserved(LocalDate.of(2021, 3, 1))).isTrue();
+        assertThat(bitmap.isReserved(LocalDate.of(2022, 12, 31))).isTrue();
+        assertThat(bitmap.isReserved(LocalDate.of(2023, 1, 1))).isFalse();
+        assertThat(Base64.getDecoder().decode(bitmap.toDto(0L).getReservedDays())).hasSize(92);
+    }
+
+    @Test
+    public void testCalendarFromDateRanges() {
+        AvailabilityCalendarDTO calendar = gardenFieldAvailabilityCalendar.getCalendar(Collections.singletonList(
+            new LeasingDateRangeDTO(Instant.parse("2021-01-03T00:00:00Z"), Instant.parse("2021-01-10T23:59:59Z"))), 0L);
+        assertThat(calendar).isEqualTo(gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID));
+    }
+
+    @Test
+    public void testCalendarCarriesRevisionOfIndex() {
+        when(leasingRepository.findAllIntervalsByStatusAndGardenFieldIdIn(eq(LeasingStatus.RESERVED), anyCollection()))
+            .thenReturn(Collections.emptyList());
+        reservedLeasingIndex.refresh(Collections.singletonMap(GARDEN_FIELD_ID, 7L));
+
+        assertThat(gardenFieldAvailabilityCalendar.getCalendar(GARDEN_FIELD_ID).getRevision()).isEqualTo(7L);
+        assertThat(gardenFieldAvailabilityCalendar.getCalendar(2L).getRevision()).isEqualTo(0L);
+    }
+
+    private Leasing createLeasing(LeasingStatus status) {
+        GardenField gardenField = new GardenField();
+        gardenField.setId(GARDEN_FIELD_ID);
+        Leasing leasing = new Leasing()
+            .from(Instant.parse("2021-01-03T00:00:00Z"))
+            .to(Instant.parse("2021-01-10T23:59:59Z"))
+            .status(status)
+            .gardenField(gardenField);
+        leasing.setId(1L);
+        return leasing;
+    }
+}
@@ -0,0 +1,97 @@
+package com.gardle.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The advisory lock of {@link GardenFieldBookingLock} between two nodes, each with its own lock instance and
+ * connection, against a local postgres, e.g. the one of {@code src/main/docker/postgresql.yml}:
+ * {@code BOOKING_LOCK_TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/airgnb}, the credentials default to the ones
+ * of the docker container and are read from {@code BOOKING_LOCK_TEST_DATABASE_USERNAME} and
+ * {@code BOOKING_LOCK_TEST_DATABASE_PASSWORD}.
+ */
+@EnabledIfEnvironmentVariable(named = "BOOKING_LOCK_TEST_DATABASE_URL", matches = "jdbc:postgresql:.*")
+public class GardenFieldBookingLockIT {
+
+    private static final long HOLD_MILLIS = 500;
+
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    public void startNodes() {
+        nodeA = new Node();
+        nodeB = new Node();
+    }
+
+    @Test
+    public void testBookingOfSameGardenFieldWaitsForOtherNode() throws Exception {
+        long waited = lockConcurrently(1L, 1L);
+
+        assertThat(waited).isGreaterThanOrEqualTo(HOLD_MILLIS / 2);
+    }
+
+    @Test
+    public void testBookingOfOtherGardenFieldDoesNotWaitForOtherNode() throws Exception {
+        long waited = lockConcurrently(1L, 2L);
+
+        assertThat(waited).isLessThan(HOLD_MILLIS / 2);
+    }
+
+    /**
+     * Node A locks its gardenfield and holds the lock for {@link #HOLD_MILLIS}, node B locks its one meanwhile.
+     *
+     * @return milliseconds node B waited for its lock
+     */
+    private long lockConcurrently(long gardenFieldOfA, long gardenFieldOfB) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch lockedByA = new CountDownLatch(1);
+        try {
+            Future<?> holder = executor.submit(() -> nodeA.transactionTemplate.execute(status -> {
+                nodeA.gardenFieldBookingLock.lock(gardenFieldOfA);
+                lockedByA.countDown();
+                try {
+                    Thread.sleep(HOLD_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            assertThat(lockedByA.await(10, TimeUnit.SECONDS)).isTrue();
+            Long waited = nodeB.transactionTemplate.execute(status -> {
+                long started = System.nanoTime();
+                nodeB.gardenFieldBookingLock.lock(gardenFieldOfB);
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            });
+            holder.get(10, TimeUnit.SECONDS);
+            return waited;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final class Node {
+
+        private final GardenFieldBookingLock gardenFieldBookingLock;
+        private final TransactionTemplate transactionTemplate;
+
+        private Node() {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getenv("BOOKING_LOCK_TEST_DATABASE_URL"),
+                System.getenv().getOrDefault("BOOKING_LOCK_TEST_DATABASE_USERNAME", "airgnb"),
+                System.getenv().getOrDefault("BOOKING_LOCK_TEST_DATABASE_PASSWORD", "password"));
+            gardenFieldBookingLock = new GardenFieldBookingLock(new JdbcTemplate(dataSource));
+            gardenFieldBookingLock.detectAdvisoryLocks();
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        }
+    }
+}
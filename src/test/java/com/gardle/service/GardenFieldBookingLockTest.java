@@ -0,0 +1,106 @@
+package com.gardle.service;
+
+import com.gardle.service.exception.LeasingsOverlapServiceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class GardenFieldBookingLockTest {
+
+    private static final int BOOKINGS = 50;
+
+    private GardenFieldBookingLock gardenFieldBookingLock;
+
+    @BeforeEach
+    public void setup() {
+        gardenFieldBookingLock = new GardenFieldBookingLock(mock(JdbcTemplate.class));
+    }
+
+    @Test
+    public void testConcurrentBookingsOfSameGardenFieldOnlyOneSucceeds() throws Exception {
+        List<Long> bookedFrom = new CopyOnWriteArrayList<>();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(BOOKINGS, i -> 1L, gardenFieldId -> {
+            //overlap check and insert of a booking for the same period
+            if (!bookedFrom.isEmpty()) {
+                rejected.incrementAndGet();
+                throw new LeasingsOverlapServiceException();
+            }
+            Thread.sleep(1);
+            bookedFrom.add(gardenFieldId);
+        });
+
+        assertThat(bookedFrom).hasSize(1);
+        assertThat(rejected.get()).isEqualTo(BOOKINGS - 1);
+    }
+
+    @Test
+    public void testBookingsOfDifferentGardenFieldsRunInParallel() throws Exception {
+        CountDownLatch allInside = new CountDownLatch(2);
+
+        //both bookings hold their lock until the other one acquired its own, which only works in parallel
+        runConcurrently(2, i -> (long) i, gardenFieldId -> {
+            allInside.countDown();
+            assertThat(allInside.await(5, TimeUnit.SECONDS)).isTrue();
+        });
+    }
+
+    @Test
+    public void testLockRequiresTransaction() {
+        assertThatThrownBy(() -> gardenFieldBookingLock.lock(1L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private interface Booking {
+        void book(Long gardenFieldId) throws Exception;
+    }
+
+    private interface GardenFieldOfBooking {
+        long gardenFieldId(int booking);
+    }
+
+    /**
+     * Runs every booking in its own simulated transaction, which completes after the booking.
+     */
+    private void runConcurrently(int bookings, GardenFieldOfBooking gardenFieldOfBooking, Booking booking)
+        throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(bookings);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < bookings; i++) {
+            long gardenFieldId = gardenFieldOfBooking.gardenFieldId(i);
+            futures.add(executor.submit(() -> {
+                start.await();
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    gardenFieldBookingLock.lock(gardenFieldId);
+                    booking.book(gardenFieldId);
+                } catch (LeasingsOverlapServiceException e) {
+                    //rejected booking
+                } finally {
+                    for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                        synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+                    }
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,87 @@
+package com.gardle.service;
+
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.search.GardenFieldSearchRepository;
+import com.gardle.service.dto.GardenFieldClusterDTO;
+import com.gardle.service.dto.GardenFieldLocationDTO;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+public class GardenFieldClusterServiceTest {
+
+    private GardenFieldRepository gardenFieldRepository;
+    private GardenFieldClusterService gardenFieldClusterService;
+
+    @BeforeEach
+    public void setup() {
+        gardenFieldRepository = mock(GardenFieldRepository.class);
+        //two gardenfields in vienna, one in graz
+        doAnswer(invocation -> {
+            double south = invocation.getArgument(0);
+            double west = invocation.getArgument(1);
+            double north = invocation.getArgument(2);
+            double east = invocation.getArgument(3);
+            GardenFieldSearchRepository.LocationConsumer consumer = invocation.getArgument(4);
+            acceptWithin(consumer, 1L, 48.20, 16.37, south, west, north, east);
+            acceptWithin(consumer, 2L, 48.22, 16.39, south, west, north, east);
+            acceptWithin(consumer, 3L, 47.07, 15.44, south, west, north, east);
+            return null;
+        }).when(gardenFieldRepository).forEachLocationWithin(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any());
+        gardenFieldClusterService = new GardenFieldClusterService(gardenFieldRepository, new JHipsterProperties(),
+            new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testAggregatesCellsOfTile() {
+        List<GardenFieldClusterDTO> clusters = gardenFieldClusterService.getClusters(46.0, 14.0, 49.0, 17.0, 7);
+
+        assertThat(clusters).extracting(GardenFieldClusterDTO::getCount).containsExactlyInAnyOrder(2, 1);
+        assertThat(clusters).filteredOn(cluster -> cluster.getCount() == 1)
+            .extracting(GardenFieldClusterDTO::getGardenFieldId).containsExactly(3L);
+    }
+
+    @Test
+    public void testInvalidateOnlyTilesOfChangedGardenField() {
+        gardenFieldClusterService.getClusters(48.2, 16.37, 48.2, 16.37, 10);
+        gardenFieldClusterService.getClusters(47.07, 15.44, 47.07, 15.44, 10);
+        verify(gardenFieldRepository, times(2))
+            .forEachLocationWithin(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any());
+
+        gardenFieldClusterService.invalidate(Collections.singletonList(new GardenFieldLocationDTO(1L, 48.21, 16.38)));
+        gardenFieldClusterService.getClusters(48.2, 16.37, 48.2, 16.37, 10);
+        gardenFieldClusterService.getClusters(47.07, 15.44, 47.07, 15.44, 10);
+
+        verify(gardenFieldRepository, times(3))
+            .forEachLocationWithin(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any());
+    }
+
+    @Test
+    public void testInvalidateTilesOfPreviousLocation() {
+        gardenFieldClusterService.getClusters(47.07, 15.44, 47.07, 15.44, 10);
+
+        //moved from graz to vienna
+        gardenFieldClusterService.invalidate(Collections.singletonList(new GardenFieldLocationDTO(3L, 48.21, 16.38)));
+        gardenFieldClusterService.getClusters(47.07, 15.44, 47.07, 15.44, 10);
+
+        verify(gardenFieldRepository, times(2))
+            .forEachLocationWithin(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any());
+    }
+
+    private static void acceptWithin(GardenFieldSearchRepository.LocationConsumer consumer, long gardenFieldId,
+                                     double latitude, double longitude,
+                                     double south, double west, double north, double east) {
+        if (latitude >= south && latitude <= north && longitude >= west && longitude <= east) {
+            consumer.accept(gardenFieldId, latitude, longitude);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.gardle.service;
+
+import com.gardle.repository.GardenFieldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class GardenFieldFilterBoundariesTest {
+
+    private GardenFieldRepository gardenFieldRepository;
+    private GardenFieldFilterBoundaries gardenFieldFilterBoundaries;
+
+    @BeforeEach
+    public void setup() {
+        gardenFieldRepository = mock(GardenFieldRepository.class);
+        when(gardenFieldRepository.getMinPriceForPerMonth()).thenReturn(100.4);
+        when(gardenFieldRepository.getMaxPriceForSizePerMonth()).thenReturn(900.6);
+        when(gardenFieldRepository.getMinSize()).thenReturn(5.0);
+        when(gardenFieldRepository.getMaxSize()).thenReturn(50.0);
+        gardenFieldFilterBoundaries = new GardenFieldFilterBoundaries(gardenFieldRepository);
+        gardenFieldFilterBoundaries.reconcile();
+    }
+
+    @Test
+    public void testBoundariesAreServedFromMemory() {
+        assertThat(gardenFieldFilterBoundaries.getFilterBoundaries().getMinPrice()).isEqualTo(100.0);
+        assertThat(gardenFieldFilterBoundaries.getFilterBoundaries().getMaxPrice()).isEqualTo(901.0);
+
+        verify(gardenFieldRepository, times(1)).getMinPriceForPerMonth();
+    }
+
+    @Test
+    public void testChangeShrinksBoundariesOnNextRead() {
+        when(gardenFieldRepository.getMaxSize()).thenReturn(20.0);
+
+        gardenFieldFilterBoundaries.invalidate();
+
+        assertThat(gardenFieldFilterBoundaries.getFilterBoundaries().getMaxSize()).isEqualTo(20.0);
+        assertThat(gardenFieldFilterBoundaries.getFilterBoundaries().getMaxSize()).isEqualTo(20.0);
+        verify(gardenFieldRepository, times(2)).getMaxSize();
+    }
+}
@@ -0,0 +1,182 @@
+package com.gardle.service;
+
+import com.gardle.config.LuceneIndexServiceBean;
+import com.gardle.config.LuceneIndexingProperties;
+import com.gardle.domain.IndexChangeLogEntry;
+import com.gardle.repository.IndexChangeLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GardenFieldIndexReplicationTest {
+
+    private static final Instant NOW = Instant.parse("2021-01-01T12:00:00Z");
+
+    @Test
+    public void testWatermarkAdvancesOverConsecutiveEntries() {
+        assertThat(GardenFieldIndexReplication.advanceWatermark(10,
+            Arrays.asList(entry(11, NOW), entry(12, NOW), entry(13, NOW)), NOW, new HashSet<>())).isEqualTo(13);
+    }
+
+    @Test
+    public void testWatermarkStopsBeforeRecentGap() {
+        assertThat(GardenFieldIndexReplication.advanceWatermark(10,
+            Arrays.asList(entry(11, NOW), entry(13, NOW)), NOW, new HashSet<>())).isEqualTo(11);
+    }
+
+    @Test
+    public void testWatermarkSkipsExpiredGap() {
+        Instant expired = NOW.minus(GardenFieldIndexReplication.GAP_TIMEOUT).minusSeconds(1);
+        Set<Long> skipped = new HashSet<>();
+        assertThat(GardenFieldIndexReplication.advanceWatermark(10,
+            Arrays.asList(entry(12, expired), entry(14, NOW)), NOW, skipped)).isEqualTo(12);
+        assertThat(skipped).containsExactly(11L);
+    }
+
+    @Test
+    public void testWatermarkWithoutEntries() {
+        assertThat(GardenFieldIndexReplication.advanceWatermark(10, Collections.emptyList(), NOW, new HashSet<>()))
+            .isEqualTo(10);
+    }
+
+    @Test
+    public void testReservedLeasingIndexIsRefreshedBeforeLuceneIndexIsReady() {
+        IndexChangeLogRepository indexChangeLogRepository = mock(IndexChangeLogRepository.class);
+        LuceneIndexServiceBean luceneIndexServiceBean = mock(LuceneIndexServiceBean.class);
+        GardenFieldIndexingQueue gardenFieldIndexingQueue = mock(GardenFieldIndexingQueue.class);
+        ReservedLeasingIndex reservedLeasingIndex = mock(ReservedLeasingIndex.class);
+        LuceneIndexingProperties luceneIndexingProperties = new LuceneIndexingProperties();
+        luceneIndexingProperties.setChangeLogReplication(true);
+        GardenFieldIndexReplication replication = new GardenFieldIndexReplication(indexChangeLogRepository,
+            mock(JdbcTemplate.class), luceneIndexServiceBean, luceneIndexingProperties, gardenFieldIndexingQueue,
+            reservedLeasingIndex, mock(GardenFieldSearchCache.class), mock(GardenFieldFilterBoundaries.class),
+            new SimpleMeterRegistry());
+        when(indexChangeLogRepository.findMaxId()).thenReturn(10L);
+        when(indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class))).thenReturn(
+            Arrays.asList(new IndexChangeLogEntry(11L, 1L, Instant.now()), new IndexChangeLogEntry(12L, 2L, Instant.now()),
+                new IndexChangeLogEntry(13L, 1L, Instant.now())));
+        when(reservedLeasingIndex.isLoaded()).thenReturn(true);
+        replication.initWatermark();
+        assertThat(replication.isReservedLeasingIndexCaughtUp()).isFalse();
+
+        replication.poll();
+
+        assertThat(replication.isReservedLeasingIndexCaughtUp()).isTrue();
+        Map<Long, Long> revisions = new HashMap<>();
+        revisions.put(1L, 13L);
+        revisions.put(2L, 12L);
+        verify(reservedLeasingIndex).refresh(revisions);
+        verifyZeroInteractions(gardenFieldIndexingQueue);
+
+        when(luceneIndexServiceBean.isReady()).thenReturn(true);
+        replication.poll();
+
+        verify(gardenFieldIndexingQueue).enqueue(new LinkedHashSet<>(Arrays.asList(1L, 2L)));
+        verify(indexChangeLogRepository).findByIdGreaterThanOrderByIdAsc(eq(13L), any(Pageable.class));
+        verify(reservedLeasingIndex, times(1)).refresh(anyMap());
+    }
+
+    @Test
+    public void testLagIsSetFromOldestPendingEntryOfPartialBatch() {
+        IndexChangeLogRepository indexChangeLogRepository = mock(IndexChangeLogRepository.class);
+        LuceneIndexServiceBean luceneIndexServiceBean = mock(LuceneIndexServiceBean.class);
+        LuceneIndexingProperties luceneIndexingProperties = new LuceneIndexingProperties();
+        luceneIndexingProperties.setChangeLogReplication(true);
+        GardenFieldIndexReplication replication = new GardenFieldIndexReplication(indexChangeLogRepository,
+            mock(JdbcTemplate.class), luceneIndexServiceBean, luceneIndexingProperties,
+            mock(GardenFieldIndexingQueue.class), mock(ReservedLeasingIndex.class), mock(GardenFieldSearchCache.class),
+            mock(GardenFieldFilterBoundaries.class), new SimpleMeterRegistry());
+        Instant created = Instant.now().minusSeconds(30);
+        when(indexChangeLogRepository.findMaxId()).thenReturn(10L);
+        when(indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class))).thenReturn(
+            Arrays.asList(new IndexChangeLogEntry(11L, 1L, created), new IndexChangeLogEntry(12L, 2L, Instant.now())));
+        when(luceneIndexServiceBean.isReady()).thenReturn(true);
+        replication.initWatermark();
+
+        replication.poll();
+
+        assertThat(replication.getLagSeconds()).isGreaterThanOrEqualTo(30.0);
+
+        replication.poll();
+
+        assertThat(replication.getLagSeconds()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testCatchUpConsumesChangeLogUpToItsEnd() throws InterruptedException {
+        IndexChangeLogRepository indexChangeLogRepository = mock(IndexChangeLogRepository.class);
+        LuceneIndexServiceBean luceneIndexServiceBean = mock(LuceneIndexServiceBean.class);
+        GardenFieldIndexingQueue gardenFieldIndexingQueue = mock(GardenFieldIndexingQueue.class);
+        LuceneIndexingProperties luceneIndexingProperties = new LuceneIndexingProperties();
+        luceneIndexingProperties.setChangeLogReplication(true);
+        GardenFieldIndexReplication replication = new GardenFieldIndexReplication(indexChangeLogRepository,
+            mock(JdbcTemplate.class), luceneIndexServiceBean, luceneIndexingProperties, gardenFieldIndexingQueue,
+            mock(ReservedLeasingIndex.class), mock(GardenFieldSearchCache.class),
+            mock(GardenFieldFilterBoundaries.class), new SimpleMeterRegistry());
+        when(indexChangeLogRepository.findMaxId()).thenReturn(10L, 12L, 14L);
+        when(indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class))).thenReturn(
+            Arrays.asList(new IndexChangeLogEntry(11L, 1L, Instant.now()), new IndexChangeLogEntry(12L, 2L, Instant.now())));
+        //14 is behind a gap of a transaction which did not commit yet
+        when(indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(eq(12L), any(Pageable.class))).thenReturn(
+            Collections.singletonList(new IndexChangeLogEntry(14L, 3L, Instant.now())));
+        when(luceneIndexServiceBean.isReady()).thenReturn(true);
+        replication.initWatermark();
+
+        assertThat(replication.catchUp(Duration.ofSeconds(5))).isTrue();
+        verify(gardenFieldIndexingQueue).enqueue(new LinkedHashSet<>(Arrays.asList(1L, 2L)));
+
+        assertThat(replication.catchUp(Duration.ZERO)).isFalse();
+        verify(gardenFieldIndexingQueue).enqueue(Collections.singleton(3L));
+    }
+
+    @Test
+    public void testLateCommitBehindExpiredGapIsApplied() {
+        IndexChangeLogRepository indexChangeLogRepository = mock(IndexChangeLogRepository.class);
+        LuceneIndexServiceBean luceneIndexServiceBean = mock(LuceneIndexServiceBean.class);
+        GardenFieldIndexingQueue gardenFieldIndexingQueue = mock(GardenFieldIndexingQueue.class);
+        LuceneIndexingProperties luceneIndexingProperties = new LuceneIndexingProperties();
+        luceneIndexingProperties.setChangeLogReplication(true);
+        GardenFieldIndexReplication replication = new GardenFieldIndexReplication(indexChangeLogRepository,
+            mock(JdbcTemplate.class), luceneIndexServiceBean, luceneIndexingProperties, gardenFieldIndexingQueue,
+            mock(ReservedLeasingIndex.class), mock(GardenFieldSearchCache.class),
+            mock(GardenFieldFilterBoundaries.class), new SimpleMeterRegistry());
+        Instant expired = Instant.now().minus(GardenFieldIndexReplication.GAP_TIMEOUT).minusSeconds(1);
+        when(indexChangeLogRepository.findMaxId()).thenReturn(10L);
+        when(indexChangeLogRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class))).thenReturn(
+            Arrays.asList(new IndexChangeLogEntry(11L, 1L, expired), new IndexChangeLogEntry(13L, 2L, expired)));
+        when(luceneIndexServiceBean.isReady()).thenReturn(true);
+        replication.initWatermark();
+
+        replication.poll();
+
+        verify(gardenFieldIndexingQueue).enqueue(new LinkedHashSet<>(Arrays.asList(1L, 2L)));
+        verify(indexChangeLogRepository).findByIdGreaterThanOrderByIdAsc(eq(10L), any(Pageable.class));
+
+        //the transaction of 12 commits after the watermark passed its gap
+        when(indexChangeLogRepository.findAllById(Collections.singleton(12L))).thenReturn(
+            Collections.singletonList(new IndexChangeLogEntry(12L, 3L, expired)));
+        replication.poll();
+
+        verify(gardenFieldIndexingQueue).enqueue(Collections.singleton(3L));
+        verify(indexChangeLogRepository).findByIdGreaterThanOrderByIdAsc(eq(13L), any(Pageable.class));
+
+        replication.poll();
+
+        verify(indexChangeLogRepository, times(1)).findAllById(any());
+        verify(gardenFieldIndexingQueue, times(2)).enqueue(any());
+    }
+
+    private static IndexChangeLogEntry entry(long id, Instant createdDate) {
+        return new IndexChangeLogEntry(id, 1L, createdDate);
+    }
+}
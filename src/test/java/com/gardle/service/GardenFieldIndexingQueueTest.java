@@ -0,0 +1,81 @@
+package com.gardle.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GardenFieldIndexingQueueTest {
+
+    @Test
+    public void testChangesOfSameGardenFieldAreMerged() throws InterruptedException {
+        GardenFieldIndexingQueue.PendingChanges pendingChanges = new GardenFieldIndexingQueue.PendingChanges(10);
+        pendingChanges.offer(1L, deadline());
+        pendingChanges.offer(2L, deadline());
+        pendingChanges.offer(1L, deadline());
+
+        assertThat(pendingChanges.size()).isEqualTo(2);
+        assertThat(pendingChanges.take(10).keySet()).containsExactly(1L, 2L);
+        assertThat(pendingChanges.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testTakeIsLimitedToBatchSize() throws InterruptedException {
+        GardenFieldIndexingQueue.PendingChanges pendingChanges = new GardenFieldIndexingQueue.PendingChanges(10);
+        for (long id = 1; id <= 5; id++) {
+            pendingChanges.offer(id, deadline());
+        }
+
+        Map<Long, Long> batch = pendingChanges.take(3);
+
+        assertThat(batch.keySet()).containsExactly(1L, 2L, 3L);
+        assertThat(pendingChanges.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFullQueueRejectsNewButMergesPendingGardenFields() throws InterruptedException {
+        GardenFieldIndexingQueue.PendingChanges pendingChanges = new GardenFieldIndexingQueue.PendingChanges(2);
+        pendingChanges.offer(1L, deadline());
+        pendingChanges.offer(2L, deadline());
+
+        assertThat(pendingChanges.offer(3L, System.nanoTime())).isFalse();
+        assertThat(pendingChanges.offer(2L, System.nanoTime())).isTrue();
+        assertThat(pendingChanges.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFullQueueAcceptsOnceWorkerTookBatch() throws InterruptedException {
+        GardenFieldIndexingQueue.PendingChanges pendingChanges = new GardenFieldIndexingQueue.PendingChanges(1);
+        pendingChanges.offer(1L, deadline());
+        Thread worker = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                pendingChanges.take(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+
+        assertThat(pendingChanges.offer(2L, deadline())).isTrue();
+        worker.join();
+        assertThat(pendingChanges.contains(2L)).isTrue();
+    }
+
+    @Test
+    public void testDrainedOnceTakenBatchIsApplied() throws InterruptedException {
+        GardenFieldIndexingQueue.PendingChanges pendingChanges = new GardenFieldIndexingQueue.PendingChanges(10);
+        pendingChanges.offer(1L, deadline());
+        pendingChanges.take(10);
+
+        assertThat(pendingChanges.awaitDrained(System.nanoTime())).isFalse();
+        pendingChanges.applied();
+        assertThat(pendingChanges.awaitDrained(System.nanoTime())).isTrue();
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    }
+}
@@ -0,0 +1,101 @@
+package com.gardle.service;
+
+import com.gardle.domain.criteria.GardenFieldFilterCriteria;
+import com.gardle.service.dto.GardenFieldDTO;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GardenFieldSearchCacheTest {
+
+    private GardenFieldSearchCache gardenFieldSearchCache;
+    private AtomicInteger searches;
+
+    @BeforeEach
+    public void setup() {
+        gardenFieldSearchCache = new GardenFieldSearchCache(new JHipsterProperties(), new SimpleMeterRegistry());
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    public void testEquivalentCriteriaHitCache() {
+        GardenFieldFilterCriteria criteria1 = new GardenFieldFilterCriteria();
+        criteria1.setKeywords(" Sonne ");
+        GardenFieldFilterCriteria criteria2 = new GardenFieldFilterCriteria();
+        criteria2.setKeywords("sonne");
+
+        search(criteria1, 0);
+        search(criteria2, 0);
+        assertThat(searches.get()).isEqualTo(1);
+
+        search(criteria2, 1);
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        GardenFieldFilterCriteria criteria = new GardenFieldFilterCriteria();
+        criteria.setWater(true);
+        search(criteria, 0);
+
+        gardenFieldSearchCache.invalidateAll();
+        search(criteria, 0);
+
+        assertThat(searches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReservationOnlyInvalidatesOverlappingLeasingTimes() {
+        GardenFieldFilterCriteria withoutLeasingTime = new GardenFieldFilterCriteria();
+        withoutLeasingTime.setWater(true);
+        GardenFieldFilterCriteria overlapping = new GardenFieldFilterCriteria();
+        overlapping.setLeasingTimeFrom(Instant.parse("2021-01-01T00:00:00Z"));
+        overlapping.setLeasingTimeTo(Instant.parse("2021-04-01T00:00:00Z"));
+        GardenFieldFilterCriteria notOverlapping = new GardenFieldFilterCriteria();
+        notOverlapping.setLeasingTimeFrom(Instant.parse("2021-06-01T00:00:00Z"));
+        notOverlapping.setLeasingTimeTo(Instant.parse("2021-08-01T00:00:00Z"));
+        search(withoutLeasingTime, 0);
+        search(overlapping, 0);
+        search(notOverlapping, 0);
+
+        gardenFieldSearchCache.invalidateLeasingTime(Instant.parse("2021-03-01T00:00:00Z"), Instant.parse("2021-05-01T00:00:00Z"));
+        search(withoutLeasingTime, 0);
+        search(overlapping, 0);
+        search(notOverlapping, 0);
+
+        assertThat(searches.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void testRefreshedReservationsInvalidateAllLeasingTimes() {
+        GardenFieldFilterCriteria withoutLeasingTime = new GardenFieldFilterCriteria();
+        withoutLeasingTime.setWater(true);
+        GardenFieldFilterCriteria withLeasingTime = new GardenFieldFilterCriteria();
+        withLeasingTime.setLeasingTimeFrom(Instant.parse("2021-06-01T00:00:00Z"));
+        search(withoutLeasingTime, 0);
+        search(withLeasingTime, 0);
+
+        gardenFieldSearchCache.invalidateLeasingTimes();
+        search(withoutLeasingTime, 0);
+        search(withLeasingTime, 0);
+
+        assertThat(searches.get()).isEqualTo(3);
+    }
+
+    private Page<GardenFieldDTO> search(GardenFieldFilterCriteria criteria, int page) {
+        return gardenFieldSearchCache.get(PageRequest.of(page, 20), criteria, normalized -> {
+            searches.incrementAndGet();
+            return new PageImpl<>(Collections.emptyList());
+        });
+    }
+}
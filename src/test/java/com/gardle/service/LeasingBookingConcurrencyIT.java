@@ -0,0 +1,234 @@
+package com.gardle.service;
+
+import com.gardle.GardleApp;
+import com.gardle.domain.GardenField;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.User;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.repository.UserRepository;
+import com.gardle.service.dto.leasing.CreatorLeasingDTO;
+import com.gardle.service.dto.leasing.UpdatingLeasingDTO;
+import com.gardle.service.exception.InvalidLeasingStateServiceException;
+import com.gardle.service.exception.LeasingsOverlapServiceException;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Concurrent bookings and answers through {@link LeasingService}, committed like in production, serialized by the
+ * {@link GardenFieldBookingLock}. The advisory lock between nodes is covered by {@link GardenFieldBookingLockIT}.
+ */
+@SpringBootTest(classes = GardleApp.class)
+public class LeasingBookingConcurrencyIT {
+
+    private static final String DEFAULT_IBAN = "AT89370400440532013000";
+    private static final int BOOKINGS = 20;
+    private static final int GARDEN_FIELDS = 8;
+
+    private final Logger log = LoggerFactory.getLogger(LeasingBookingConcurrencyIT.class);
+
+    @Autowired
+    private LeasingService leasingService;
+
+    @Autowired
+    private LeasingRepository leasingRepository;
+
+    @Autowired
+    private GardenFieldRepository gardenFieldRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private PaymentService paymentService;
+
+    private User owner;
+    private User requester;
+
+    @BeforeEach
+    public void init() {
+        owner = saveUser();
+        requester = saveUser();
+        //keeps the first answer within its transaction while the second one is waiting
+        Answer<Void> slowPayment = invocation -> {
+            Thread.sleep(200);
+            return null;
+        };
+        doAnswer(slowPayment).when(paymentService).finalizePayment(any());
+        doAnswer(slowPayment).when(paymentService).cancelPayment(anyString());
+    }
+
+    @Test
+    public void testConcurrentAnswersOfOwnerOnlyOneApplies() throws Exception {
+        GardenField gardenField = saveGardenField();
+        Instant from = Instant.now().plus(30, ChronoUnit.DAYS);
+        Leasing leasing = leasingRepository.saveAndFlush(new Leasing()
+            .from(from)
+            .to(from.plus(10, ChronoUnit.DAYS))
+            .status(LeasingStatus.OPEN)
+            .gardenField(gardenField)
+            .paymentSessionId("session")
+            .user(requester));
+        List<LeasingStatus> answers = new CopyOnWriteArrayList<>();
+        AtomicInteger refused = new AtomicInteger();
+
+        runConcurrently(2, i -> {
+            LeasingStatus answer = i == 0 ? LeasingStatus.RESERVED : LeasingStatus.REJECTED;
+            UpdatingLeasingDTO updatingLeasingDTO = new UpdatingLeasingDTO();
+            updatingLeasingDTO.setId(leasing.getId());
+            updatingLeasingDTO.setGardenFieldId(gardenField.getId());
+            updatingLeasingDTO.setStatus(answer);
+            SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(owner.getLogin(), null, Collections.emptyList()));
+            try {
+                leasingService.updateLeasing(updatingLeasingDTO);
+                answers.add(answer);
+            } catch (InvalidLeasingStateServiceException e) {
+                refused.incrementAndGet();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        });
+
+        assertThat(answers).hasSize(1);
+        assertThat(refused.get()).isEqualTo(1);
+        assertThat(leasingRepository.findById(leasing.getId()).get().getStatus()).isEqualTo(answers.get(0));
+        if (answers.get(0) == LeasingStatus.RESERVED) {
+            verify(paymentService).finalizePayment(any());
+            verify(paymentService, never()).cancelPayment(anyString());
+        } else {
+            verify(paymentService).cancelPayment("session");
+            verify(paymentService, never()).finalizePayment(any());
+        }
+    }
+
+    @Test
+    public void testConcurrentBookingsOfSameGardenFieldOnlyOneIsCreated() throws Exception {
+        GardenField gardenField = saveGardenField();
+        AtomicInteger rejected = new AtomicInteger();
+
+        long started = System.nanoTime();
+        runConcurrently(BOOKINGS, i -> {
+            try {
+                leasingService.createLeasing(createBooking(gardenField), "session" + i);
+            } catch (LeasingsOverlapServiceException e) {
+                rejected.incrementAndGet();
+            }
+        });
+        long elapsed = System.nanoTime() - started;
+
+        assertThat(rejected.get()).isEqualTo(BOOKINGS - 1);
+        assertThat(leasingRepository.findAll()).filteredOn(leasing -> leasing.getGardenField().getId()
+            .equals(gardenField.getId())).hasSize(1);
+        log.info("{} bookings of one gardenfield in {}ms", BOOKINGS, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    @Test
+    public void testConcurrentBookingsOfDifferentGardenFieldsAreAllCreated() throws Exception {
+        List<GardenField> gardenFields = new ArrayList<>();
+        for (int i = 0; i < GARDEN_FIELDS; i++) {
+            gardenFields.add(saveGardenField());
+        }
+        AtomicInteger created = new AtomicInteger();
+
+        long started = System.nanoTime();
+        runConcurrently(GARDEN_FIELDS, i -> {
+            leasingService.createLeasing(createBooking(gardenFields.get(i)), "session" + i);
+            created.incrementAndGet();
+        });
+        long elapsed = System.nanoTime() - started;
+
+        assertThat(created.get()).isEqualTo(GARDEN_FIELDS);
+        log.info("{} bookings of different gardenfields in {}ms", GARDEN_FIELDS,
+            TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private interface Task {
+        void run(int i) throws Exception;
+    }
+
+    private void runConcurrently(int tasks, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            final int taskNumber = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(taskNumber);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CreatorLeasingDTO createBooking(GardenField gardenField) {
+        Instant from = Instant.now().plus(30, ChronoUnit.DAYS);
+        CreatorLeasingDTO creatorLeasingDTO = new CreatorLeasingDTO();
+        creatorLeasingDTO.setFrom(from);
+        creatorLeasingDTO.setTo(from.plus(10, ChronoUnit.DAYS));
+        creatorLeasingDTO.setGardenFieldId(gardenField.getId());
+        creatorLeasingDTO.setUserId(requester.getId());
+        return creatorLeasingDTO;
+    }
+
+    private GardenField saveGardenField() {
+        GardenField gardenField = new GardenField();
+        gardenField.setName("testGarden");
+        gardenField.setSizeInM2(10.0);
+        gardenField.setPricePerM2(3.0);
+        gardenField.setLatitude(1.0);
+        gardenField.setLongitude(2.0);
+        gardenField.setCity("testCity");
+        gardenField.setRoofed(false);
+        gardenField.setGlassHouse(false);
+        gardenField.setHigh(true);
+        gardenField.setWater(true);
+        gardenField.setElectricity(false);
+        gardenField.setOwner(owner);
+        return gardenFieldRepository.saveAndFlush(gardenField);
+    }
+
+    private User saveUser() {
+        String login = RandomStringUtils.randomAlphabetic(10).toLowerCase();
+        User user = new User();
+        user.setLogin(login);
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(login + "@localhost");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setBankAccountIBAN(DEFAULT_IBAN);
+        return userRepository.saveAndFlush(user);
+    }
+}
@@ -0,0 +1,186 @@
+package com.gardle.service;
+
+import com.gardle.GardleApp;
+import com.gardle.domain.GardenField;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.User;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.repository.UserRepository;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * The job commits its chunks and releases the payments afterwards, so the tests commit their data as well. The small
+ * chunk size spreads the leasings over several chunks, the retry delay of 0 lets the next run retry failed releases.
+ */
+@SpringBootTest(classes = GardleApp.class,
+    properties = {"leasing.expiry.chunk-size=2", "leasing.expiry.payment-retry-delay-minutes=0"})
+public class LeasingExpiryJobIT {
+
+    private static final String DEFAULT_IBAN = "AT89370400440532013000";
+
+    @Autowired
+    private LeasingExpiryJob leasingExpiryJob;
+
+    @Autowired
+    private LeasingRepository leasingRepository;
+
+    @Autowired
+    private GardenFieldRepository gardenFieldRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private PaymentService paymentService;
+
+    private GardenField gardenField;
+    private User requester;
+    private String sessionPrefix;
+
+    @BeforeEach
+    public void init() {
+        User owner = saveUser();
+        requester = saveUser();
+        sessionPrefix = RandomStringUtils.randomAlphabetic(8);
+        gardenField = new GardenField();
+        gardenField.setName("testGarden");
+        gardenField.setSizeInM2(10.0);
+        gardenField.setPricePerM2(3.0);
+        gardenField.setLatitude(1.0);
+        gardenField.setLongitude(2.0);
+        gardenField.setCity("testCity");
+        gardenField.setRoofed(false);
+        gardenField.setGlassHouse(false);
+        gardenField.setHigh(true);
+        gardenField.setWater(true);
+        gardenField.setElectricity(false);
+        gardenField.setOwner(owner);
+        gardenFieldRepository.saveAndFlush(gardenField);
+    }
+
+    @Test
+    public void testExpiredOpenLeasingsAreCancelled() {
+        Leasing started = saveLeasing(-3, LeasingStatus.OPEN, "started");
+        Leasing unanswered = saveLeasing(3, LeasingStatus.OPEN, "unanswered");
+        Leasing answerable = saveLeasing(100, LeasingStatus.OPEN, "answerable");
+        Leasing reserved = saveLeasing(3, LeasingStatus.RESERVED, "reserved");
+
+        leasingExpiryJob.expireOpenLeasings();
+
+        assertThat(leasingRepository.findById(started.getId()).get().getStatus()).isEqualTo(LeasingStatus.CANCELLED);
+        assertThat(leasingRepository.findById(unanswered.getId()).get().getStatus()).isEqualTo(LeasingStatus.CANCELLED);
+        assertThat(leasingRepository.findById(answerable.getId()).get().getStatus()).isEqualTo(LeasingStatus.OPEN);
+        assertThat(leasingRepository.findById(reserved.getId()).get().getStatus()).isEqualTo(LeasingStatus.RESERVED);
+        verify(paymentService, timeout(5000)).cancelPayment(sessionPrefix + "started");
+        verify(paymentService, timeout(5000)).cancelPayment(sessionPrefix + "unanswered");
+        verify(paymentService, after(100).never()).cancelPayment(sessionPrefix + "answerable");
+        verify(paymentService, never()).cancelPayment(sessionPrefix + "reserved");
+    }
+
+    @Test
+    public void testExpiredOpenLeasingsOfSeveralChunksAreCancelledAndReleased() {
+        List<Leasing> expired = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expired.add(saveLeasing(i + 1, LeasingStatus.OPEN, "expired" + i));
+        }
+
+        leasingExpiryJob.expireOpenLeasings();
+
+        for (int i = 0; i < expired.size(); i++) {
+            verify(paymentService, timeout(5000)).cancelPayment(sessionPrefix + "expired" + i);
+        }
+        for (Leasing leasing : expired) {
+            awaitPaymentReleaseAttempts(leasing, null);
+            assertThat(leasingRepository.findById(leasing.getId()).get().getStatus())
+                .isEqualTo(LeasingStatus.CANCELLED);
+        }
+    }
+
+    @Test
+    public void testFailedPaymentCancellationDoesNotStopTheJob() {
+        doThrow(new RuntimeException("stripe unavailable")).when(paymentService).cancelPayment(sessionPrefix + "first");
+        Leasing first = saveLeasing(3, LeasingStatus.OPEN, "first");
+        Leasing second = saveLeasing(4, LeasingStatus.OPEN, "second");
+
+        leasingExpiryJob.expireOpenLeasings();
+
+        verify(paymentService, timeout(5000)).cancelPayment(sessionPrefix + "second");
+        assertThat(leasingRepository.findById(second.getId()).get().getStatus()).isEqualTo(LeasingStatus.CANCELLED);
+        awaitPaymentReleaseAttempts(second, null);
+        awaitPaymentReleaseAttempts(first, 1);
+    }
+
+    @Test
+    public void testFailedPaymentCancellationIsRetriedByNextRun() {
+        doThrow(new RuntimeException("stripe unavailable")).doNothing()
+            .when(paymentService).cancelPayment(sessionPrefix + "retried");
+        Leasing retried = saveLeasing(3, LeasingStatus.OPEN, "retried");
+
+        leasingExpiryJob.expireOpenLeasings();
+        verify(paymentService, timeout(5000)).cancelPayment(sessionPrefix + "retried");
+        awaitPaymentReleaseAttempts(retried, 1);
+
+        leasingExpiryJob.expireOpenLeasings();
+        verify(paymentService, timeout(5000).times(2)).cancelPayment(sessionPrefix + "retried");
+        awaitPaymentReleaseAttempts(retried, null);
+    }
+
+    /**
+     * The marker is cleared by the worker after the payment was cancelled, so it is polled.
+     */
+    private void awaitPaymentReleaseAttempts(Leasing leasing, Integer expected) {
+        long deadline = System.currentTimeMillis() + 5000;
+        Integer attempts = leasingRepository.findById(leasing.getId()).get().getPaymentReleaseAttempts();
+        while (!Objects.equals(attempts, expected) && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            attempts = leasingRepository.findById(leasing.getId()).get().getPaymentReleaseAttempts();
+        }
+        assertThat(attempts).isEqualTo(expected);
+    }
+
+    private Leasing saveLeasing(int startInDays, LeasingStatus status, String paymentSessionId) {
+        Instant from = Instant.now().plus(startInDays, ChronoUnit.DAYS);
+        return leasingRepository.saveAndFlush(new Leasing()
+            .from(from)
+            .to(from.plus(10, ChronoUnit.DAYS))
+            .status(status)
+            .gardenField(gardenField)
+            .paymentSessionId(sessionPrefix + paymentSessionId)
+            .user(requester));
+    }
+
+    private User saveUser() {
+        String login = RandomStringUtils.randomAlphabetic(10).toLowerCase();
+        User user = new User();
+        user.setLogin(login);
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(login + "@localhost");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setBankAccountIBAN(DEFAULT_IBAN);
+        return userRepository.saveAndFlush(user);
+    }
+}
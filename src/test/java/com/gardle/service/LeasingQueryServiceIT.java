@@ -0,0 +1,290 @@
+package com.gardle.service;
+
+import com.gardle.GardleApp;
+import com.gardle.domain.GardenField;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.Message;
+import com.gardle.domain.User;
+import com.gardle.domain.enumeration.LeasingState;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.domain.enumeration.MessageType;
+import com.gardle.service.dto.leasing.LeasingDTO;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The status, date range and state filters of the leasing list queries, alone and combined, and their statements,
+ * which have to be the same for every page size.
+ */
+@SpringBootTest(classes = GardleApp.class)
+public class LeasingQueryServiceIT {
+
+    private static final int LEASINGS = 25;
+    private static final String DEFAULT_IBAN = "AT89370400440532013000";
+
+    @Autowired
+    private LeasingQueryService leasingQueryService;
+
+    @Autowired
+    private EntityManager em;
+
+    private Statistics statistics;
+    private boolean statisticsEnabled;
+
+    private User owner;
+    private User requester;
+    private GardenField gardenField;
+
+    private Leasing past;
+    private Leasing ongoing;
+    private Leasing future;
+    private Leasing rejected;
+    private Leasing cancelled;
+
+    @BeforeEach
+    public void init() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    public void reset() {
+        statistics.setStatisticsEnabled(statisticsEnabled);
+    }
+
+    @Test
+    @Transactional
+    public void testStatementsPerPageDoNotDependOnPageSize() {
+        createLeasings();
+
+        long forOwner = countStatements(() -> leasingQueryService.findByOwner(PageRequest.of(0, 1), owner,
+            null, null, null, null));
+        assertThat(countStatements(() -> leasingQueryService.findByOwner(PageRequest.of(0, 5), owner,
+            null, null, null, null))).isEqualTo(forOwner);
+        assertThat(countStatements(() -> leasingQueryService.findByOwner(PageRequest.of(0, 20), owner,
+            null, null, null, null))).isEqualTo(forOwner);
+
+        long forUser = countStatements(() -> leasingQueryService.findByUser(PageRequest.of(0, 1), requester,
+            null, null, null, null));
+        assertThat(countStatements(() -> leasingQueryService.findByUser(PageRequest.of(0, 20), requester,
+            null, null, null, null))).isEqualTo(forUser);
+
+        long forGardenField = countStatements(() -> leasingQueryService.findByGardenField(PageRequest.of(0, 1),
+            gardenField, null, null, null, null));
+        assertThat(countStatements(() -> leasingQueryService.findByGardenField(PageRequest.of(0, 20),
+            gardenField, null, null, null, null))).isEqualTo(forGardenField);
+    }
+
+    @Test
+    @Transactional
+    public void testPageContainsMessagesAndUsers() {
+        createLeasings();
+
+        Page<LeasingDTO> page = leasingQueryService.findByOwner(PageRequest.of(0, 20), owner, null, null, null, null);
+
+        assertThat(page.getTotalElements()).isEqualTo(LEASINGS);
+        assertThat(page.getContent()).hasSize(20).allSatisfy(leasing -> {
+            assertThat(leasing.getUser().getLogin()).isEqualTo(requester.getLogin());
+            assertThat(leasing.getGardenField().getName()).isEqualTo(gardenField.getName());
+            assertThat(leasing.getMessages()).hasSize(2)
+                .allSatisfy(message -> assertThat(message.getUserTo().getLogin()).isEqualTo(owner.getLogin()));
+        });
+    }
+
+    @Test
+    @Transactional
+    public void testStatusFilter() {
+        createLeasingsOfEveryStatusAndState();
+
+        assertThat(findByGardenField(Collections.singletonList(LeasingStatus.OPEN), null, null, null))
+            .containsExactly(future);
+        assertThat(findByGardenField(Collections.singletonList(LeasingStatus.RESERVED), null, null, null))
+            .containsExactlyInAnyOrder(past, ongoing);
+        assertThat(findByGardenField(Collections.singletonList(LeasingStatus.REJECTED), null, null, null))
+            .containsExactly(rejected);
+        assertThat(findByGardenField(Collections.singletonList(LeasingStatus.CANCELLED), null, null, null))
+            .containsExactly(cancelled);
+        assertThat(findByGardenField(Arrays.asList(LeasingStatus.REJECTED, LeasingStatus.CANCELLED), null, null, null))
+            .containsExactlyInAnyOrder(rejected, cancelled);
+        assertThat(findByGardenField(Collections.emptyList(), null, null, null))
+            .containsExactlyInAnyOrder(past, ongoing, future, rejected, cancelled);
+    }
+
+    @Test
+    @Transactional
+    public void testDateRangeFilter() {
+        createLeasingsOfEveryStatusAndState();
+
+        //from and to are inclusive
+        assertThat(findByGardenField(null, future.getFrom(), null, null))
+            .containsExactlyInAnyOrder(future, rejected, cancelled);
+        assertThat(findByGardenField(null, null, ongoing.getTo(), null))
+            .containsExactlyInAnyOrder(past, ongoing);
+        assertThat(findByGardenField(null, ongoing.getFrom(), rejected.getTo(), null))
+            .containsExactlyInAnyOrder(ongoing, future, rejected);
+        assertThat(findByGardenField(null, ongoing.getFrom().plusSeconds(1), ongoing.getTo(), null)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void testStateFilter() {
+        createLeasingsOfEveryStatusAndState();
+
+        assertThat(findByGardenField(null, null, null, LeasingState.PAST)).containsExactly(past);
+        assertThat(findByGardenField(null, null, null, LeasingState.ONGOING)).containsExactly(ongoing);
+        assertThat(findByGardenField(null, null, null, LeasingState.FUTURE))
+            .containsExactlyInAnyOrder(future, rejected, cancelled);
+    }
+
+    @Test
+    @Transactional
+    public void testCombinedFilters() {
+        createLeasingsOfEveryStatusAndState();
+        List<LeasingStatus> answered = Arrays.asList(LeasingStatus.RESERVED, LeasingStatus.REJECTED);
+
+        assertThat(findByGardenField(answered, null, null, LeasingState.FUTURE)).containsExactly(rejected);
+        assertThat(findByGardenField(answered, past.getFrom(), ongoing.getTo(), null))
+            .containsExactlyInAnyOrder(past, ongoing);
+        assertThat(findByGardenField(answered, past.getFrom(), rejected.getTo(), LeasingState.ONGOING))
+            .containsExactly(ongoing);
+        assertThat(findByGardenField(Collections.singletonList(LeasingStatus.OPEN), rejected.getFrom(), null,
+            LeasingState.FUTURE)).isEmpty();
+
+        //the same filters for the leasings of the requester and the ones of the owner
+        assertThat(leasingQueryService.findByUser(PageRequest.of(0, 20), requester, answered, past.getFrom(),
+            rejected.getTo(), LeasingState.ONGOING).getContent()).extracting(LeasingDTO::getId)
+            .containsExactly(ongoing.getId());
+        assertThat(leasingQueryService.findByOwner(PageRequest.of(0, 20), owner, answered, null, null,
+            LeasingState.FUTURE).getContent()).extracting(LeasingDTO::getId).containsExactly(rejected.getId());
+        assertThat(leasingQueryService.findByOwner(PageRequest.of(0, 20), requester, answered, null, null,
+            null).getContent()).isEmpty();
+    }
+
+    private List<Leasing> findByGardenField(@Nullable List<LeasingStatus> leasingStatusList, @Nullable Instant from,
+                                            @Nullable Instant to, @Nullable LeasingState state) {
+        List<Long> ids = leasingQueryService.findByGardenField(PageRequest.of(0, 20), gardenField, leasingStatusList,
+            from, to, state).getContent().stream().map(LeasingDTO::getId).collect(Collectors.toList());
+        return Stream.of(past, ongoing, future, rejected, cancelled)
+            .filter(leasing -> ids.contains(leasing.getId()))
+            .collect(Collectors.toList());
+    }
+
+    private void createLeasingsOfEveryStatusAndState() {
+        owner = createUser("owner");
+        requester = createUser("requester");
+        gardenField = createGardenField();
+        Instant now = Instant.now();
+        past = createLeasing(now.minus(30, ChronoUnit.DAYS), LeasingStatus.RESERVED);
+        ongoing = createLeasing(now.minus(3, ChronoUnit.DAYS), LeasingStatus.RESERVED);
+        future = createLeasing(now.plus(100, ChronoUnit.DAYS), LeasingStatus.OPEN);
+        rejected = createLeasing(now.plus(200, ChronoUnit.DAYS), LeasingStatus.REJECTED);
+        cancelled = createLeasing(now.plus(300, ChronoUnit.DAYS), LeasingStatus.CANCELLED);
+        em.flush();
+    }
+
+    private Leasing createLeasing(Instant from, LeasingStatus status) {
+        Leasing leasing = new Leasing()
+            .from(from)
+            .to(from.plus(7, ChronoUnit.DAYS))
+            .status(status)
+            .gardenField(gardenField)
+            .paymentSessionId("test")
+            .user(requester);
+        em.persist(leasing);
+        return leasing;
+    }
+
+    /**
+     * Starts with an empty persistence context, like every request does.
+     */
+    private long countStatements(Supplier<Page<LeasingDTO>> query) {
+        em.clear();
+        statistics.clear();
+        Page<LeasingDTO> page = query.get();
+        assertThat(page.getContent()).isNotEmpty();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void createLeasings() {
+        owner = createUser("owner");
+        requester = createUser("requester");
+        gardenField = createGardenField();
+        for (int i = 0; i < LEASINGS; i++) {
+            Instant from = Instant.now().plus(100 + 10 * i, ChronoUnit.DAYS);
+            Leasing leasing = new Leasing()
+                .from(from)
+                .to(from.plus(7, ChronoUnit.DAYS))
+                .status(LeasingStatus.OPEN)
+                .gardenField(gardenField)
+                .paymentSessionId("test")
+                .user(requester);
+            em.persist(leasing);
+            UUID thread = UUID.randomUUID();
+            for (int j = 0; j < 2; j++) {
+                Message message = new Message().content("message " + j).type(MessageType.USER);
+                message.setUserFrom(requester);
+                message.setUserTo(owner);
+                message.setThread(thread);
+                message.setOpened(false);
+                em.persist(message);
+                leasing.addMessage(message);
+            }
+        }
+        em.flush();
+    }
+
+    private GardenField createGardenField() {
+        GardenField gardenField = new GardenField();
+        gardenField.setName("testGarden");
+        gardenField.setSizeInM2(10.0);
+        gardenField.setPricePerM2(3.0);
+        gardenField.setLatitude(1.0);
+        gardenField.setLongitude(2.0);
+        gardenField.setCity("testCity");
+        gardenField.setRoofed(false);
+        gardenField.setGlassHouse(false);
+        gardenField.setHigh(true);
+        gardenField.setWater(true);
+        gardenField.setElectricity(false);
+        gardenField.setOwner(owner);
+        em.persist(gardenField);
+        return gardenField;
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(login + "@localhost");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setBankAccountIBAN(DEFAULT_IBAN);
+        em.persist(user);
+        return user;
+    }
+}
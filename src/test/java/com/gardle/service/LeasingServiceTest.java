@@ -9,6 +9,7 @@ import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.UserRepository;
 import com.gardle.service.dto.SimpleGardenFieldDTO;
 import com.gardle.service.dto.SimpleUserDTO;
+import com.gardle.service.dto.leasing.AvailabilityCalendarDTO;
 import com.gardle.service.dto.leasing.CreatorLeasingDTO;
 import com.gardle.service.dto.leasing.LeasingDTO;
 import com.gardle.service.dto.leasing.UpdatingLeasingDTO;
@@ -18,9 +19,11 @@ import com.gardle.service.mapper.LeasingMapper;
 import com.gardle.service.mapper.UpdatingLeasingMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
@@ -65,6 +68,10 @@ public class LeasingServiceTest {
     private UpdatingLeasingDTO updatingLeasingDTO;
     @MockBean
     private PaymentService paymentService;
+    @SpyBean
+    private GardenFieldBookingLock gardenFieldBookingLock;
+    @SpyBean
+    private ReservedLeasingIndex reservedLeasingIndex;
 
     @BeforeEach
     public void init() {
@@ -123,12 +130,39 @@ public class LeasingServiceTest {
 
     @Test
     public void testCreateJustLeasingsWithoutOverlaps() {
+        when(leasingRepository.existsOpenOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(true);
+        assertThrows(LeasingsOverlapServiceException.class, () -> leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID));
+    }
+
+    @Test
+    public void testCreateJustLeasingsWithoutReservedOverlaps() {
+        doReturn(true).when(reservedLeasingIndex).isReservedBetween(gardenField.getId(), leasing.getFrom(), leasing.getTo());
+        assertThrows(LeasingsOverlapServiceException.class, () -> leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID));
+        verify(leasingRepository, never()).findAllOverlapping(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testCreateChecksOverlapsInDatabaseWhileIndexIsLoading() {
+        doReturn(false).when(reservedLeasingIndex).isLoaded();
         List<Leasing> overlappings = new ArrayList<>();
         overlappings.add(new Leasing());
         when(leasingRepository.findAllOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(overlappings);
         assertThrows(LeasingsOverlapServiceException.class, () -> leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID));
     }
 
+    @Test
+    public void testAvailabilityCalendarOfIndexedGardenFieldIsServedFromIndex() {
+        //not in the database, which would fail with not found
+        Long gardenFieldId = Long.MAX_VALUE;
+        doReturn(true).when(reservedLeasingIndex).isLoaded();
+        doReturn(true).when(reservedLeasingIndex).contains(gardenFieldId);
+
+        AvailabilityCalendarDTO calendar = leasingService.getAvailabilityCalendar(gardenFieldId);
+
+        assertThat(calendar.getRevision(), is(0L));
+        verify(leasingRepository, never()).findLeasedDateRangesByFromAndTo(any(), any(), any(), any());
+    }
+
     @Test
     public void testCreateJustInSpecificTimePeriodAllowed() {
         leasing.setFrom(Instant.now().plus(13, ChronoUnit.DAYS));
@@ -148,35 +182,54 @@ public class LeasingServiceTest {
         leasing.setFrom(Instant.now().plus(15, ChronoUnit.DAYS));
         leasing.setTo(leasing.getFrom().plus(8, ChronoUnit.DAYS));
 
-        when(leasingRepository.findAllOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(new ArrayList<>());
+        when(leasingRepository.existsOpenOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(false);
         when(leasingRepository.save(leasing)).thenReturn(leasing);
         assertThat(leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID), is(leasingDTO));
     }
 
     @Test
     public void testCreateLeasingSuccessfully() {
-        when(leasingRepository.findAllOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(new ArrayList<>());
+        when(leasingRepository.existsOpenOverlapping(gardenField, requester, leasing.getFrom(), leasing.getTo())).thenReturn(false);
         when(leasingRepository.save(leasing)).thenReturn(leasing);
         assertThat(leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID), is(leasingDTO));
     }
 
     @Test
     public void testUpdateJustExistingLeasing() {
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.empty());
+        mockCurrentLeasing(null);
         assertThrows(LeasingNotFoundServiceException.class, () -> leasingService.updateLeasing(updatingLeasingDTO));
     }
 
+    @Test
+    public void testUpdateLoadsLeasingAfterLockingGardenField() {
+        when(securityHelperService.loggedInUserIsOwnerOfGardenField(gardenField.getId())).thenReturn(true);
+        leasing.setStatus(LeasingStatus.RESERVED);
+        mockCurrentLeasing(leasing);
+        Leasing newLeasing = new Leasing();
+        newLeasing.setStatus(LeasingStatus.REJECTED);
+        when(updatingLeasingMapper.toEntity(updatingLeasingDTO)).thenReturn(newLeasing);
+
+        assertThrows(InvalidLeasingStateServiceException.class, () -> leasingService.updateLeasing(updatingLeasingDTO));
+
+        InOrder inOrder = inOrder(leasingRepository, gardenFieldBookingLock);
+        inOrder.verify(leasingRepository).findGardenFieldIdById(leasing.getId());
+        inOrder.verify(gardenFieldBookingLock).lock(gardenField.getId());
+        inOrder.verify(leasingRepository).findByIdForUpdate(leasing.getId());
+        verify(leasingRepository, never()).findById(any());
+        verifyZeroInteractions(paymentService);
+    }
+
     @Test
     public void testUpdateJustInSpecificTimePeriodAllowed() {
         leasing.setFrom(Instant.now().plus(13, ChronoUnit.DAYS));
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         assertThrows(LeasingUpdateNotAllowedServiceException.class, () -> leasingService.updateLeasing(updatingLeasingDTO));
     }
 
     @Test
     public void testUpdateOwnerWantToChangeStatusToOpen() {
         leasing.setStatus(LeasingStatus.RESERVED);
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         Leasing newLeasing = new Leasing();
         newLeasing.setStatus(LeasingStatus.OPEN);
         when(updatingLeasingMapper.toEntity(updatingLeasingDTO)).thenReturn(newLeasing);
@@ -205,7 +258,7 @@ public class LeasingServiceTest {
         newUpdatingLeasingDTO.setStatus(LeasingStatus.RESERVED);
         newUpdatingLeasingDTO.setGardenFieldId(simpleGardenField.getId());
 
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         when(updatingLeasingMapper.toEntity(newUpdatingLeasingDTO)).thenReturn(newLeasing);
         when(leasingMapper.toDto(newLeasing)).thenReturn(newLeasingDTO);
         when(leasingRepository.save(newLeasing)).thenReturn(newLeasing);
@@ -235,7 +288,7 @@ public class LeasingServiceTest {
         newUpdatingLeasingDTO.setStatus(LeasingStatus.REJECTED);
         newUpdatingLeasingDTO.setGardenFieldId(simpleGardenField.getId());
 
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         when(updatingLeasingMapper.toEntity(newUpdatingLeasingDTO)).thenReturn(newLeasing);
         when(leasingMapper.toDto(newLeasing)).thenReturn(newLeasingDTO);
         when(leasingRepository.save(newLeasing)).thenReturn(newLeasing);
@@ -246,7 +299,7 @@ public class LeasingServiceTest {
     @Test
     public void testUpdateLeasingByRequesterNotAuthorizedUser() {
         doThrow(new MissingPermissionServiceException()).when(securityHelperService).checkPermission(requester.getId());
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         assertThrows(MissingPermissionServiceException.class, () -> leasingService.updateLeasing(updatingLeasingDTO));
     }
 
@@ -256,7 +309,7 @@ public class LeasingServiceTest {
         when(securityHelperService.getLoggedInUser()).thenReturn(requester);
 
         leasing.setStatus(LeasingStatus.OPEN);
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         Leasing newLeasing = new Leasing();
         newLeasing.setStatus(LeasingStatus.RESERVED);
         when(updatingLeasingMapper.toEntity(updatingLeasingDTO)).thenReturn(newLeasing);
@@ -269,7 +322,7 @@ public class LeasingServiceTest {
         when(securityHelperService.getLoggedInUser()).thenReturn(requester);
 
         leasing.setStatus(LeasingStatus.CANCELLED);
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         Leasing newLeasing = new Leasing();
         newLeasing.setStatus(LeasingStatus.OPEN);
         when(updatingLeasingMapper.toEntity(updatingLeasingDTO)).thenReturn(newLeasing);
@@ -299,7 +352,7 @@ public class LeasingServiceTest {
         newUpdatingLeasingDTO.setStatus(LeasingStatus.CANCELLED);
         newUpdatingLeasingDTO.setGardenFieldId(simpleGardenField.getId());
 
-        when(leasingRepository.findById(leasing.getId())).thenReturn(Optional.of(leasing));
+        mockCurrentLeasing(leasing);
         when(updatingLeasingMapper.toEntity(newUpdatingLeasingDTO)).thenReturn(newLeasing);
         when(leasingMapper.toDto(newLeasing)).thenReturn(newLeasingDTO);
         when(leasingRepository.save(newLeasing)).thenReturn(newLeasing);
@@ -307,4 +360,9 @@ public class LeasingServiceTest {
         verify(paymentService, times(1)).cancelPayment(leasing.getPaymentSessionId());
     }
 
+    private void mockCurrentLeasing(Leasing currentLeasing) {
+        when(leasingRepository.findGardenFieldIdById(leasing.getId()))
+            .thenReturn(Optional.ofNullable(currentLeasing).map(current -> current.getGardenField().getId()));
+        when(leasingRepository.findByIdForUpdate(leasing.getId())).thenReturn(Optional.ofNullable(currentLeasing));
+    }
 }
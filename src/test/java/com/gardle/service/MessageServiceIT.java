@@ -9,15 +9,26 @@ import com.gardle.domain.enumeration.MessageType;
 import com.gardle.repository.GardenFieldRepository;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.MessageRepository;
+import com.gardle.repository.UnreadMessageCounterRepository;
 import com.gardle.repository.UserRepository;
 import com.gardle.service.dto.MessageDTO;
+import com.gardle.service.dto.SimpleUserDTO;
+import com.gardle.service.dto.UnreadCountDTO;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,9 +48,22 @@ public class MessageServiceIT {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private UnreadMessageCounterRepository unreadMessageCounterRepository;
+
     @Autowired
     private LeasingRepository leasingRepository;
 
+    @Autowired
+    private UnreadMessageCounterService unreadMessageCounterService;
+
+    @Autowired
+    @Qualifier("brokerChannel")
+    private MessageChannel brokerChannel;
+
+    @Autowired
+    private EntityManager entityManager;
+
     private static final String DEFAULT_LOGIN = "johndoe";
     private static final String DEFAULT_EMAIL = "johndoe@localhost";
     private static final String DEFAULT_FIRSTNAME = "john";
@@ -217,4 +241,74 @@ public class MessageServiceIT {
         assertThat(messagesForRequesterAfterCreation).isEqualTo(messagesForRequesterBeforeCreation +1);
         assertThat(notifDTO.getThread()).isEqualByComparingTo(notif2DTO.getThread());
     }
+
+    @Test
+    @Transactional
+    @WithMockUser(DEFAULT_LOGIN)
+    public void testUnreadCounterOfNotifications() {
+        leasing.setStatus(LeasingStatus.OPEN);
+        leasingRepository.saveAndFlush(leasing);
+        messageService.createLeasingNotification(leasing);
+        leasing.setStatus(LeasingStatus.CANCELLED);
+        leasingRepository.saveAndFlush(leasing);
+        messageService.createLeasingNotification(leasing);
+
+        assertThat(unreadMessageCounterRepository.findById(owner.getId())).hasValueSatisfying(counter -> {
+            assertThat(counter.getUnread()).isEqualTo(2);
+            assertThat(counter.getRevision()).isEqualTo(1);
+        });
+
+        messageService.updateAllSystemNotificationsToOpenedForLoggedInUser();
+
+        assertThat(unreadMessageCounterRepository.findById(owner.getId())).hasValueSatisfying(counter -> {
+            assertThat(counter.getUnread()).isZero();
+            assertThat(counter.getRevision()).isEqualTo(2);
+        });
+        assertThat(unreadMessageCounterRepository.findById(requester.getId())).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(USER2_LOGIN)
+    public void testUnreadCounterOfUserMessages() {
+        SimpleUserDTO from = new SimpleUserDTO();
+        from.setId(requester.getId());
+        SimpleUserDTO to = new SimpleUserDTO();
+        to.setId(owner.getId());
+        MessageDTO message = new MessageDTO();
+        message.setContent("Hello");
+        message.setUserFrom(from);
+        message.setUserTo(to);
+        messageService.save(message);
+        messageService.save(message);
+
+        // counted like the unread notifications list, one entry per thread
+        int unreadNotifications = messageRepository.getUnreadNotificationsForUser(owner).size();
+        assertThat(unreadMessageCounterRepository.findById(owner.getId())).hasValueSatisfying(counter ->
+            assertThat(counter.getUnread()).isEqualTo(unreadNotifications));
+        assertThat(unreadMessageCounterRepository.findById(requester.getId())).hasValueSatisfying(counter ->
+            assertThat(counter.getUnread()).isZero());
+    }
+
+    @Test
+    @Transactional
+    public void testUnreadCountIsEvictedByOtherNode() {
+        UnreadCountDTO created = unreadMessageCounterService.getUnreadCount(owner.getId());
+        assertThat(created.getRevision()).isZero();
+        assertThat(unreadMessageCounterService.getUnreadCount(owner.getId()).getRevision()).isZero();
+        // committed by another node, which relays the eviction
+        unreadMessageCounterRepository.setUnread(owner.getId(), 1);
+        entityManager.clear();
+
+        assertThat(unreadMessageCounterService.getUnreadCount(owner.getId()).getRevision()).isZero();
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(UnreadMessageCounterService.EVICTION_DESTINATION);
+        brokerChannel.send(MessageBuilder.createMessage(String.valueOf(owner.getId()).getBytes(StandardCharsets.UTF_8),
+            accessor.getMessageHeaders()));
+
+        UnreadCountDTO evicted = unreadMessageCounterService.getUnreadCount(owner.getId());
+        assertThat(evicted.getRevision()).isEqualTo(1);
+        assertThat(evicted.getUnread()).isEqualTo(1);
+    }
 }
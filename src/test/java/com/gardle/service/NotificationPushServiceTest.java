@@ -0,0 +1,75 @@
+package com.gardle.service;
+
+import com.gardle.domain.User;
+import com.gardle.service.dto.MessageDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class NotificationPushServiceTest {
+
+    private static final String USER_LOGIN = "owner";
+
+    private SimpMessageSendingOperations messagingTemplate;
+    private NotificationPushService notificationPushService;
+    private User userTo;
+
+    @BeforeEach
+    public void setup() {
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        userTo = new User();
+        userTo.setId(1L);
+        userTo.setLogin(USER_LOGIN);
+        notificationPushService = new NotificationPushService(messagingTemplate);
+    }
+
+    @AfterEach
+    public void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testPushWithoutTransaction() {
+        MessageDTO message = new MessageDTO();
+        notificationPushService.pushAfterCommit(userTo, message);
+        verify(messagingTemplate).convertAndSendToUser(USER_LOGIN, NotificationPushService.NOTIFICATION_DESTINATION, message);
+    }
+
+    @Test
+    public void testPushAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        MessageDTO message = new MessageDTO();
+        notificationPushService.pushAfterCommit(userTo, message);
+        verifyZeroInteractions(messagingTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(messagingTemplate).convertAndSendToUser(USER_LOGIN, NotificationPushService.NOTIFICATION_DESTINATION, message);
+    }
+
+    @Test
+    public void testNoPushOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        notificationPushService.pushAfterCommit(userTo, new MessageDTO());
+
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verifyZeroInteractions(messagingTemplate);
+    }
+
+    @Test
+    public void testFailedPushIsIgnored() {
+        doThrow(new MessageDeliveryException("broker unavailable")).when(messagingTemplate)
+            .convertAndSendToUser(anyString(), anyString(), any());
+        notificationPushService.pushAfterCommit(userTo, new MessageDTO());
+    }
+}
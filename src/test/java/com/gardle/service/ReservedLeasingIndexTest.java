@@ -0,0 +1,176 @@
+package com.gardle.service;
+
+import com.gardle.domain.GardenField;
+import com.gardle.domain.IndexChangeLogEntry;
+import com.gardle.domain.Leasing;
+import com.gardle.domain.enumeration.LeasingStatus;
+import com.gardle.repository.IndexChangeLogRepository;
+import com.gardle.repository.LeasingRepository;
+import com.gardle.service.dto.leasing.LeasingDateRangeDTO;
+import com.gardle.service.dto.leasing.LeasingIntervalDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReservedLeasingIndexTest {
+
+    private static final Long GARDEN_FIELD_ID = 1L;
+
+    private static final LeasingIntervalDTO MARCH = new LeasingIntervalDTO(1L, GARDEN_FIELD_ID,
+        Instant.parse("2021-03-01T00:00:00Z"), Instant.parse("2021-03-31T00:00:00Z"));
+    private static final LeasingIntervalDTO JANUARY = new LeasingIntervalDTO(2L, GARDEN_FIELD_ID,
+        Instant.parse("2021-01-01T00:00:00Z"), Instant.parse("2021-01-31T00:00:00Z"));
+    private static final LeasingIntervalDTO FEBRUARY = new LeasingIntervalDTO(3L, GARDEN_FIELD_ID,
+        Instant.parse("2021-02-10T00:00:00Z"), Instant.parse("2021-02-20T00:00:00Z"));
+
+    private LeasingRepository leasingRepository;
+    private ReservedLeasingIndex reservedLeasingIndex;
+
+    @BeforeEach
+    public void setup() {
+        leasingRepository = mock(LeasingRepository.class);
+        IndexChangeLogRepository indexChangeLogRepository = mock(IndexChangeLogRepository.class);
+        when(leasingRepository.findAllIntervalsByStatus(LeasingStatus.RESERVED)).thenReturn(Arrays.asList(MARCH, JANUARY));
+        when(indexChangeLogRepository.findLastEntryPerGardenField()).thenReturn(Collections.singletonList(
+            new IndexChangeLogEntry(5L, GARDEN_FIELD_ID, Instant.parse("2021-01-01T00:00:00Z"))));
+        reservedLeasingIndex = new ReservedLeasingIndex(leasingRepository, indexChangeLogRepository);
+        reservedLeasingIndex.load();
+    }
+
+    @Test
+    public void testLoadSortsReservationsAndSetsRevision() {
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).containsExactly(
+            new LeasingDateRangeDTO(JANUARY.getFrom(), JANUARY.getTo()), new LeasingDateRangeDTO(MARCH.getFrom(), MARCH.getTo()));
+        assertThat(reservedLeasingIndex.getReservedIntervals(GARDEN_FIELD_ID).getRevision()).isEqualTo(5L);
+        assertThat(reservedLeasingIndex.findReservedDateRanges(2L, null, null)).isEmpty();
+    }
+
+    @Test
+    public void testDateRangesWithinBounds() {
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID,
+            Instant.parse("2021-02-01T00:00:00Z"), null)).containsExactly(new LeasingDateRangeDTO(MARCH.getFrom(), MARCH.getTo()));
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID,
+            null, Instant.parse("2021-03-15T00:00:00Z"))).containsExactly(new LeasingDateRangeDTO(JANUARY.getFrom(), JANUARY.getTo()));
+    }
+
+    @Test
+    public void testReservedBetween() {
+        assertThat(reservedLeasingIndex.isReservedBetween(GARDEN_FIELD_ID,
+            Instant.parse("2021-01-31T00:00:00Z"), Instant.parse("2021-03-01T00:00:00Z"))).isFalse();
+        assertThat(reservedLeasingIndex.isReservedBetween(GARDEN_FIELD_ID,
+            Instant.parse("2021-01-30T00:00:00Z"), Instant.parse("2021-02-01T00:00:00Z"))).isTrue();
+        assertThat(reservedLeasingIndex.isReservedBetween(GARDEN_FIELD_ID,
+            Instant.parse("2021-03-10T00:00:00Z"), Instant.parse("2021-03-11T00:00:00Z"))).isTrue();
+        assertThat(reservedLeasingIndex.isReservedBetween(2L,
+            Instant.parse("2021-03-10T00:00:00Z"), Instant.parse("2021-03-11T00:00:00Z"))).isFalse();
+    }
+
+    @Test
+    public void testReservedBetweenWithNestedReservations() {
+        Leasing year = createLeasing(4L, LeasingStatus.RESERVED)
+            .from(Instant.parse("2020-12-01T00:00:00Z"))
+            .to(Instant.parse("2021-12-01T00:00:00Z"));
+        reservedLeasingIndex.update(year);
+
+        // the long reservation starts first and covers the gap between february and march
+        assertThat(reservedLeasingIndex.isReservedBetween(GARDEN_FIELD_ID,
+            Instant.parse("2021-02-25T00:00:00Z"), Instant.parse("2021-02-26T00:00:00Z"))).isTrue();
+
+        year.setStatus(LeasingStatus.CANCELLED);
+        reservedLeasingIndex.update(year);
+        assertThat(reservedLeasingIndex.isReservedBetween(GARDEN_FIELD_ID,
+            Instant.parse("2021-02-25T00:00:00Z"), Instant.parse("2021-02-26T00:00:00Z"))).isFalse();
+    }
+
+    @Test
+    public void testUpdateAddsAndRemovesReservations() {
+        Leasing leasing = createLeasing(3L, LeasingStatus.RESERVED);
+        reservedLeasingIndex.update(leasing);
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(3);
+
+        leasing.setStatus(LeasingStatus.CANCELLED);
+        reservedLeasingIndex.update(leasing);
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(2);
+        assertThat(reservedLeasingIndex.getReservedIntervals(GARDEN_FIELD_ID).getRevision()).isEqualTo(5L);
+    }
+
+    @Test
+    public void testReconcileRestoresDatabaseState() {
+        reservedLeasingIndex.update(createLeasing(1L, LeasingStatus.CANCELLED));
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(1);
+
+        reservedLeasingIndex.reconcile();
+
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(2);
+    }
+
+    @Test
+    public void testReconcileKeepsWritesAfterItsSnapshot() {
+        when(leasingRepository.findAllIntervalsByStatus(LeasingStatus.RESERVED)).thenAnswer(invocation -> {
+            // committed on this node while the snapshot is loaded
+            reservedLeasingIndex.update(createLeasing(3L, LeasingStatus.RESERVED));
+            return Arrays.asList(MARCH, JANUARY);
+        });
+
+        reservedLeasingIndex.reconcile();
+
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(3);
+    }
+
+    @Test
+    public void testRefreshAppliesWritesOfOtherNodes() {
+        when(leasingRepository.findAllIntervalsByStatusAndGardenFieldIdIn(eq(LeasingStatus.RESERVED), anyCollection()))
+            .thenReturn(Arrays.asList(MARCH, JANUARY, FEBRUARY));
+
+        reservedLeasingIndex.refresh(Collections.singletonMap(GARDEN_FIELD_ID, 7L));
+
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(3);
+        assertThat(reservedLeasingIndex.getReservedIntervals(GARDEN_FIELD_ID).getRevision()).isEqualTo(7L);
+    }
+
+    @Test
+    public void testRefreshKeepsRevisionOfGardenFieldWithoutReservations() {
+        when(leasingRepository.findAllIntervalsByStatusAndGardenFieldIdIn(eq(LeasingStatus.RESERVED), anyCollection()))
+            .thenReturn(Collections.emptyList());
+
+        reservedLeasingIndex.refresh(Collections.singletonMap(GARDEN_FIELD_ID, 7L));
+
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).isEmpty();
+        assertThat(reservedLeasingIndex.getReservedIntervals(GARDEN_FIELD_ID).getRevision()).isEqualTo(7L);
+    }
+
+    @Test
+    public void testRefreshKeepsWritesAfterItsSnapshot() {
+        when(leasingRepository.findAllIntervalsByStatusAndGardenFieldIdIn(eq(LeasingStatus.RESERVED), anyCollection()))
+            .thenAnswer(invocation -> {
+                reservedLeasingIndex.update(createLeasing(3L, LeasingStatus.RESERVED));
+                return Arrays.asList(MARCH, JANUARY);
+            });
+
+        reservedLeasingIndex.refresh(Collections.singletonMap(GARDEN_FIELD_ID, 7L));
+
+        assertThat(reservedLeasingIndex.findReservedDateRanges(GARDEN_FIELD_ID, null, null)).hasSize(3);
+        assertThat(reservedLeasingIndex.getReservedIntervals(GARDEN_FIELD_ID).getRevision()).isEqualTo(7L);
+    }
+
+    private Leasing createLeasing(Long id, LeasingStatus status) {
+        GardenField gardenField = new GardenField();
+        gardenField.setId(GARDEN_FIELD_ID);
+        Leasing leasing = new Leasing()
+            .from(FEBRUARY.getFrom())
+            .to(FEBRUARY.getTo())
+            .status(status)
+            .gardenField(gardenField);
+        leasing.setId(id);
+        return leasing;
+    }
+}
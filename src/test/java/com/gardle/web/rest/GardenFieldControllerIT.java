@@ -9,6 +9,7 @@ import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.repository.GardenFieldRepository;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.UserRepository;
+import com.gardle.service.GardenFieldFilterBoundaries;
 import com.gardle.service.GardenFieldService;
 import com.gardle.service.dto.GardenFieldDTO;
 import com.gardle.service.dto.SimpleUserDTO;
@@ -19,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers;
@@ -75,6 +77,9 @@ public class GardenFieldControllerIT {
     @Autowired
     private LeasingRepository leasingRepository;
 
+    @Autowired
+    private GardenFieldFilterBoundaries gardenFieldFilterBoundaries;
+
     @Autowired
     WebApplicationContext webApplicationContext;
 
@@ -467,6 +472,8 @@ public class GardenFieldControllerIT {
 
         gardenFieldRepository.save(gardenField1);
         gardenFieldRepository.saveAndFlush(gardenField2);
+        //the boundaries are materialized after commit, this test never commits
+        gardenFieldFilterBoundaries.reconcile();
 
         restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filterBoundaries")
             .accept(MediaType.APPLICATION_JSON))
@@ -479,6 +486,24 @@ public class GardenFieldControllerIT {
             .andExpect(jsonPath("$.maxSize").value(is(sizeTwo)));
     }
 
+    @Test
+    @Transactional
+    public void getGardenFieldBoundariesNotModified() throws Exception {
+        gardenFieldRepository.saveAndFlush(createGardenField("Garden1"));
+        gardenFieldFilterBoundaries.reconcile();
+
+        String eTag = restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filterBoundaries")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filterBoundaries")
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotModified());
+    }
+
     private GardenFieldDTO createGardenFieldDTOWithoutOwner() {
         GardenFieldDTO gardenFieldDTO = new GardenFieldDTO();
         gardenFieldDTO.setName(GARDEN_NAME);
@@ -8,18 +8,26 @@ import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.repository.GardenFieldRepository;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.UserRepository;
+import com.gardle.service.GardenFieldClusterService;
 import com.gardle.service.GardenFieldService;
 import com.gardle.service.LeasingService;
+import com.gardle.service.PaymentService;
 import com.gardle.service.dto.GardenFieldDTO;
 import com.gardle.service.dto.SimpleUserDTO;
+import com.gardle.service.dto.leasing.CreatorLeasingDTO;
+import com.gardle.service.dto.leasing.LeasingDTO;
+import com.gardle.service.dto.leasing.UpdatingLeasingDTO;
 import com.gardle.service.mapper.SimpleUserMapper;
 import com.gardle.web.rest.errors.ExceptionTranslator;
+import com.jayway.jsonpath.JsonPath;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -29,12 +37,17 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Objects;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -81,6 +94,9 @@ public class GardenFieldSearchIT {
     @Autowired
     private LeasingService leasingService;
 
+    @Autowired
+    private GardenFieldClusterService gardenFieldClusterService;
+
     @Autowired
     private GardenFieldRepository gardenFieldRepository;
 
@@ -93,13 +109,23 @@ public class GardenFieldSearchIT {
     @Autowired
     private SimpleUserMapper simpleUserMapper;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private PaymentService paymentService;
+
+    private TransactionTemplate transactionTemplate;
+
     private MockMvc restGardenFieldMockMvc;
     private SimpleUserDTO simpleUserDTO;
 
     @BeforeEach
     public void setup() {
-        GardenFieldController gardenFieldController = new GardenFieldController(gardenFieldService, leasingService);
+        GardenFieldController gardenFieldController = new GardenFieldController(gardenFieldService, leasingService,
+            gardenFieldClusterService);
 
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.restGardenFieldMockMvc = MockMvcBuilders.standaloneSetup(gardenFieldController)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -318,6 +344,118 @@ public class GardenFieldSearchIT {
             .andExpect(jsonPath("$.content.[0].name").value(is(name1)));
     }
 
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testReservedDaysFollowLeasingStatus() throws Exception {
+        GardenFieldDTO gardenFieldDTO = gardenFieldService.createGardenField(createGardenFieldDTO());
+        User requester = new User();
+        requester.setLogin("requester");
+        requester.setPassword(RandomStringUtils.random(60));
+        requester.setActivated(true);
+        requester.setEmail(RandomStringUtils.randomAlphabetic(5) + "requester@localhost");
+        requester = userRepository.saveAndFlush(requester);
+
+        Instant from = Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+        Instant to = from.plus(10, ChronoUnit.DAYS);
+        String filterString = "leasingTimeFrom=" + from.plus(2, ChronoUnit.DAYS) + "&leasingTimeTo=" + from.plus(5, ChronoUnit.DAYS);
+        CreatorLeasingDTO creatorLeasingDTO = new CreatorLeasingDTO();
+        creatorLeasingDTO.setFrom(from);
+        creatorLeasingDTO.setTo(to);
+        creatorLeasingDTO.setGardenFieldId(gardenFieldDTO.getId());
+        creatorLeasingDTO.setUserId(requester.getId());
+        UpdatingLeasingDTO updatingLeasingDTO = new UpdatingLeasingDTO();
+        updatingLeasingDTO.setGardenFieldId(gardenFieldDTO.getId());
+        updatingLeasingDTO.setStatus(LeasingStatus.RESERVED);
+
+        //the leasings of the gardenfield are initialized in the session before every change
+        LeasingDTO leasingDTO = transactionTemplate.execute(status -> {
+            initializeLeasings(gardenFieldDTO.getId());
+            return leasingService.createLeasing(creatorLeasingDTO, DEFAULT_PAYMENT_SESSION_ID);
+        });
+        expectFilterResults(filterString, 1);
+
+        updatingLeasingDTO.setId(Objects.requireNonNull(leasingDTO).getId());
+        transactionTemplate.execute(status -> {
+            initializeLeasings(gardenFieldDTO.getId());
+            return leasingService.updateLeasing(updatingLeasingDTO);
+        });
+        expectFilterResults(filterString, 0);
+
+        transactionTemplate.execute(status -> {
+            initializeLeasings(gardenFieldDTO.getId());
+            leasingRepository.findById(leasingDTO.getId()).get().setStatus(LeasingStatus.CANCELLED);
+            return null;
+        });
+        expectFilterResults(filterString, 1);
+    }
+
+    private void initializeLeasings(Long gardenFieldId) {
+        Hibernate.initialize(gardenFieldRepository.findById(gardenFieldId).get().getLeasings());
+    }
+
+    private void expectFilterResults(String filterString, int results) throws Exception {
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?" + filterString)
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.length()").value(is(results)));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterPaging() throws Exception {
+        String filterString = "water=true&page=1&size=2";
+        for (int i = 1; i <= 5; i++) {
+            GardenFieldDTO gardenFieldDTO = createGardenFieldDTO();
+            gardenFieldDTO.setName("gardenname" + i);
+            gardenFieldService.createGardenField(gardenFieldDTO);
+        }
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?" + filterString)
+            .accept(MediaType.APPLICATION_JSON))
+            .andDo(MockMvcResultHandlers.print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.content.length()").value(is(2)))
+            .andExpect(jsonPath("$.totalElements").value(is(5)));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testLeasingTimeFromToFilterPaging() throws Exception {
+        String filterString = "leasingTimeFrom=2021-01-01T04:00:00.000Z&leasingTimeTo=2021-04-01T04:00:00.000Z&page=1&size=1";
+        GardenFieldDTO gardenFieldDTO1 = createGardenFieldDTO();
+        gardenFieldDTO1.setName("gardenname1");
+        GardenFieldDTO gardenFieldDTO2 = createGardenFieldDTO();
+        gardenFieldDTO2.setName("gardenname2");
+        GardenFieldDTO gardenFieldDTO3 = createGardenFieldDTO();
+        gardenFieldDTO3.setName("gardenname3");
+
+        gardenFieldDTO1 = gardenFieldService.createGardenField(gardenFieldDTO1);
+        gardenFieldService.createGardenField(gardenFieldDTO2);
+        gardenFieldService.createGardenField(gardenFieldDTO3);
+
+        GardenField gardenField1 = gardenFieldRepository.findById(gardenFieldDTO1.getId()).get();
+        Leasing leasing = new Leasing()
+            .from(Instant.parse("2021-03-01T04:00:00.000Z"))
+            .to(Instant.parse("2021-10-01T04:00:50.000Z"))
+            .status(LeasingStatus.RESERVED)
+            .gardenField(gardenField1)
+            .paymentSessionId(DEFAULT_PAYMENT_SESSION_ID)
+            .user(userRepository.getOne(simpleUserDTO.getId()));
+        leasingRepository.saveAndFlush(leasing);
+        gardenField1.setLeasings(Collections.singletonList(leasing));
+        gardenFieldRepository.saveAndFlush(gardenField1);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?" + filterString)
+            .accept(MediaType.APPLICATION_JSON))
+            .andDo(MockMvcResultHandlers.print())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.content.length()").value(is(1)))
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname3")))
+            .andExpect(jsonPath("$.totalElements").value(is(2)));
+    }
+
     @Test
     @WithMockUser(value = DEFAULT_LOGIN)
     public void testBooleanFilters() throws Exception {
@@ -385,6 +523,208 @@ public class GardenFieldSearchIT {
             .andExpect(jsonPath("$.content.[0].name").value(is(name1)));
     }
 
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterReturnsProjectedCardFields() throws Exception {
+        GardenFieldDTO gardenFieldDTO = gardenFieldService.createGardenField(createGardenFieldDTO());
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?water=true")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.content.length()").value(is(1)))
+            .andExpect(jsonPath("$.content.[0].id").value(is(gardenFieldDTO.getId().intValue())))
+            .andExpect(jsonPath("$.content.[0].name").value(is(GARDEN_NAME)))
+            .andExpect(jsonPath("$.content.[0].city").value(is(CITY)))
+            .andExpect(jsonPath("$.content.[0].description").value(is(DESCRIPTION)))
+            .andExpect(jsonPath("$.content.[0].sizeInM2").value(is(SIZE_IN_M2)))
+            .andExpect(jsonPath("$.content.[0].pricePerMonth").value(is(gardenFieldDTO.getPricePerMonth())))
+            .andExpect(jsonPath("$.content.[0].latitude").value(is(LATITUDE)))
+            .andExpect(jsonPath("$.content.[0].water").value(is(WATER)))
+            .andExpect(jsonPath("$.content.[0].electricity").value(is(ELECTRICITY)));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testAutocompletePrefix() throws Exception {
+        GardenFieldDTO gardenFieldDTO1 = createGardenFieldDTO();
+        gardenFieldDTO1.setName("Sonnengarten");
+        GardenFieldDTO gardenFieldDTO2 = createGardenFieldDTO();
+        gardenFieldDTO2.setName("Schattenbeet");
+        gardenFieldService.createGardenField(gardenFieldDTO1);
+        gardenFieldService.createGardenField(gardenFieldDTO2);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/autocomplete?partialSearchString=Sonn")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(is(1)))
+            .andExpect(jsonPath("$.[0].name").value(is("Sonnengarten")));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testAutocompleteFallsBackToFuzzy() throws Exception {
+        GardenFieldDTO gardenFieldDTO1 = createGardenFieldDTO();
+        gardenFieldDTO1.setName("Sonnengarten");
+        GardenFieldDTO gardenFieldDTO2 = createGardenFieldDTO();
+        gardenFieldDTO2.setName("Schattenbeet");
+        gardenFieldService.createGardenField(gardenFieldDTO1);
+        gardenFieldService.createGardenField(gardenFieldDTO2);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/autocomplete?partialSearchString=Sonnengarden")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(is(1)))
+            .andExpect(jsonPath("$.[0].name").value(is("Sonnengarten")));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFacets() throws Exception {
+        GardenFieldDTO gardenFieldDTO1 = createGardenFieldDTO();
+        GardenFieldDTO gardenFieldDTO2 = createGardenFieldDTO();
+        GardenFieldDTO gardenFieldDTO3 = createGardenFieldDTO();
+        gardenFieldDTO3.setWater(false);
+        gardenFieldService.createGardenField(gardenFieldDTO1);
+        gardenFieldService.createGardenField(gardenFieldDTO2);
+        gardenFieldService.createGardenField(gardenFieldDTO3);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter/facets?electricity=false")
+            .accept(MediaType.APPLICATION_JSON))
+            .andDo(MockMvcResultHandlers.print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.totalElements").value(is(3)))
+            .andExpect(jsonPath("$.amenities.water.true").value(is(2)))
+            .andExpect(jsonPath("$.amenities.water.false").value(is(1)))
+            .andExpect(jsonPath("$.amenities.electricity.false").value(is(3)))
+            .andExpect(jsonPath("$.sizeBuckets.length()").value(is(5)))
+            .andExpect(jsonPath("$.priceBuckets.length()").value(is(5)));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testClusters() throws Exception {
+        GardenFieldDTO gardenFieldDTO1 = createGardenFieldDTO();
+        gardenFieldDTO1.setLatitude(48.2082);
+        gardenFieldDTO1.setLongitude(16.3738);
+        GardenFieldDTO gardenFieldDTO2 = createGardenFieldDTO();
+        gardenFieldDTO2.setLatitude(48.2084);
+        gardenFieldDTO2.setLongitude(16.3740);
+        GardenFieldDTO gardenFieldDTO3 = createGardenFieldDTO();
+        gardenFieldDTO3.setLatitude(47.0707);
+        gardenFieldDTO3.setLongitude(15.4395);
+        gardenFieldService.createGardenField(gardenFieldDTO1);
+        gardenFieldService.createGardenField(gardenFieldDTO2);
+        GardenFieldDTO single = gardenFieldService.createGardenField(gardenFieldDTO3);
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/clusters?south=46.0&west=14.0&north=49.0&east=17.0&zoom=7")
+            .accept(MediaType.APPLICATION_JSON))
+            .andDo(MockMvcResultHandlers.print())
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(is(2)))
+            .andExpect(jsonPath("$[?(@.count == 2)]", hasSize(1)))
+            .andExpect(jsonPath("$[?(@.count == 1)].gardenFieldId").value(contains(single.getId().intValue())));
+    }
+
+    @Test
+    public void testClustersTooManyTiles() throws Exception {
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/clusters?south=-80.0&west=-170.0&north=80.0&east=170.0&zoom=10")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterSortedByPrice() throws Exception {
+        double[] pricesPerM2 = {2.0, 5.0, 1.0};
+        for (int i = 0; i < pricesPerM2.length; i++) {
+            GardenFieldDTO gardenFieldDTO = createGardenFieldDTO();
+            gardenFieldDTO.setName("gardenname" + (i + 1));
+            gardenFieldDTO.setPricePerM2(pricesPerM2[i]);
+            gardenFieldService.createGardenField(gardenFieldDTO);
+        }
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?water=true&sort=pricePerMonth,desc&size=2")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.length()").value(is(2)))
+            .andExpect(jsonPath("$.totalElements").value(is(3)))
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname2")))
+            .andExpect(jsonPath("$.content.[1].name").value(is("gardenname1")));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterSortedByDistance() throws Exception {
+        double[] latitudes = {1.2, 1.05, 1.1};
+        for (int i = 0; i < latitudes.length; i++) {
+            GardenFieldDTO gardenFieldDTO = createGardenFieldDTO();
+            gardenFieldDTO.setName("gardenname" + (i + 1));
+            gardenFieldDTO.setLatitude(latitudes[i]);
+            gardenFieldService.createGardenField(gardenFieldDTO);
+        }
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?latitude=1.0&longitude=2.0&radiusInKM=50&sort=distance")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.length()").value(is(3)))
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname2")))
+            .andExpect(jsonPath("$.content.[1].name").value(is("gardenname3")))
+            .andExpect(jsonPath("$.content.[2].name").value(is("gardenname1")));
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterCursorPaging() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            GardenFieldDTO gardenFieldDTO = createGardenFieldDTO();
+            gardenFieldDTO.setName("gardenname" + i);
+            gardenFieldDTO.setPricePerM2((double) (6 - i));
+            gardenFieldService.createGardenField(gardenFieldDTO);
+        }
+
+        String firstPage = restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?water=true&sort=pricePerMonth&size=2&cursor=")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.totalElements").value(is(5)))
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname5")))
+            .andExpect(jsonPath("$.content.[1].name").value(is("gardenname4")))
+            .andReturn().getResponse().getContentAsString();
+
+        String secondPage = restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?water=true&sort=pricePerMonth&size=2&cursor="
+            + JsonPath.read(firstPage, "$.nextCursor"))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname3")))
+            .andExpect(jsonPath("$.content.[1].name").value(is("gardenname2")))
+            .andReturn().getResponse().getContentAsString();
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?water=true&sort=pricePerMonth&size=2&cursor="
+            + JsonPath.read(secondPage, "$.nextCursor"))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.content.length()").value(is(1)))
+            .andExpect(jsonPath("$.content.[0].name").value(is("gardenname1")))
+            .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(value = DEFAULT_LOGIN)
+    public void testFilterCursorOfOtherSortIsRejected() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            gardenFieldService.createGardenField(createGardenFieldDTO());
+        }
+        String firstPage = restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?sort=pricePerMonth&size=1&cursor=")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        restGardenFieldMockMvc.perform(get("/api/v1/gardenfields/filter?sort=sizeInM2&size=1&cursor="
+            + JsonPath.read(firstPage, "$.nextCursor"))
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
     private GardenFieldDTO createGardenFieldDTOWithoutOwner() {
         GardenFieldDTO gardenFieldDTO = new GardenFieldDTO();
         gardenFieldDTO.setName(GARDEN_NAME);
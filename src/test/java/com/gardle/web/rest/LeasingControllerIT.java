@@ -2,10 +2,12 @@ package com.gardle.web.rest;
 
 import com.gardle.GardleApp;
 import com.gardle.domain.GardenField;
+import com.gardle.domain.IndexChangeLogEntry;
 import com.gardle.domain.Leasing;
 import com.gardle.domain.User;
 import com.gardle.domain.enumeration.LeasingStatus;
 import com.gardle.repository.GardenFieldRepository;
+import com.gardle.repository.IndexChangeLogRepository;
 import com.gardle.repository.LeasingRepository;
 import com.gardle.repository.UserRepository;
 import com.gardle.service.LeasingQueryService;
@@ -26,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -36,16 +39,15 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.Month;
-import java.time.ZoneId;
+import java.time.*;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static com.gardle.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -114,6 +116,9 @@ public class LeasingControllerIT {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private IndexChangeLogRepository indexChangeLogRepository;
+
     @Autowired
     private Validator validator;
 
@@ -621,6 +626,61 @@ public class LeasingControllerIT {
             .andExpect(jsonPath("$.[1].to").value(is(to2.toString())));
     }
 
+    @Test
+    @Transactional
+    public void getAvailabilityCalendarRevalidatesWithETag() throws Exception {
+        String eTag = restLeasingMockMvc.perform(get("/api/v1/leasings/{gardenFieldId}/availabilityCalendar",
+            gardenField.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.firstDay").value(is(LocalDate.now(ZoneOffset.UTC).toString())))
+            .andExpect(jsonPath("$.days").value(is((int) ChronoUnit.DAYS.between(LocalDate.now(ZoneOffset.UTC),
+                LocalDate.now(ZoneOffset.UTC).plusMonths(24)))))
+            .andExpect(jsonPath("$.reservedDays").isString())
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restLeasingMockMvc.perform(get("/api/v1/leasings/{gardenFieldId}/availabilityCalendar", gardenField.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    public void getAvailabilityCalendarIsReadFromDatabaseWhileIndexIsBehind() throws Exception {
+        String eTag = restLeasingMockMvc.perform(get("/api/v1/leasings/{gardenFieldId}/availabilityCalendar",
+            gardenField.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reservedDays").value(is("")))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //a reservation of another node: the index of this node is only updated after a commit of its own
+        Instant from = LocalDate.now(ZoneOffset.UTC).plusDays(30).atStartOfDay(ZoneOffset.UTC).toInstant();
+        leasingRepository.saveAndFlush(new Leasing()
+            .from(from)
+            .to(from.plus(7, ChronoUnit.DAYS))
+            .status(LeasingStatus.RESERVED)
+            .gardenField(gardenField)
+            .paymentSessionId("test")
+            .user(requester));
+        IndexChangeLogEntry change = indexChangeLogRepository.saveAndFlush(
+            new IndexChangeLogEntry(null, gardenField.getId(), Instant.now()));
+
+        restLeasingMockMvc.perform(get("/api/v1/leasings/{gardenFieldId}/availabilityCalendar", gardenField.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.revision").value(is(change.getId().intValue())))
+            .andExpect(jsonPath("$.reservedDays").value(not("")))
+            .andExpect(header().string(HttpHeaders.ETAG, startsWith("\"" + change.getId() + "-")));
+    }
+
+    @Test
+    @Transactional
+    public void getAvailabilityCalendarOfUnknownGardenField() throws Exception {
+        restLeasingMockMvc.perform(get("/api/v1/leasings/{gardenFieldId}/availabilityCalendar", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
     private void createRequester() {
         requester = new User();
         requester.setLogin(REQUESTER_LOGIN);
@@ -20,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.test.context.support.WithAnonymousUser;
@@ -456,6 +457,33 @@ public class MessageControllerIT {
             .andExpect(jsonPath("$[*].type").value(hasItem(DEFAULT_TYPE.toString())));
     }
 
+    @Test
+    @Transactional
+    @WithMockUser(DEFAULT_LOGIN)
+    public void getUnreadCount() throws Exception {
+        UUID thread1 = UUID.randomUUID();
+        Message newMsg = createMessage(DEFAULT_CONTENT, defaultUser, user2, thread1);
+        newMsg.setOpened(false);
+        Message msg2 = createMessage("Message 2", user2, defaultUser, thread1);
+        msg2.setOpened(false);
+        Message msg3 = createMessage("Message 3", user3, defaultUser, UUID.randomUUID());
+        msg3.setOpened(false);
+        messageRepository.save(newMsg);
+        messageRepository.save(msg2);
+        messageRepository.saveAndFlush(msg3);
+
+        String eTag = restMessageMockMvc.perform(get("/api/v1/messages/unread/count"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().exists(HttpHeaders.ETAG))
+            .andExpect(jsonPath("$.unread").value(2))
+            .andExpect(jsonPath("$.revision").value(0))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        restMessageMockMvc.perform(get("/api/v1/messages/unread/count").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @Transactional
     @WithMockUser(DEFAULT_LOGIN)
@@ -0,0 +1,202 @@
+package com.gardle.web.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gardle.config.WebsocketFanOutProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two nodes against one local postgres, e.g. the one of {@code src/main/docker/postgresql.yml}:
+ * {@code FAN_OUT_TEST_DATABASE_URL=jdbc:postgresql://localhost:5432/airgnb}, the credentials default to the ones of
+ * the docker container and are read from {@code FAN_OUT_TEST_DATABASE_USERNAME} and
+ * {@code FAN_OUT_TEST_DATABASE_PASSWORD}. The nodes only consist of the fan-out and a broker channel, the delivery of
+ * relayed user messages to the sessions of the receiving node is covered by {@link BrokerFanOutReceivingNodeIT}.
+ */
+@EnabledIfEnvironmentVariable(named = "FAN_OUT_TEST_DATABASE_URL", matches = "jdbc:postgresql:.*")
+public class BrokerFanOutIT {
+
+    private AnnotationConfigApplicationContext nodeA;
+    private AnnotationConfigApplicationContext nodeB;
+
+    private final BlockingQueue<Message<?>> receivedByA = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Message<?>> receivedByB = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void startNodes() throws InterruptedException {
+        nodeA = new AnnotationConfigApplicationContext(NodeConfiguration.class);
+        nodeB = new AnnotationConfigApplicationContext(NodeConfiguration.class);
+        nodeA.getBean(ExecutorSubscribableChannel.class).subscribe(receivedByA::add);
+        nodeB.getBean(ExecutorSubscribableChannel.class).subscribe(receivedByB::add);
+        awaitListening();
+    }
+
+    @AfterEach
+    public void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    public void testMessagesReachTheOtherNode() throws InterruptedException {
+        send(nodeA, "/topic/tracker", "{\"page\":\"home\"}");
+        send(nodeA, "/user/johndoe/queue/notifications", "{\"id\":1}");
+        send(nodeB, "/topic/tracker", "{\"page\":\"account\"}");
+
+        Message<?> first = pollRelayed(receivedByB, 10);
+        Message<?> second = pollRelayed(receivedByB, 10);
+        Message<?> relayedToA = pollRelayed(receivedByA, 10);
+
+        assertThat(first).isNotNull();
+        assertThat(SimpMessageHeaderAccessor.getDestination(first.getHeaders())).isEqualTo("/topic/tracker");
+        assertThat(new String((byte[]) first.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"page\":\"home\"}");
+        assertThat(SimpMessageHeaderAccessor.getContentType(first.getHeaders())).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+        assertThat(first.getHeaders()).containsKey(BrokerFanOut.FAN_OUT_ID_HEADER);
+        assertThat(second).isNotNull();
+        assertThat(SimpMessageHeaderAccessor.getDestination(second.getHeaders()))
+            .isEqualTo("/user/johndoe/queue/notifications");
+        assertThat(relayedToA).isNotNull();
+        assertThat(new String((byte[]) relayedToA.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"page\":\"account\"}");
+    }
+
+    @Test
+    public void testMessagesAreNotRelayedBack() throws InterruptedException {
+        send(nodeA, "/topic/tracker", "{\"page\":\"home\"}");
+
+        assertThat(pollRelayed(receivedByB, 10)).isNotNull();
+        assertThat(pollRelayed(receivedByB, 1)).isNull();
+        assertThat(pollRelayed(receivedByA, 2)).isNull();
+    }
+
+    @Test
+    public void testLocalDestinationsAreNotRelayed() throws InterruptedException {
+        send(nodeA, "/queue/notifications-user1234", "{\"id\":1}");
+
+        assertThat(pollRelayed(receivedByB, 2)).isNull();
+    }
+
+    /**
+     * LISTEN is executed asynchronously, so notifications are published until both nodes received one.
+     */
+    private void awaitListening() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        boolean aListening = false;
+        boolean bListening = false;
+        while (!(aListening && bListening) && System.nanoTime() < deadline) {
+            send(nodeA, "/topic/ready", "{}");
+            send(nodeB, "/topic/ready", "{}");
+            Thread.sleep(200);
+            bListening |= receivedByB.stream().anyMatch(message -> message.getHeaders().containsKey(BrokerFanOut.FAN_OUT_ID_HEADER));
+            aListening |= receivedByA.stream().anyMatch(message -> message.getHeaders().containsKey(BrokerFanOut.FAN_OUT_ID_HEADER));
+        }
+        assertThat(aListening && bListening).isTrue();
+        // let the last notifications arrive before clearing
+        Thread.sleep(500);
+        receivedByA.clear();
+        receivedByB.clear();
+    }
+
+    /**
+     * @return the next message relayed from the other node, skipping the local ones
+     */
+    private Message<?> pollRelayed(BlockingQueue<Message<?>> received, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline) {
+            Message<?> message = received.poll(100, TimeUnit.MILLISECONDS);
+            if (message != null && message.getHeaders().containsKey(BrokerFanOut.FAN_OUT_ID_HEADER)) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private static void send(AnnotationConfigApplicationContext node, String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        node.getBean(ExecutorSubscribableChannel.class)
+            .send(MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+    }
+
+    @Configuration
+    static class NodeConfiguration {
+
+        @Bean
+        public DataSourceProperties dataSourceProperties() {
+            DataSourceProperties dataSourceProperties = new DataSourceProperties();
+            dataSourceProperties.setUrl(System.getenv("FAN_OUT_TEST_DATABASE_URL"));
+            dataSourceProperties.setUsername(System.getenv().getOrDefault("FAN_OUT_TEST_DATABASE_USERNAME", "airgnb"));
+            dataSourceProperties.setPassword(System.getenv().getOrDefault("FAN_OUT_TEST_DATABASE_PASSWORD", "password"));
+            return dataSourceProperties;
+        }
+
+        @Bean
+        public DataSource dataSource(DataSourceProperties dataSourceProperties) {
+            return dataSourceProperties.initializeDataSourceBuilder().build();
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public WebsocketFanOutProperties websocketFanOutProperties() {
+            WebsocketFanOutProperties websocketFanOutProperties = new WebsocketFanOutProperties();
+            websocketFanOutProperties.setEnabled(true);
+            websocketFanOutProperties.setChannel("websocket_fan_out_test");
+            return websocketFanOutProperties;
+        }
+
+        @Bean
+        public ExecutorSubscribableChannel brokerChannel() {
+            return new ExecutorSubscribableChannel();
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public BrokerFanOut brokerFanOut(ExecutorSubscribableChannel brokerChannel, JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager,
+                                         DataSourceProperties dataSourceProperties,
+                                         WebsocketFanOutProperties websocketFanOutProperties,
+                                         MeterRegistry meterRegistry) {
+            BrokerFanOut brokerFanOut = new BrokerFanOut(brokerChannel, jdbcTemplate, transactionManager,
+                dataSourceProperties, websocketFanOutProperties, new ObjectMapper(), meterRegistry);
+            brokerChannel.addInterceptor(brokerFanOut);
+            return brokerFanOut;
+        }
+    }
+}
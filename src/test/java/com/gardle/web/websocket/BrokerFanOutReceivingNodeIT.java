@@ -0,0 +1,196 @@
+package com.gardle.web.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gardle.GardleApp;
+import com.gardle.security.AuthoritiesConstants;
+import com.gardle.service.NotificationPushService;
+import com.gardle.service.dto.MessageDTO;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The node receiving a relayed user message, with the broker, user registry and user destination handling of the
+ * application: the {@code /user/{login}/...} destination published by the other node is resolved by the
+ * {@link org.springframework.messaging.simp.user.UserDestinationMessageHandler} to the sessions of the user on this
+ * node. The relayed message is built by a {@link SimpMessagingTemplate} like the one of the sending node, postgres is
+ * not needed as {@link BrokerFanOut#receive} is called directly; the notifications themselves are covered by
+ * {@link BrokerFanOutIT}.
+ */
+@SpringBootTest(classes = GardleApp.class)
+public class BrokerFanOutReceivingNodeIT {
+
+    @Autowired
+    private BrokerFanOut brokerFanOut;
+
+    @Autowired
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @Autowired
+    @Qualifier("brokerMessageConverter")
+    private MessageConverter brokerMessageConverter;
+
+    @Autowired
+    @Qualifier("clientInboundChannel")
+    private MessageChannel clientInboundChannel;
+
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private SubscribableChannel clientOutboundChannel;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final BlockingQueue<Message<?>> sent = new LinkedBlockingQueue<>();
+    private final MessageHandler outbound = sent::add;
+
+    private String login;
+    private String sessionId;
+    private Principal user;
+
+    @BeforeEach
+    public void connect() throws InterruptedException {
+        clientOutboundChannel.subscribe(outbound);
+        login = RandomStringUtils.randomAlphabetic(10).toLowerCase();
+        sessionId = UUID.randomUUID().toString();
+        user = new UsernamePasswordAuthenticationToken(login, null,
+            Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER)));
+        applicationEventPublisher.publishEvent(new SessionConnectedEvent(this, stompMessage(SimpMessageType.CONNECT_ACK, null), user));
+        clientInboundChannel.send(stompMessage(SimpMessageType.SUBSCRIBE, "/user" + NotificationPushService.NOTIFICATION_DESTINATION));
+        awaitSubscribed();
+    }
+
+    @AfterEach
+    public void disconnect() {
+        clientInboundChannel.send(stompMessage(SimpMessageType.DISCONNECT, null));
+        applicationEventPublisher.publishEvent(new SessionDisconnectEvent(this,
+            stompMessage(SimpMessageType.DISCONNECT, null), sessionId, CloseStatus.NORMAL, user));
+        clientOutboundChannel.unsubscribe(outbound);
+    }
+
+    @Test
+    public void testRelayedUserMessageReachesSessionOfUser() throws Exception {
+        MessageDTO message = new MessageDTO();
+        message.setId(42L);
+        message.setContent("relayed");
+
+        brokerFanOut.receive(publishedByOtherNode(login, message));
+
+        Message<?> delivered = pollForSession(5);
+        assertThat(delivered).isNotNull();
+        assertThat(SimpMessageHeaderAccessor.getDestination(delivered.getHeaders()))
+            .isEqualTo(NotificationPushService.NOTIFICATION_DESTINATION + "-user" + sessionId);
+        assertThat(SimpMessageHeaderAccessor.getSubscriptionId(delivered.getHeaders())).isEqualTo("sub-0");
+        MessageDTO received = objectMapper.readValue((byte[]) delivered.getPayload(), MessageDTO.class);
+        assertThat(received.getId()).isEqualTo(42L);
+        assertThat(received.getContent()).isEqualTo("relayed");
+    }
+
+    @Test
+    public void testRelayedMessageOfOtherUserDoesNotReachSession() throws Exception {
+        MessageDTO message = new MessageDTO();
+        message.setId(43L);
+
+        brokerFanOut.receive(publishedByOtherNode("other" + login, message));
+
+        assertThat(pollForSession(1)).isNull();
+    }
+
+    /**
+     * @return the notification the other node publishes for a message sent with its template, as in
+     * {@link BrokerFanOut#preSend}
+     */
+    private String publishedByOtherNode(String recipient, Object payload) throws Exception {
+        BlockingQueue<Message<?>> brokerChannel = new LinkedBlockingQueue<>();
+        SimpMessagingTemplate otherNodeTemplate = new SimpMessagingTemplate((message, timeout) -> brokerChannel.add(message));
+        otherNodeTemplate.setMessageConverter(brokerMessageConverter);
+        otherNodeTemplate.convertAndSendToUser(recipient, NotificationPushService.NOTIFICATION_DESTINATION, payload);
+        Message<?> message = brokerChannel.poll();
+        assertThat(message).isNotNull();
+        MimeType contentType = SimpMessageHeaderAccessor.getContentType(message.getHeaders());
+        BrokerFanOut.Envelope envelope = new BrokerFanOut.Envelope(UUID.randomUUID(), "other",
+            SimpMessageHeaderAccessor.getDestination(message.getHeaders()),
+            contentType == null ? null : contentType.toString(), (byte[]) message.getPayload());
+        return objectMapper.writeValueAsString(Collections.singletonList(envelope));
+    }
+
+    /**
+     * The subscription is handled asynchronously, so local messages are pushed until the session received one.
+     */
+    private void awaitSubscribed() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Message<?> ready = null;
+        while (ready == null && System.nanoTime() < deadline) {
+            messagingTemplate.convertAndSendToUser(login, NotificationPushService.NOTIFICATION_DESTINATION,
+                Collections.singletonMap("ready", true));
+            ready = pollForSession(0);
+            if (ready == null) {
+                Thread.sleep(100);
+            }
+        }
+        assertThat(ready).isNotNull();
+        // let the last local messages arrive before clearing
+        Thread.sleep(200);
+        sent.clear();
+    }
+
+    /**
+     * @return the next message the broker sent to the session, skipping the ones to other sessions
+     */
+    private Message<?> pollForSession(int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        do {
+            Message<?> message = sent.poll(100, TimeUnit.MILLISECONDS);
+            if (message != null && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE
+                && sessionId.equals(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()))) {
+                return message;
+            }
+        } while (System.nanoTime() < deadline);
+        return null;
+    }
+
+    private Message<byte[]> stompMessage(SimpMessageType type, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setUser(user);
+        if (destination != null) {
+            accessor.setDestination(destination);
+            accessor.setSubscriptionId("sub-0");
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,96 @@
+package com.gardle.web.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gardle.config.WebsocketFanOutProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BrokerFanOutTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MessageChannel brokerChannel;
+    private BrokerFanOut brokerFanOut;
+
+    @BeforeEach
+    public void setup() {
+        brokerChannel = mock(MessageChannel.class);
+        brokerFanOut = new BrokerFanOut(brokerChannel, null, mock(PlatformTransactionManager.class),
+            new DataSourceProperties(), new WebsocketFanOutProperties(), objectMapper, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testReceivedMessageIsSentToBroker() throws Exception {
+        BrokerFanOut.Envelope envelope = envelope("other", "{\"page\":\"home\"}");
+        brokerFanOut.receive(objectMapper.writeValueAsString(Collections.singletonList(envelope)));
+
+        verify(brokerChannel).send(argThat(message -> {
+            assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders())).isEqualTo("/topic/tracker");
+            assertThat(message.getHeaders().get(BrokerFanOut.FAN_OUT_ID_HEADER)).isEqualTo(envelope.getId());
+            assertThat(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("{\"page\":\"home\"}");
+            return true;
+        }));
+    }
+
+    @Test
+    public void testDuplicatesAreDropped() throws Exception {
+        BrokerFanOut.Envelope envelope = envelope("other", "{}");
+        String payload = objectMapper.writeValueAsString(Arrays.asList(envelope, envelope));
+        brokerFanOut.receive(payload);
+        brokerFanOut.receive(payload);
+
+        verify(brokerChannel, times(1)).send(any(Message.class));
+    }
+
+    @Test
+    public void testInvalidNotificationIsIgnored() {
+        brokerFanOut.receive("not json");
+
+        verifyZeroInteractions(brokerChannel);
+    }
+
+    @Test
+    public void testBatchIsSplitBelowPayloadLimit() throws Exception {
+        List<BrokerFanOut.Envelope> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(envelope("this", String.join("", Collections.nCopies(1000, "x"))));
+        }
+        List<String> payloads = brokerFanOut.toPayloads(batch);
+
+        assertThat(payloads).hasSizeGreaterThan(1)
+            .allSatisfy(payload -> assertThat(payload.getBytes(StandardCharsets.UTF_8).length)
+                .isLessThanOrEqualTo(BrokerFanOut.MAX_PAYLOAD_BYTES));
+        int envelopes = 0;
+        for (String payload : payloads) {
+            envelopes += objectMapper.readValue(payload, BrokerFanOut.Envelope[].class).length;
+        }
+        assertThat(envelopes).isEqualTo(batch.size());
+    }
+
+    @Test
+    public void testTooLargeMessageIsNotPublished() {
+        List<String> payloads = brokerFanOut.toPayloads(Arrays.asList(
+            envelope("this", String.join("", Collections.nCopies(BrokerFanOut.MAX_PAYLOAD_BYTES, "x"))),
+            envelope("this", "{}")));
+
+        assertThat(payloads).hasSize(1);
+    }
+
+    private static BrokerFanOut.Envelope envelope(String node, String json) {
+        return new BrokerFanOut.Envelope(UUID.randomUUID(), node, "/topic/tracker", "application/json",
+            json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -91,6 +91,24 @@ describe('leasing service', () => {
     expect(mockedAxios.get).toHaveBeenCalledWith('/api/v1/leasings/1/leasedDateRanges');
   });
 
+  it('should get availability calendar', async () => {
+    // 2020-01-03 and 2020-01-10
+    mockedAxios.get.mockReturnValueOnce(
+      Promise.resolve({
+        data: { firstDay: '2020-01-01', days: 731, reservedDays: btoa(String.fromCharCode(4, 2)) }
+      })
+    );
+
+    const calendar = await leasingService.getAvailabilityCalendar(1);
+
+    expect(mockedAxios.get).toHaveBeenCalledWith('/api/v1/leasings/1/availabilityCalendar');
+    expect(calendar.isReserved('2020-01-03')).toBe(true);
+    expect(calendar.isReserved('2020-01-10')).toBe(true);
+    expect(calendar.isReserved('2020-01-04')).toBe(false);
+    expect(calendar.isReserved('2019-12-31')).toBe(false);
+    expect(calendar.isReserved('2021-06-01')).toBe(false);
+  });
+
   it('should get leasings for gardenfield', async () => {
     mockedAxios.get.mockReturnValueOnce(
       Promise.resolve({
@@ -167,4 +167,14 @@ describe('Message service', () => {
     expect(getUnreadNotificationsCall()).resolves.toEqual(notificationResponse);
     expect(mockedAxios.get).toBeCalledWith(`/api/v1/messages/unread/`);
   });
+
+  it('getUnreadCount: should return count', async () => {
+    const unreadCount = { unread: 2, revision: 7 };
+    mockedAxios.get.mockReturnValue(Promise.resolve({ data: unreadCount }));
+
+    const result = await messageService.getUnreadCount();
+
+    expect(result).toEqual(unreadCount);
+    expect(mockedAxios.get).toBeCalledWith('/api/v1/messages/unread/count');
+  });
 });
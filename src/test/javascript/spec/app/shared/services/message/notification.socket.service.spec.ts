@@ -0,0 +1,96 @@
+import SockJS from 'sockjs-client';
+import Stomp from 'webstomp-client';
+import NotificationSocketService from '@/shared/services/Message/notification.socket.service';
+import { GARDLE_TOKEN_NAME } from '@/constants';
+
+jest.mock('sockjs-client');
+jest.mock('webstomp-client');
+
+const notification = {
+  content: 'Dolorem expedita enim sint soluta et.',
+  type: 'SYSTEM_LEASING_OPEN',
+  thread: 'baf63361-ce38-4de2-9973-59d7cddaba9d',
+  createdDate: '2019-12-02T13:40:08.879898Z',
+  opened: false
+};
+
+describe('Notification socket service', () => {
+  let notificationSocketService: NotificationSocketService;
+  let client: any;
+
+  beforeEach(() => {
+    jest.useFakeTimers();
+    localStorage.setItem(GARDLE_TOKEN_NAME, 'token');
+    client = {
+      connected: false,
+      connect: jest.fn(),
+      subscribe: jest.fn(),
+      disconnect: jest.fn()
+    };
+    (SockJS as any).mockClear();
+    (Stomp.over as jest.Mock).mockReturnValue(client);
+
+    notificationSocketService = new NotificationSocketService();
+  });
+
+  afterEach(() => {
+    localStorage.removeItem(GARDLE_TOKEN_NAME);
+  });
+
+  const connect = () => {
+    client.connected = true;
+    client.connect.mock.calls[client.connect.mock.calls.length - 1][1]();
+  };
+
+  it('should share one connection between listeners', () => {
+    const first = { onConnect: jest.fn(), onMessage: jest.fn() };
+    const second = { onConnect: jest.fn(), onMessage: jest.fn() };
+    notificationSocketService.subscribe(first);
+    connect();
+    notificationSocketService.subscribe(second);
+
+    expect(SockJS).toHaveBeenCalledTimes(1);
+    expect((SockJS as any).mock.calls[0][0]).toContain('/websocket/notifications?access_token=token');
+    expect(client.subscribe).toHaveBeenCalledWith('/user/queue/notifications', expect.any(Function));
+    expect(first.onConnect).toHaveBeenCalledTimes(1);
+    expect(second.onConnect).toHaveBeenCalledTimes(1);
+
+    client.subscribe.mock.calls[0][1]({ body: JSON.stringify(notification) });
+    expect(first.onMessage).toHaveBeenCalledWith(notification);
+    expect(second.onMessage).toHaveBeenCalledWith(notification);
+  });
+
+  it('should reconnect and notify listeners to catch up', () => {
+    const listener = { onConnect: jest.fn(), onMessage: jest.fn() };
+    notificationSocketService.subscribe(listener);
+    connect();
+    client.connected = false;
+    client.connect.mock.calls[0][2]();
+
+    jest.advanceTimersByTime(1000);
+    expect(SockJS).toHaveBeenCalledTimes(2);
+    connect();
+    expect(listener.onConnect).toHaveBeenCalledTimes(2);
+  });
+
+  it('should disconnect after the last listener unsubscribed', () => {
+    const unsubscribeFirst = notificationSocketService.subscribe({ onConnect: jest.fn(), onMessage: jest.fn() });
+    const unsubscribeSecond = notificationSocketService.subscribe({ onConnect: jest.fn(), onMessage: jest.fn() });
+    connect();
+
+    unsubscribeFirst();
+    expect(client.disconnect).not.toHaveBeenCalled();
+    unsubscribeSecond();
+    expect(client.disconnect).toHaveBeenCalled();
+
+    client.connect.mock.calls[0][2]();
+    jest.advanceTimersByTime(60000);
+    expect(SockJS).toHaveBeenCalledTimes(1);
+  });
+
+  it('should not connect without token', () => {
+    localStorage.removeItem(GARDLE_TOKEN_NAME);
+    notificationSocketService.subscribe({ onConnect: jest.fn(), onMessage: jest.fn() });
+    expect(SockJS).not.toHaveBeenCalled();
+  });
+});